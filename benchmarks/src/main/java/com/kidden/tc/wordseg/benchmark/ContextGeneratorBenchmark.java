@@ -0,0 +1,74 @@
+package com.kidden.tc.wordseg.benchmark;
+
+import com.kidden.tc.wordseg.maxent.DefaultWordSegContextGenerator;
+import com.kidden.tc.wordseg.maxent.WordSegContextGenerator;
+import com.kidden.tc.wordseg.maxent.WordSegContextGeneratorClosed;
+import com.kidden.tc.wordseg.maxent.WordSegContextGeneratorConf;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The features of every character of a sentence with each context generator.
+ * An operation is one character, so the score is in characters per second.
+ *
+ * @author kidden
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextGeneratorBenchmark {
+
+    static final int LENGTH = 1000;
+
+    @Param({"default", "closed", "conf"})
+    public String generator;
+
+    private WordSegContextGenerator contextGenerator;
+
+    private String[] chars;
+
+    private String[] tags;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (generator.equals("default")) {
+            contextGenerator = new DefaultWordSegContextGenerator();
+        } else if (generator.equals("closed")) {
+            contextGenerator = new WordSegContextGeneratorClosed();
+        } else {
+            contextGenerator = new WordSegContextGeneratorConf();
+        }
+
+        String sentence = new SyntheticCorpus().nextSentence(LENGTH);
+        chars = new String[sentence.length()];
+        tags = new String[sentence.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = String.valueOf(sentence.charAt(i));
+            tags[i] = "S";
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public void getContext(Blackhole blackhole) {
+        for (int i = 0; i < chars.length; i++) {
+            blackhole.consume(contextGenerator.getContext(i, chars, tags, null));
+        }
+    }
+}
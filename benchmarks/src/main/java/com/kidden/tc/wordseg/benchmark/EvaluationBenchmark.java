@@ -0,0 +1,77 @@
+package com.kidden.tc.wordseg.benchmark;
+
+import com.kidden.tc.wordseg.maxent.WordSegMeasure;
+import com.kidden.tc.wordseg.maxent.WordSegSample;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import opennlp.tools.util.InvalidFormatException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing segmented sentences and scoring segmentations, the per-sentence
+ * work of training and evaluation. An operation is one sentence of 50
+ * characters.
+ *
+ * @author kidden
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    private String segmented;
+
+    private String[] references;
+
+    private String[] predictions;
+
+    private WordSegMeasure measure;
+
+    @Setup
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        List<String> words = corpus.nextWords(50);
+        segmented = String.join(" ", words);
+        references = words.toArray(new String[words.size()]);
+
+        // the same text with every other pair of words joined
+        List<String> joined = new ArrayList<String>();
+        for (int i = 0; i < references.length; i += 2) {
+            joined.add(i + 1 < references.length ? references[i] + references[i + 1] : references[i]);
+        }
+        predictions = joined.toArray(new String[joined.size()]);
+    }
+
+    /**
+     * A fresh measure every iteration keeps its counters from overflowing.
+     */
+    @Setup(Level.Iteration)
+    public void resetMeasure() {
+        measure = new WordSegMeasure();
+    }
+
+    @Benchmark
+    public WordSegSample parse() throws InvalidFormatException {
+        return WordSegSample.parse(segmented);
+    }
+
+    @Benchmark
+    public WordSegMeasure updateScores() {
+        measure.updateScores(references, predictions);
+        return measure;
+    }
+}
@@ -0,0 +1,81 @@
+package com.kidden.tc.wordseg.benchmark;
+
+import com.kidden.tc.wordseg.maxent.DefaultWordSegContextGenerator;
+import com.kidden.tc.wordseg.maxent.WordSegmenterME;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import opennlp.tools.ml.BeamSearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Tagging and segmenting with the beam search at several beam sizes and
+ * sentence lengths. Every invocation handles {@value #CHARS} characters split
+ * into sentences of the given length, so the score is in characters per
+ * second and the normalized allocation of "-prof gc" in bytes per character.
+ *
+ * @author kidden
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmenterBenchmark {
+
+    static final int CHARS = 1000;
+
+    @Param({"1", "3", "8"})
+    public int beamSize;
+
+    @Param({"10", "50", "200", "1000"})
+    public int length;
+
+    private WordSegmenterME segmenter;
+
+    private String[] sentences;
+
+    @Setup
+    public void setUp() throws IOException {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(BeamSearch.BEAM_SIZE_PARAMETER, Integer.toString(beamSize));
+        settings.put(WordSegmenterME.DECODER_PARAMETER, WordSegmenterME.BEAM_DECODER);
+        segmenter = new WordSegmenterME(SyntheticCorpus.model(), new DefaultWordSegContextGenerator(), settings);
+
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        sentences = new String[CHARS / length];
+        for (int i = 0; i < sentences.length; i++) {
+            sentences[i] = corpus.nextSentence(length);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public void tag(Blackhole blackhole) {
+        for (String sentence : sentences) {
+            blackhole.consume(segmenter.tag(sentence));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public void segment(Blackhole blackhole) {
+        for (String sentence : sentences) {
+            blackhole.consume(segmenter.segment(sentence));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.kidden.tc.wordseg.benchmark;
+
+import com.kidden.tc.wordseg.maxent.DefaultWordSegContextGenerator;
+import com.kidden.tc.wordseg.maxent.WordSegModel;
+import com.kidden.tc.wordseg.maxent.WordSegSample;
+import com.kidden.tc.wordseg.maxent.WordSegmenterME;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import opennlp.tools.util.CollectionObjectStream;
+import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.TrainingParameters;
+
+/**
+ * A segmented corpus drawn from a fixed random vocabulary, so the benchmarks
+ * need no data files and measure the same text on every machine.
+ *
+ * The words have one to four characters and are drawn with a Zipf-like
+ * distribution, which gives the model frequent words and a long tail like a
+ * real corpus.
+ *
+ * @author kidden
+ */
+public final class SyntheticCorpus {
+
+    private static final String CHARACTERS = "的一是了不在人有我他这中大来上国个到说们为子和你地出道也时年"
+            + "得就那要下以生会自着去之过家学对可她里后小么心多天而能好都然没日于起还发成事只作当想看文无开"
+            + "手十用主行方又如前所本见经头面公同三已老从动两长知民样现分将外但身些与高意进把法此实回二理美点"
+            + "月明其种声全工己话儿者向情部正名定女问力机给等几很业最间新什打便位因重被走电四第门相次东政海口";
+
+    private static final int VOCABULARY_SIZE = 2000;
+
+    private static final long SEED = 20170321L;
+
+    private static WordSegModel model;
+
+    private final String[] vocabulary;
+
+    private final Random random;
+
+    public SyntheticCorpus() {
+        random = new Random(SEED);
+        vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < vocabulary.length; i++) {
+            int length = 1 + random.nextInt(4);
+            StringBuilder word = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                word.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+            }
+            vocabulary[i] = word.toString();
+        }
+    }
+
+    private String nextWord() {
+        // the square favours the first words of the vocabulary
+        double u = random.nextDouble();
+        return vocabulary[(int) (u * u * vocabulary.length)];
+    }
+
+    /**
+     * Returns the words of a sentence of the given number of characters.
+     */
+    public List<String> nextWords(int length) {
+        List<String> words = new ArrayList<String>();
+        int remaining = length;
+        while (remaining > 0) {
+            String word = nextWord();
+            if (word.length() > remaining) {
+                word = word.substring(0, remaining);
+            }
+            words.add(word);
+            remaining -= word.length();
+        }
+        return words;
+    }
+
+    /**
+     * Returns a sentence of the given number of characters.
+     */
+    public String nextSentence(int length) {
+        StringBuilder sentence = new StringBuilder(length);
+        for (String word : nextWords(length)) {
+            sentence.append(word);
+        }
+        return sentence.toString();
+    }
+
+    /**
+     * Returns a segmented sentence in the training format, words separated by
+     * spaces.
+     */
+    public String nextSegmentedSentence(int length) {
+        return String.join(" ", nextWords(length));
+    }
+
+    /**
+     * Returns the model trained on a fixed synthetic corpus, trained once per
+     * JVM.
+     */
+    public static synchronized WordSegModel model() throws IOException {
+        if (model == null) {
+            SyntheticCorpus corpus = new SyntheticCorpus();
+            List<WordSegSample> samples = new ArrayList<WordSegSample>();
+            for (int i = 0; i < 2000; i++) {
+                samples.add(parse(corpus.nextSegmentedSentence(10 + corpus.random.nextInt(40))));
+            }
+
+            TrainingParameters params = TrainingParameters.defaultParams();
+            params.put(TrainingParameters.CUTOFF_PARAM, Integer.toString(1));
+            params.put(TrainingParameters.ITERATIONS_PARAM, Integer.toString(30));
+
+            model = WordSegmenterME.train("zh", new CollectionObjectStream<WordSegSample>(samples), params,
+                    new DefaultWordSegContextGenerator());
+        }
+        return model;
+    }
+
+    private static WordSegSample parse(String sentence) {
+        try {
+            return WordSegSample.parse(sentence);
+        } catch (InvalidFormatException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.kidden.tc.wordseg.server;
+
+import com.kidden.tc.wordseg.WordSegmenter;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the sentences of concurrent requests into batches for
+ * {@link WordSegmenter#segment(List)}.
+ *
+ * A dispatcher thread takes the oldest request from a bounded queue and
+ * waits at most the wait window for more, until the batch holds the maximum
+ * number of sentences. A request is never split, so a single large request
+ * makes a batch of its own. A request which finds the queue full is rejected
+ * at once instead of waiting. Batches are segmented one after another, the
+ * segmenter spreads every batch over its own threads.
+ *
+ * @author kidden
+ */
+public class WordSegBatcher implements Closeable {
+
+    private static final class Request {
+
+        final List<String> sentences;
+        final CompletableFuture<List<String[]>> future = new CompletableFuture<List<String[]>>();
+
+        Request(List<String> sentences) {
+            this.sentences = sentences;
+        }
+    }
+
+    private final WordSegmenter segmenter;
+
+    private final int maxBatchSize;
+
+    private final long maxWaitNanos;
+
+    private final BlockingQueue<Request> queue;
+
+    private final Thread dispatcher;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder sentences = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a batcher and starts its dispatcher thread.
+     *
+     * @param segmenter the segmenter of the batches
+     * @param maxBatchSize the number of sentences from which a batch is segmented without waiting
+     * @param maxWaitMicros the longest time the oldest request of a batch waits for more
+     * @param queueCapacity the number of requests which may wait, more are rejected
+     */
+    public WordSegBatcher(WordSegmenter segmenter, int maxBatchSize, long maxWaitMicros, int queueCapacity) {
+        if (maxBatchSize < 1 || queueCapacity < 1 || maxWaitMicros < 0) {
+            throw new IllegalArgumentException("The batch size and the queue capacity must be positive "
+                    + "and the wait must not be negative");
+        }
+
+        this.segmenter = segmenter;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.queue = new ArrayBlockingQueue<Request>(queueCapacity);
+
+        dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "wordseg-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Queues the sentences of a request.
+     *
+     * @param sentences the sentences to be segmented
+     * @return the future of the words of every sentence, in the order of the request
+     * @throws RejectedExecutionException if the queue is full or the batcher is closed
+     */
+    public CompletableFuture<List<String[]>> submit(List<String> sentences) {
+        Request request = new Request(sentences);
+        if (closed || !queue.offer(request)) {
+            rejected.increment();
+            throw new RejectedExecutionException(closed ? "The batcher is closed"
+                    : "The queue is full: " + queue.size() + " requests");
+        }
+
+        // a request queued while closing is not taken by the dispatcher any more
+        if (closed && queue.remove(request)) {
+            rejected.increment();
+            throw new RejectedExecutionException("The batcher is closed");
+        }
+
+        return request.future;
+    }
+
+    private void dispatch() {
+        List<Request> batch = new ArrayList<Request>();
+
+        try {
+            while (!closed) {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                int size = first.sentences.size();
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (size < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    size += next.sentences.size();
+                }
+
+                segment(batch, size);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Request request : batch) {
+                request.future.completeExceptionally(new RejectedExecutionException("The batcher is closed"));
+            }
+            Request request;
+            while ((request = queue.poll()) != null) {
+                request.future.completeExceptionally(new RejectedExecutionException("The batcher is closed"));
+            }
+        }
+    }
+
+    private void segment(List<Request> batch, int size) {
+        List<String> all = new ArrayList<String>(size);
+        for (Request request : batch) {
+            all.addAll(request.sentences);
+        }
+
+        List<String[]> words;
+        try {
+            words = segmenter.segment(all);
+        } catch (Throwable e) {
+            // an error fails the batch, not the dispatcher, which would leave the queued requests waiting
+            for (Request request : batch) {
+                request.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        batches.increment();
+        sentences.add(size);
+
+        int start = 0;
+        for (Request request : batch) {
+            int end = start + request.sentences.size();
+            request.future.complete(new ArrayList<String[]>(words.subList(start, end)));
+            start = end;
+        }
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Returns the number of sentences segmented in batches.
+     */
+    public long getSentenceCount() {
+        return sentences.sum();
+    }
+
+    /**
+     * Returns the average number of sentences per batch, NaN before the first batch.
+     */
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? Double.NaN : (double) sentences.sum() / count;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of requests waiting for a batch.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the dispatcher. A batch being segmented is finished, requests
+     * which are not segmented yet fail with a {@link RejectedExecutionException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.kidden.tc.wordseg.server;
+
+import com.kidden.tc.wordseg.WordSegmenter;
+import com.kidden.tc.wordseg.maxent.WordSegContextGenerator;
+import com.kidden.tc.wordseg.maxent.WordSegContextGenerators;
+import com.kidden.tc.wordseg.maxent.WordSegLatencyHistogram;
+import com.kidden.tc.wordseg.maxent.WordSegModel;
+import com.kidden.tc.wordseg.maxent.WordSegModelRegistry;
+import com.kidden.tc.wordseg.maxent.WordSegmenterME;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local HTTP service segmenting with one shared segmenter, built on the
+ * JDK's {@code com.sun.net.httpserver}.
+ *
+ * <pre>
+ * POST /segment   one sentence per line, answers the words of every line separated by spaces
+ * GET  /metrics   the latency of every endpoint and the batching counters, one "name value" per line
+ * GET  /health    "ok"
+ * </pre>
+ *
+ * The sentences of concurrent requests are segmented together by a
+ * {@link WordSegBatcher}. The handler threads only read requests and write
+ * answers, a request is answered from the future of its batch without holding
+ * a thread while it waits, so waiting requests pile up in the bounded queue
+ * of the batcher. A request finding that queue full is answered with 503 at
+ * once. Text is UTF-8.
+ *
+ * Usage: -model file [-host name] [-port number] [-batch sentences]
+ * [-wait micros] [-queue requests] [-threads number] [-watch seconds]
+ * [-featureConf file]
+ *
+ * The model is held by a {@link WordSegModelRegistry}, with -watch it is
+ * reloaded when the file changes. A model trained with another context
+ * generator than the default one is segmented with the generator of its
+ * feature configuration, see {@link WordSegContextGenerators}.
+ *
+ * The server is a module of its own, so the segmenter library does not need
+ * the jdk.httpserver module.
+ *
+ * @author kidden
+ */
+public class WordSegServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    public static final long DEFAULT_MAX_WAIT_MICROS = 2000;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_HANDLER_THREADS = 32;
+
+    /**
+     * The largest request body, larger ones are answered with 413.
+     */
+    public static final int MAX_REQUEST_BYTES = 1 << 20;
+
+    private final HttpServer server;
+
+    private final ExecutorService handlers;
+
+    private final WordSegBatcher batcher;
+
+    private final Map<String, WordSegLatencyHistogram> latencies = new LinkedHashMap<String, WordSegLatencyHistogram>();
+
+    private final Map<String, LongAdder> errors = new LinkedHashMap<String, LongAdder>();
+
+    /**
+     * Creates a server with the default batching.
+     */
+    public WordSegServer(WordSegmenter segmenter, InetSocketAddress address) throws IOException {
+        this(segmenter, address, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_WAIT_MICROS, DEFAULT_QUEUE_CAPACITY,
+                DEFAULT_HANDLER_THREADS);
+    }
+
+    /**
+     * Creates a server, which answers once {@link #start()} is called.
+     *
+     * @param segmenter the shared segmenter
+     * @param address the address to bind, port 0 for any free port
+     * @param maxBatchSize the number of sentences from which a batch is segmented without waiting
+     * @param maxWaitMicros the longest time a request waits for others to share its batch
+     * @param queueCapacity the number of requests which may wait, more are rejected
+     * @param handlerThreads the number of threads reading requests and writing answers
+     * @throws IOException if the address can not be bound
+     */
+    public WordSegServer(WordSegmenter segmenter, InetSocketAddress address, int maxBatchSize,
+            long maxWaitMicros, int queueCapacity, int handlerThreads) throws IOException {
+        if (handlerThreads < 1) {
+            throw new IllegalArgumentException("The handler threads must be positive: " + handlerThreads);
+        }
+
+        batcher = new WordSegBatcher(segmenter, maxBatchSize, maxWaitMicros, queueCapacity);
+        try {
+            server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            batcher.close();
+            throw e;
+        }
+        handlers = Executors.newFixedThreadPool(handlerThreads);
+        server.setExecutor(handlers);
+
+        server.createContext("/segment", new Endpoint("segment", "POST") {
+            @Override
+            CompletableFuture<byte[]> answer(HttpExchange exchange) throws IOException, HttpError {
+                return segment(exchange);
+            }
+        });
+        server.createContext("/metrics", new Endpoint("metrics", "GET") {
+            @Override
+            CompletableFuture<byte[]> answer(HttpExchange exchange) {
+                return CompletableFuture.completedFuture(metrics().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext("/health", new Endpoint("health", "GET") {
+            @Override
+            CompletableFuture<byte[]> answer(HttpExchange exchange) {
+                return CompletableFuture.completedFuture("ok\n".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+    }
+
+    /**
+     * An error answered with its status code.
+     */
+    private static final class HttpError extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private abstract class Endpoint implements HttpHandler {
+
+        private final String method;
+
+        private final WordSegLatencyHistogram latency = new WordSegLatencyHistogram();
+
+        private final LongAdder failures = new LongAdder();
+
+        Endpoint(String name, String method) {
+            this.method = method;
+            latencies.put(name, latency);
+            errors.put(name, failures);
+        }
+
+        /**
+         * Returns the future of the answer, which fails with an {@link HttpError}
+         * to answer another status than 200.
+         */
+        abstract CompletableFuture<byte[]> answer(HttpExchange exchange) throws IOException, HttpError;
+
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            final long begin = System.nanoTime();
+            CompletableFuture<byte[]> answer;
+            try {
+                if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+                    throw new HttpError(405, "Use " + method);
+                }
+                answer = answer(exchange);
+            } catch (HttpError e) {
+                answer = new CompletableFuture<byte[]>();
+                answer.completeExceptionally(e);
+            } catch (IOException | RuntimeException e) {
+                exchange.close();
+                latency.record(System.nanoTime() - begin);
+                throw e;
+            }
+
+            if (answer.isDone()) {
+                respond(exchange, answer, begin);
+            } else {
+                final CompletableFuture<byte[]> pending = answer;
+                answer.whenCompleteAsync((body, error) -> {
+                    try {
+                        respond(exchange, pending, begin);
+                    } catch (IOException e) {
+                        // the client has gone, the exchange is closed anyway
+                    }
+                }, handlers);
+            }
+        }
+
+        private void respond(HttpExchange exchange, CompletableFuture<byte[]> answer, long begin)
+                throws IOException {
+            try {
+                int status = 200;
+                byte[] body;
+                try {
+                    body = answer.join();
+                } catch (CompletionException e) {
+                    HttpError error = error(e.getCause());
+                    failures.increment();
+                    status = error.status;
+                    body = (error.getMessage() + "\n").getBytes(StandardCharsets.UTF_8);
+                    if (status == 503) {
+                        exchange.getResponseHeaders().set("Retry-After", "1");
+                    }
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+                exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+                if (body.length > 0) {
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                }
+            } finally {
+                exchange.close();
+                latency.record(System.nanoTime() - begin);
+            }
+        }
+    }
+
+    /**
+     * Returns the error to answer for the failure of an answer.
+     */
+    private static HttpError error(Throwable cause) {
+        if (cause instanceof HttpError) {
+            return (HttpError) cause;
+        } else if (cause instanceof RejectedExecutionException) {
+            return new HttpError(503, cause.getMessage());
+        }
+        return new HttpError(500, String.valueOf(cause));
+    }
+
+    private CompletableFuture<byte[]> segment(HttpExchange exchange) throws IOException, HttpError {
+        String text = new String(read(exchange.getRequestBody()), StandardCharsets.UTF_8);
+
+        List<String> sentences = new ArrayList<String>();
+        for (String line : text.split("\r?\n", -1)) {
+            sentences.add(line);
+        }
+        // a final line break ends the last sentence rather than starting one
+        if (sentences.size() > 1 && sentences.get(sentences.size() - 1).isEmpty()) {
+            sentences.remove(sentences.size() - 1);
+        }
+
+        CompletableFuture<List<String[]>> words;
+        try {
+            words = batcher.submit(sentences);
+        } catch (RejectedExecutionException e) {
+            throw new HttpError(503, e.getMessage());
+        }
+
+        final int length = text.length();
+        return words.thenApply(sentenceWords -> {
+            StringBuilder answer = new StringBuilder(length * 2);
+            for (String[] sentence : sentenceWords) {
+                answer.append(String.join(" ", sentence)).append('\n');
+            }
+            return answer.toString().getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    private static byte[] read(InputStream in) throws IOException, HttpError {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            body.write(buffer, 0, n);
+            if (body.size() > MAX_REQUEST_BYTES) {
+                throw new HttpError(413, "The request is larger than " + MAX_REQUEST_BYTES + " bytes");
+            }
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Returns the metrics in the format of the /metrics endpoint, latencies
+     * in microseconds.
+     */
+    public String metrics() {
+        StringBuilder metrics = new StringBuilder();
+        for (Map.Entry<String, WordSegLatencyHistogram> endpoint : latencies.entrySet()) {
+            String name = endpoint.getKey();
+            WordSegLatencyHistogram latency = endpoint.getValue();
+            metrics.append(name).append(".requests ").append(latency.getCount()).append('\n');
+            metrics.append(name).append(".errors ").append(errors.get(name).sum()).append('\n');
+            metrics.append(name).append(".latency.mean_us ").append(micros(latency.getMean())).append('\n');
+            metrics.append(name).append(".latency.p50_us ").append(micros(latency.getPercentile(50))).append('\n');
+            metrics.append(name).append(".latency.p99_us ").append(micros(latency.getPercentile(99))).append('\n');
+            metrics.append(name).append(".latency.p999_us ").append(micros(latency.getPercentile(99.9))).append('\n');
+            metrics.append(name).append(".latency.max_us ").append(micros(latency.getMax())).append('\n');
+        }
+        metrics.append("batcher.batches ").append(batcher.getBatchCount()).append('\n');
+        metrics.append("batcher.sentences ").append(batcher.getSentenceCount()).append('\n');
+        metrics.append("batcher.average_batch_size ").append(batcher.getAverageBatchSize()).append('\n');
+        metrics.append("batcher.rejected ").append(batcher.getRejectedCount()).append('\n');
+        metrics.append("batcher.queue_depth ").append(batcher.getQueueDepth()).append('\n');
+        return metrics.toString();
+    }
+
+    private static long micros(double nanos) {
+        return Double.isNaN(nanos) ? 0 : Math.round(nanos / 1000);
+    }
+
+    /**
+     * Returns the latencies of an endpoint, "segment", "metrics" or "health".
+     */
+    public WordSegLatencyHistogram getLatency(String endpoint) {
+        return latencies.get(endpoint);
+    }
+
+    public WordSegBatcher getBatcher() {
+        return batcher;
+    }
+
+    /**
+     * Returns the bound address, with the actual port if port 0 was asked for.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops answering, waiting at most a second for the exchanges in progress.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        batcher.close();
+        handlers.shutdown();
+        try {
+            handlers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String modelFile = null;
+        String host = "127.0.0.1";
+        int port = DEFAULT_PORT;
+        int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        long maxWaitMicros = DEFAULT_MAX_WAIT_MICROS;
+        int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        int threads = DEFAULT_HANDLER_THREADS;
+        int watchSeconds = 0;
+        String featureConf = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-model")) {
+                modelFile = args[++i];
+            } else if (args[i].equals("-host")) {
+                host = args[++i];
+            } else if (args[i].equals("-port")) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-batch")) {
+                maxBatchSize = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-wait")) {
+                maxWaitMicros = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-queue")) {
+                queueCapacity = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-watch")) {
+                watchSeconds = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-featureConf")) {
+                featureConf = args[++i];
+            }
+        }
+
+        if (modelFile == null) {
+            System.err.println("Usage: WordSegServer -model file [-host name] [-port number] [-batch sentences] "
+                    + "[-wait micros] [-queue requests] [-threads number] [-watch seconds] [-featureConf file]");
+            System.exit(1);
+        }
+
+        final WordSegContextGenerator contextGenerator = WordSegContextGenerators.load(
+                featureConf == null ? null : new File(featureConf));
+        WordSegModelRegistry registry = new WordSegModelRegistry(new File(modelFile),
+                new WordSegModelRegistry.SegmenterFactory() {
+            @Override
+            public WordSegmenter create(WordSegModel model) {
+                return new WordSegmenterME(model, contextGenerator);
+            }
+        });
+        if (watchSeconds > 0) {
+            registry.watch(watchSeconds, TimeUnit.SECONDS);
+        }
+
+        final WordSegServer server = new WordSegServer(registry, new InetSocketAddress(host, port), maxBatchSize,
+                maxWaitMicros, queueCapacity, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                server.close();
+            }
+        });
+        server.start();
+        System.out.println("Segmenting on http://" + host + ":" + server.getAddress().getPort() + "/segment");
+    }
+}
@@ -0,0 +1,238 @@
+package com.kidden.tc.wordseg.server;
+
+import com.kidden.tc.wordseg.WordSegmenter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegServerTest {
+
+    /**
+     * Takes every character as a word and remembers the size of every batch.
+     */
+    private static class CharSegmenter implements WordSegmenter {
+
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        public String[] segment(String sentence) {
+            String[] words = new String[sentence.length()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = String.valueOf(sentence.charAt(i));
+            }
+            return words;
+        }
+
+        @Override
+        public List<String[]> segment(List<? extends CharSequence> sentences) {
+            batches.add(sentences.size());
+            return WordSegmenter.super.segment(sentences);
+        }
+    }
+
+    public WordSegServerTest() {
+    }
+
+    private static String request(WordSegServer server, String method, String path, String body)
+            throws IOException {
+        URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream answer = new ByteArrayOutputStream();
+        if (in != null) {
+            try {
+                byte[] buffer = new byte[1024];
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    answer.write(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return status + " " + new String(answer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEndpoints() throws Exception {
+        try (WordSegServer server = new WordSegServer(new CharSegmenter(), new InetSocketAddress("127.0.0.1", 0))) {
+            server.start();
+
+            assertEquals("200 北 京\n大 学\n", request(server, "POST", "/segment", "北京\n大学\n"));
+            assertEquals("200 ok\n", request(server, "GET", "/health", null));
+            assertTrue(request(server, "GET", "/segment", null).startsWith("405 "));
+
+            String metrics = request(server, "GET", "/metrics", null);
+            assertTrue(metrics, metrics.contains("segment.requests 2\n"));
+            assertTrue(metrics, metrics.contains("segment.errors 1\n"));
+            assertTrue(metrics, metrics.contains("batcher.sentences 2\n"));
+            assertEquals(1, server.getLatency("health").getCount());
+        }
+    }
+
+    /**
+     * Concurrent requests arriving within the wait window share batches.
+     */
+    @Test
+    public void testBatching() throws Exception {
+        CharSegmenter segmenter = new CharSegmenter();
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try (WordSegServer server = new WordSegServer(segmenter, new InetSocketAddress("127.0.0.1", 0), 100,
+                200000, 100, 8)) {
+            server.start();
+
+            List<Future<String>> answers = new ArrayList<Future<String>>();
+            for (int i = 0; i < 8; i++) {
+                answers.add(clients.submit(() -> request(server, "POST", "/segment", "分词")));
+            }
+            for (Future<String> answer : answers) {
+                assertEquals("200 分 词\n", answer.get());
+            }
+
+            assertEquals(8, server.getBatcher().getSentenceCount());
+            assertTrue(segmenter.batches.toString(), segmenter.batches.size() < 8);
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejection() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        WordSegmenter blocking = new CharSegmenter() {
+            @Override
+            public List<String[]> segment(List<? extends CharSequence> sentences) {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.segment(sentences);
+            }
+        };
+
+        try (WordSegBatcher batcher = new WordSegBatcher(blocking, 10, 0, 1)) {
+            CompletableFuture<List<String[]>> first = batcher.submit(Arrays.asList("北京"));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            CompletableFuture<List<String[]>> second = batcher.submit(Arrays.asList("大学"));
+            try {
+                batcher.submit(Arrays.asList("分词"));
+                fail("The full queue took a request");
+            } catch (RejectedExecutionException e) {
+                assertEquals(1, batcher.getRejectedCount());
+            }
+
+            release.countDown();
+            assertArrayEquals(new String[]{"北", "京"}, first.get().get(0));
+            assertArrayEquals(new String[]{"大", "学"}, second.get().get(0));
+        }
+    }
+
+    /**
+     * With a single handler thread, the requests waiting for a batch do not
+     * hold it and the one finding the queue full is answered with 503.
+     */
+    @Test
+    public void testServiceUnavailable() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        WordSegmenter blocking = new CharSegmenter() {
+            @Override
+            public List<String[]> segment(List<? extends CharSequence> sentences) {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.segment(sentences);
+            }
+        };
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try (WordSegServer server = new WordSegServer(blocking, new InetSocketAddress("127.0.0.1", 0), 10, 0, 1,
+                1)) {
+            server.start();
+
+            Future<String> first = clients.submit(() -> request(server, "POST", "/segment", "北京"));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<String> second = clients.submit(() -> request(server, "POST", "/segment", "大学"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (server.getBatcher().getQueueDepth() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            assertTrue(request(server, "POST", "/segment", "分词").startsWith("503 "));
+            assertEquals(1, server.getBatcher().getRejectedCount());
+
+            release.countDown();
+            assertEquals("200 北 京\n", first.get());
+            assertEquals("200 大 学\n", second.get());
+        } finally {
+            release.countDown();
+            clients.shutdown();
+        }
+    }
+
+    /**
+     * An error thrown by the segmenter fails its batch and the batcher goes on.
+     */
+    @Test
+    public void testSegmenterError() throws Exception {
+        WordSegmenter failing = new CharSegmenter() {
+            @Override
+            public List<String[]> segment(List<? extends CharSequence> sentences) {
+                if (sentences.get(0).toString().equals("错误")) {
+                    throw new AssertionError("错误");
+                }
+                return super.segment(sentences);
+            }
+        };
+
+        try (WordSegBatcher batcher = new WordSegBatcher(failing, 1, 0, 10)) {
+            try {
+                batcher.submit(Arrays.asList("错误")).get(10, TimeUnit.SECONDS);
+                fail("The error was not passed on");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof AssertionError);
+            }
+            List<String[]> words = batcher.submit(Arrays.asList("分词")).get(10, TimeUnit.SECONDS);
+            assertArrayEquals(new String[]{"分", "词"}, words.get(0));
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.kidden.tc.wordseg;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Interface for chinese word segmenter
  *
@@ -15,4 +18,51 @@ public interface WordSegmenter {
      */
     public String[] segment(String sentence);
 
+    /**
+     * Segment text into words without creating the word strings. The end offset
+     * of every word is written to the boundaries, the first word starts at 0 and
+     * every following word at the end of the previous one.
+     *
+     * The default implementation derives the offsets from {@link #segment(String)}.
+     *
+     * @param text raw text to be segmented
+     * @param boundaries the array receiving the end offsets of the words, at
+     * least as long as the text
+     * @return the number of words
+     * @throws IllegalArgumentException if the boundaries are shorter than the text
+     */
+    public default int segment(CharSequence text, int[] boundaries) {
+        if (boundaries.length < text.length()) {
+            throw new IllegalArgumentException("The boundaries array is shorter than the text: "
+                    + boundaries.length + " < " + text.length());
+        }
+
+        String[] words = segment(text.toString());
+
+        int end = 0;
+        for (int i = 0; i < words.length; i++) {
+            end += words[i].length();
+            boundaries[i] = end;
+        }
+
+        return words.length;
+    }
+
+    /**
+     * Segment a batch of sentences into words arrays.
+     *
+     * The default implementation segments the sentences one after another.
+     *
+     * @param sentences raw texts to be segmented
+     * @return the segmented words array of every sentence, in the order of the batch
+     */
+    public default List<String[]> segment(List<? extends CharSequence> sentences) {
+        List<String[]> results = new ArrayList<String[]>(sentences.size());
+        for (CharSequence sentence : sentences) {
+            results.add(segment(sentence.toString()));
+        }
+
+        return results;
+    }
+
 }
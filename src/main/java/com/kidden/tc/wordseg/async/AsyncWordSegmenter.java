@@ -0,0 +1,310 @@
+package com.kidden.tc.wordseg.async;
+
+import com.kidden.tc.wordseg.WordSegmenter;
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Segments sentences on a bounded pool of CPU threads and answers with
+ * {@link CompletableFuture}s.
+ *
+ * The pool has a fixed number of threads, by default one per processor, and
+ * a bounded queue in front of them, so callers can not oversubscribe the CPU.
+ * Because the threads live as long as the pool, the decoding buffers
+ * {@link com.kidden.tc.wordseg.maxent.WordSegmenterME} keeps per thread are
+ * allocated once per thread and reused by every sentence. What happens to a
+ * sentence which finds the queue full is chosen by the {@link RejectionPolicy}.
+ *
+ * Blocking work around the segmentation, such as reading the text or writing
+ * the words, belongs on the I/O executor of {@link #getIoExecutor()} instead.
+ * On Java 21 and later it starts a virtual thread per task, on older versions
+ * it is a cached pool of daemon threads.
+ *
+ * @author kidden
+ */
+public class AsyncWordSegmenter implements Closeable {
+
+    /**
+     * What to do with a sentence which finds the queue full.
+     */
+    public enum RejectionPolicy {
+
+        /**
+         * Fail the future of the new sentence with a {@link RejectedExecutionException}.
+         */
+        ABORT,
+        /**
+         * Segment the new sentence in the calling thread, which slows the caller down.
+         */
+        CALLER_RUNS,
+        /**
+         * Fail the future of the oldest waiting sentence with a
+         * {@link RejectedExecutionException} and queue the new one.
+         */
+        DISCARD_OLDEST
+    }
+
+    public static final int DEFAULT_QUEUE_CAPACITY_PER_THREAD = 64;
+
+    /**
+     * A queued sentence, failed with its future when it is discarded.
+     */
+    private static final class Task<T> implements Runnable {
+
+        final Callable<T> work;
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+
+        Task(Callable<T> work) {
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(work.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+
+        void reject(String message) {
+            future.completeExceptionally(new RejectedExecutionException(message));
+        }
+    }
+
+    private final WordSegmenter segmenter;
+
+    private final ThreadPoolExecutor executor;
+
+    private final ExecutorService ioExecutor;
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a facade with one thread per processor, a queue of
+     * {@value #DEFAULT_QUEUE_CAPACITY_PER_THREAD} sentences per thread and the
+     * {@link RejectionPolicy#ABORT} policy.
+     */
+    public AsyncWordSegmenter(WordSegmenter segmenter) {
+        this(segmenter, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors() * DEFAULT_QUEUE_CAPACITY_PER_THREAD,
+                RejectionPolicy.ABORT);
+    }
+
+    /**
+     * Creates a facade.
+     *
+     * @param segmenter the segmenter, shared by all threads
+     * @param threads the number of segmenting threads
+     * @param queueCapacity the number of sentences, or runs of a batch, which may wait for a thread
+     * @param policy what to do with a sentence which finds the queue full
+     */
+    public AsyncWordSegmenter(WordSegmenter segmenter, int threads, int queueCapacity, RejectionPolicy policy) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("The threads and the queue capacity must be positive");
+        }
+
+        this.segmenter = segmenter;
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new NamedThreadFactory("wordseg-async-"),
+                rejectionHandler(policy));
+        executor.prestartAllCoreThreads();
+        ioExecutor = createIoExecutor();
+    }
+
+    private RejectedExecutionHandler rejectionHandler(RejectionPolicy policy) {
+        switch (policy) {
+            case ABORT:
+                return new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor pool) {
+                        rejected.increment();
+                        ((Task<?>) r).reject(pool.isShutdown() ? "The segmenter is closed"
+                                : "The queue is full: " + pool.getQueue().size() + " sentences");
+                    }
+                };
+            case CALLER_RUNS:
+                return new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor pool) {
+                        if (pool.isShutdown()) {
+                            rejected.increment();
+                            ((Task<?>) r).reject("The segmenter is closed");
+                        } else {
+                            r.run();
+                        }
+                    }
+                };
+            case DISCARD_OLDEST:
+                return new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor pool) {
+                        rejected.increment();
+                        if (pool.isShutdown()) {
+                            ((Task<?>) r).reject("The segmenter is closed");
+                            return;
+                        }
+
+                        Runnable oldest = pool.getQueue().poll();
+                        if (oldest != null) {
+                            ((Task<?>) oldest).reject("Discarded for a newer sentence");
+                        }
+                        pool.execute(r);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown rejection policy: " + policy);
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Returns a virtual thread per task executor if the runtime has one,
+     * looked up by reflection since the library is built for Java 8.
+     */
+    static ExecutorService createIoExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(new NamedThreadFactory("wordseg-io-"));
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> work) {
+        Task<T> task = new Task<T>(work);
+        executor.execute(task);
+        return task.future;
+    }
+
+    /**
+     * Segments a sentence on the segmenting threads.
+     *
+     * @param sentence the sentence
+     * @return the future of the words, failed with a
+     * {@link RejectedExecutionException} if the sentence was rejected
+     */
+    public CompletableFuture<String[]> segmentAsync(final CharSequence sentence) {
+        return submit(new Callable<String[]>() {
+            @Override
+            public String[] call() {
+                return segmenter.segment(sentence.toString());
+            }
+        });
+    }
+
+    /**
+     * Segments a batch in one task per segmenting thread, each segmenting a
+     * run of the sentences one after another. A batch therefore takes at
+     * most as many places of the queue as there are threads, however many
+     * sentences it holds.
+     *
+     * @param sentences the sentences
+     * @return the future of the words of every sentence, in the order of the
+     * batch, failed if any run failed or was rejected
+     */
+    public CompletableFuture<List<String[]>> segmentAsync(final List<? extends CharSequence> sentences) {
+        final String[][] words = new String[sentences.size()][];
+        int chunks = Math.min(executor.getCorePoolSize(), words.length);
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks];
+        for (int i = 0; i < chunks; i++) {
+            final int start = (int) ((long) words.length * i / chunks);
+            final int end = (int) ((long) words.length * (i + 1) / chunks);
+            futures[i] = submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int j = start; j < end; j++) {
+                        words[j] = segmenter.segment(sentences.get(j).toString());
+                    }
+                    return null;
+                }
+            });
+        }
+
+        return CompletableFuture.allOf(futures).thenApply(done -> Arrays.asList(words));
+    }
+
+    /**
+     * Reads a sentence on the I/O executor, then segments it on the
+     * segmenting threads.
+     *
+     * @param reader the blocking source of the sentence
+     * @return the future of the words, failed with the error of the reader if it fails
+     */
+    public CompletableFuture<String[]> segmentAsync(final Callable<? extends CharSequence> reader) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return reader.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, ioExecutor).thenCompose(sentence -> segmentAsync(sentence));
+    }
+
+    /**
+     * Returns the executor for the blocking stages around the segmentation,
+     * virtual threads on Java 21 and later.
+     */
+    public ExecutorService getIoExecutor() {
+        return ioExecutor;
+    }
+
+    /**
+     * Returns whether the I/O executor runs virtual threads.
+     */
+    public boolean isVirtualIo() {
+        return !(ioExecutor instanceof ThreadPoolExecutor);
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of sentences waiting for a segmenting thread.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops taking sentences. The queued ones are still segmented.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        ioExecutor.shutdown();
+    }
+}
@@ -0,0 +1,53 @@
+package com.kidden.tc.wordseg.cache;
+
+/**
+ * One stripe of a {@link CachingWordSegmenter}, holding the entries whose
+ * sentences hash to it within a weight limit. A segment is not thread safe,
+ * the cache locks it around every call.
+ *
+ * @author kidden
+ */
+abstract class CacheSegment {
+
+    /**
+     * The total weight the entries of the segment may have.
+     */
+    final long capacity;
+
+    /**
+     * The total weight of the entries of the segment.
+     */
+    long weight;
+
+    CacheSegment(long capacity) {
+        this.capacity = capacity;
+    }
+
+    static CacheSegment create(CachingWordSegmenter.Policy policy, long capacity) {
+        switch (policy) {
+            case LFU:
+                return new LfuCacheSegment(capacity);
+            default:
+                return new LruCacheSegment(capacity);
+        }
+    }
+
+    /**
+     * Returns the words of the sentence and records the access, null if the
+     * sentence is not cached.
+     */
+    abstract String[] get(String sentence);
+
+    /**
+     * Adds the words of a sentence, evicting entries until the weight of the
+     * segment is within its capacity. An entry heavier than the capacity is
+     * not added.
+     *
+     * @return the number of entries evicted
+     */
+    abstract int put(String sentence, String[] words, long entryWeight);
+
+    abstract int size();
+
+    abstract void clear();
+}
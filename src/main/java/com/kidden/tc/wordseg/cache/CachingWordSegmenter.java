@@ -0,0 +1,214 @@
+package com.kidden.tc.wordseg.cache;
+
+import com.kidden.tc.wordseg.WordSegmenter;
+import com.kidden.tc.wordseg.maxent.WordSegModel;
+import com.kidden.tc.wordseg.maxent.WordSegModelProvider;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A word segmenter which remembers the words of the sentences it segmented.
+ *
+ * The cache is split into segments, each guarded by its own lock and holding
+ * an equal share of the maximum weight, so threads segmenting different
+ * sentences rarely wait for each other. A segment evicts the least recently
+ * or the least frequently used entries when it is full.
+ *
+ * If the wrapped segmenter is a {@link WordSegModelProvider}, the cache is
+ * cleared as soon as the segmenter reports a different model.
+ *
+ * @author kidden
+ */
+public class CachingWordSegmenter implements WordSegmenter {
+
+    /**
+     * The order in which entries are evicted.
+     */
+    public enum Policy {
+
+        /**
+         * Evict the least recently used entry first.
+         */
+        LRU,
+        /**
+         * Evict the least frequently used entry first.
+         */
+        LFU
+    }
+
+    /**
+     * Computes the weight of an entry.
+     */
+    public interface Weigher {
+
+        long weigh(String sentence, String[] words);
+    }
+
+    /**
+     * Every entry weighs 1, the maximum weight bounds the number of entries.
+     */
+    public static final Weigher ENTRIES = new Weigher() {
+        @Override
+        public long weigh(String sentence, String[] words) {
+            return 1;
+        }
+    };
+
+    /**
+     * An entry weighs the number of characters of the sentence.
+     */
+    public static final Weigher CHARACTERS = new Weigher() {
+        @Override
+        public long weigh(String sentence, String[] words) {
+            return Math.max(1, sentence.length());
+        }
+    };
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final WordSegmenter segmenter;
+    private final Weigher weigher;
+    private final CacheSegment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Changes whenever the cache is cleared, so words segmented before are
+     * not added afterwards.
+     */
+    private volatile long generation;
+
+    private volatile WordSegModel model;
+
+    /**
+     * Creates an LRU cache of at most the given number of sentences.
+     */
+    public CachingWordSegmenter(WordSegmenter segmenter, long maximumSize) {
+        this(segmenter, maximumSize, ENTRIES, Policy.LRU, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param segmenter the segmenter computing the entries
+     * @param maximumWeight the maximum total weight of the entries
+     * @param weigher the weigher of the entries
+     * @param policy the eviction policy
+     * @param concurrencyLevel the number of threads expected to use the cache at once
+     */
+    public CachingWordSegmenter(WordSegmenter segmenter, long maximumWeight, Weigher weigher, Policy policy,
+            int concurrencyLevel) {
+        if (maximumWeight < 1 || concurrencyLevel < 1) {
+            throw new IllegalArgumentException("The maximum weight and the concurrency level must be positive");
+        }
+
+        this.segmenter = segmenter;
+        this.weigher = weigher;
+
+        // a power of two segments, each holding at least one entry of weight 1
+        int count = 1;
+        while (count < concurrencyLevel && count * 2 <= maximumWeight) {
+            count *= 2;
+        }
+
+        segments = new CacheSegment[count];
+        for (int i = 0; i < count; i++) {
+            long capacity = maximumWeight / count + (i < maximumWeight % count ? 1 : 0);
+            segments[i] = CacheSegment.create(policy, capacity);
+        }
+
+        if (segmenter instanceof WordSegModelProvider) {
+            model = ((WordSegModelProvider) segmenter).getModel();
+        }
+    }
+
+    public WordSegmenter getSegmenter() {
+        return segmenter;
+    }
+
+    @Override
+    public String[] segment(String sentence) {
+        checkModel();
+
+        long current = generation;
+        CacheSegment segment = segmentFor(sentence);
+
+        String[] words;
+        synchronized (segment) {
+            words = segment.get(sentence);
+        }
+
+        if (words != null) {
+            hits.increment();
+            return words.clone();
+        }
+        misses.increment();
+
+        words = segmenter.segment(sentence);
+        long weight = weigher.weigh(sentence, words);
+        String[] cached = words.clone();
+
+        synchronized (segment) {
+            if (current == generation) {
+                evictions.add(segment.put(sentence, cached, weight));
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            generation++;
+        }
+
+        for (CacheSegment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        invalidations.increment();
+    }
+
+    public WordSegCacheStats getStats() {
+        long size = 0;
+        long weight = 0;
+        for (CacheSegment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+                weight += segment.weight;
+            }
+        }
+
+        return new WordSegCacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(),
+                size, weight);
+    }
+
+    private void checkModel() {
+        if (!(segmenter instanceof WordSegModelProvider)) {
+            return;
+        }
+
+        WordSegModel current = ((WordSegModelProvider) segmenter).getModel();
+        if (current != model) {
+            synchronized (this) {
+                if (current == model) {
+                    return;
+                }
+                model = current;
+            }
+            invalidateAll();
+        }
+    }
+
+    private CacheSegment segmentFor(String sentence) {
+        int h = sentence.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+}
@@ -0,0 +1,115 @@
+package com.kidden.tc.wordseg.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A cache segment evicting the least frequently used entries first, the
+ * least recently added one among entries used equally often.
+ *
+ * @author kidden
+ */
+final class LfuCacheSegment extends CacheSegment {
+
+    private static final class Entry {
+
+        final String[] words;
+        final long weight;
+        int frequency = 1;
+
+        Entry(String[] words, long weight) {
+            this.words = words;
+            this.weight = weight;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    // the sentences of every access count, in the order they reached it
+    private final TreeMap<Integer, LinkedHashSet<String>> frequencies = new TreeMap<Integer, LinkedHashSet<String>>();
+
+    LfuCacheSegment(long capacity) {
+        super(capacity);
+    }
+
+    @Override
+    String[] get(String sentence) {
+        Entry entry = entries.get(sentence);
+        if (entry == null) {
+            return null;
+        }
+
+        unlink(sentence, entry.frequency);
+        if (entry.frequency < Integer.MAX_VALUE) {
+            entry.frequency++;
+        }
+        link(sentence, entry.frequency);
+
+        return entry.words;
+    }
+
+    @Override
+    int put(String sentence, String[] words, long entryWeight) {
+        if (entryWeight > capacity) {
+            return 0;
+        }
+
+        Entry old = entries.remove(sentence);
+        if (old != null) {
+            unlink(sentence, old.frequency);
+            weight -= old.weight;
+        }
+
+        int evicted = 0;
+        while (weight + entryWeight > capacity) {
+            Map.Entry<Integer, LinkedHashSet<String>> least = frequencies.firstEntry();
+            Iterator<String> first = least.getValue().iterator();
+            String victim = first.next();
+            first.remove();
+            if (least.getValue().isEmpty()) {
+                frequencies.remove(least.getKey());
+            }
+
+            weight -= entries.remove(victim).weight;
+            evicted++;
+        }
+
+        entries.put(sentence, new Entry(words, entryWeight));
+        link(sentence, 1);
+        weight += entryWeight;
+
+        return evicted;
+    }
+
+    private void link(String sentence, int frequency) {
+        LinkedHashSet<String> sentences = frequencies.get(frequency);
+        if (sentences == null) {
+            sentences = new LinkedHashSet<String>();
+            frequencies.put(frequency, sentences);
+        }
+        sentences.add(sentence);
+    }
+
+    private void unlink(String sentence, int frequency) {
+        LinkedHashSet<String> sentences = frequencies.get(frequency);
+        sentences.remove(sentence);
+        if (sentences.isEmpty()) {
+            frequencies.remove(frequency);
+        }
+    }
+
+    @Override
+    int size() {
+        return entries.size();
+    }
+
+    @Override
+    void clear() {
+        entries.clear();
+        frequencies.clear();
+        weight = 0;
+    }
+}
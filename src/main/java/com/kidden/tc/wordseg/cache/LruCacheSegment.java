@@ -0,0 +1,72 @@
+package com.kidden.tc.wordseg.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A cache segment evicting the least recently used entries first.
+ *
+ * @author kidden
+ */
+final class LruCacheSegment extends CacheSegment {
+
+    private static final class Entry {
+
+        final String[] words;
+        final long weight;
+
+        Entry(String[] words, long weight) {
+            this.words = words;
+            this.weight = weight;
+        }
+    }
+
+    // iterates from the least to the most recently accessed entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    LruCacheSegment(long capacity) {
+        super(capacity);
+    }
+
+    @Override
+    String[] get(String sentence) {
+        Entry entry = entries.get(sentence);
+        return entry == null ? null : entry.words;
+    }
+
+    @Override
+    int put(String sentence, String[] words, long entryWeight) {
+        if (entryWeight > capacity) {
+            return 0;
+        }
+
+        Entry old = entries.remove(sentence);
+        if (old != null) {
+            weight -= old.weight;
+        }
+
+        int evicted = 0;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (weight + entryWeight > capacity) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+            evicted++;
+        }
+
+        entries.put(sentence, new Entry(words, entryWeight));
+        weight += entryWeight;
+
+        return evicted;
+    }
+
+    @Override
+    int size() {
+        return entries.size();
+    }
+
+    @Override
+    void clear() {
+        entries.clear();
+        weight = 0;
+    }
+}
@@ -0,0 +1,74 @@
+package com.kidden.tc.wordseg.cache;
+
+/**
+ * A snapshot of the statistics of a {@link CachingWordSegmenter}.
+ *
+ * @author kidden
+ */
+public final class WordSegCacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long invalidationCount;
+    private final long size;
+    private final long weight;
+
+    public WordSegCacheStats(long hitCount, long missCount, long evictionCount, long invalidationCount,
+            long size, long weight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.invalidationCount = invalidationCount;
+        this.size = size;
+        this.weight = weight;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Returns the share of requests answered from the cache, 1 if there was no
+     * request.
+     */
+    public double getHitRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns how often the cache was cleared because the model changed or on
+     * request.
+     */
+    public long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hitCount + ", misses=" + missCount + ", hitRate=" + getHitRate()
+                + ", evictions=" + evictionCount + ", invalidations=" + invalidationCount
+                + ", size=" + size + ", weight=" + weight;
+    }
+}
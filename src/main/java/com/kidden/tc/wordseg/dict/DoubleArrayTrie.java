@@ -0,0 +1,380 @@
+package com.kidden.tc.wordseg.dict;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable double-array trie.
+ *
+ * The child of node s along character c is t = base[s] + c + 1 if
+ * check[t] == base[s]; code 0 marks the end of a word. The two arrays are the
+ * whole trie, so it is written to a file as they are and loaded by mapping
+ * the file into memory, which takes no time and no heap however large the
+ * lexicon is.
+ *
+ * The file holds the magic number, the format version, the number of words,
+ * the length of the longest word and the length of the arrays, followed by
+ * the base and the check array, all as big-endian ints.
+ *
+ * @author kidden
+ */
+public final class DoubleArrayTrie implements WordSegDictionary {
+
+    private static final int MAGIC = 0x44415452;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_INTS = 5;
+
+    private final IntBuffer base;
+    private final IntBuffer check;
+    private final int length;
+    private final int size;
+    private final int maxWordLength;
+
+    private DoubleArrayTrie(IntBuffer base, IntBuffer check, int size, int maxWordLength) {
+        this.base = base;
+        this.check = check;
+        this.length = base.limit();
+        this.size = size;
+        this.maxWordLength = maxWordLength;
+    }
+
+    /**
+     * Builds the trie of the words. Empty words are ignored.
+     *
+     * @param words the words of the dictionary
+     */
+    public DoubleArrayTrie(Collection<? extends CharSequence> words) {
+        List<String> sorted = new ArrayList<String>(words.size());
+        for (CharSequence word : words) {
+            if (word.length() > 0) {
+                sorted.add(word.toString());
+            }
+        }
+        String[] keys = sorted.toArray(new String[sorted.size()]);
+        Arrays.sort(keys);
+
+        // drop duplicates
+        int count = 0;
+        int longest = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (count == 0 || !keys[i].equals(keys[count - 1])) {
+                keys[count++] = keys[i];
+                longest = Math.max(longest, keys[i].length());
+            }
+        }
+
+        Builder builder = new Builder(Arrays.copyOf(keys, count));
+        int used = builder.build();
+
+        this.base = IntBuffer.wrap(Arrays.copyOf(builder.base, used));
+        this.check = IntBuffer.wrap(Arrays.copyOf(builder.check, used));
+        this.length = used;
+        this.size = count;
+        this.maxWordLength = longest;
+    }
+
+    /**
+     * Maps a trie file into memory.
+     *
+     * @param file the file written by {@link #save(File)}
+     * @return the trie backed by the mapped file
+     * @throws IOException if the file can not be read or is not a trie file
+     */
+    public static DoubleArrayTrie map(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            ByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+            return fromBuffer(buffer);
+        }
+    }
+
+    /**
+     * Reads a trie into the heap.
+     *
+     * @param in the stream of a trie file
+     * @return the trie
+     * @throws IOException if the stream can not be read or is not a trie file
+     */
+    public static DoubleArrayTrie load(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int[] header = new int[HEADER_INTS];
+        for (int i = 0; i < HEADER_INTS; i++) {
+            header[i] = data.readInt();
+        }
+        checkHeader(header);
+
+        int[] base = new int[header[4]];
+        int[] check = new int[header[4]];
+        for (int i = 0; i < base.length; i++) {
+            base[i] = data.readInt();
+        }
+        for (int i = 0; i < check.length; i++) {
+            check[i] = data.readInt();
+        }
+
+        return new DoubleArrayTrie(IntBuffer.wrap(base), IntBuffer.wrap(check), header[2], header[3]);
+    }
+
+    private static DoubleArrayTrie fromBuffer(ByteBuffer buffer) throws IOException {
+        IntBuffer ints = buffer.asIntBuffer();
+        if (ints.limit() < HEADER_INTS) {
+            throw new IOException("Not a double-array trie file");
+        }
+
+        int[] header = new int[HEADER_INTS];
+        ints.get(header);
+        checkHeader(header);
+
+        int length = header[4];
+        if (ints.limit() < HEADER_INTS + 2L * length) {
+            throw new IOException("The double-array trie file is truncated");
+        }
+
+        // through Buffer, whose methods return Buffer on every Java version
+        ((Buffer) ints).position(HEADER_INTS).limit(HEADER_INTS + length);
+        IntBuffer base = ints.slice();
+        ((Buffer) ints).limit(HEADER_INTS + 2 * length).position(HEADER_INTS + length);
+        IntBuffer check = ints.slice();
+
+        return new DoubleArrayTrie(base, check, header[2], header[3]);
+    }
+
+    private static void checkHeader(int[] header) throws IOException {
+        if (header[0] != MAGIC) {
+            throw new IOException("Not a double-array trie file");
+        }
+        if (header[1] != VERSION) {
+            throw new IOException("Unsupported double-array trie version: " + header[1]);
+        }
+    }
+
+    /**
+     * Writes the trie to a file which {@link #map(File)} can map.
+     *
+     * @param file the file to write
+     * @throws IOException if the file can not be written
+     */
+    public void save(File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            save(out);
+        }
+    }
+
+    /**
+     * Writes the trie to the stream. The stream is flushed, not closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream can not be written
+     */
+    public void save(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(size);
+        data.writeInt(maxWordLength);
+        data.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            data.writeInt(base.get(i));
+        }
+        for (int i = 0; i < length; i++) {
+            data.writeInt(check.get(i));
+        }
+        data.flush();
+    }
+
+    /**
+     * Returns the child of the node along the code, -1 if there is none.
+     */
+    private int child(int node, int code) {
+        int begin = base.get(node);
+        int t = begin + code;
+
+        return begin > 0 && t < length && check.get(t) == begin ? t : -1;
+    }
+
+    @Override
+    public boolean contains(CharSequence text, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+
+        int node = 0;
+        for (int i = start; i < end && node >= 0; i++) {
+            node = child(node, text.charAt(i) + 1);
+        }
+
+        return node >= 0 && child(node, 0) >= 0;
+    }
+
+    @Override
+    public int prefixMatches(CharSequence text, int start, int end, int[] ends) {
+        int count = 0;
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            node = child(node, text.charAt(i) + 1);
+            if (node < 0) {
+                break;
+            }
+            if (child(node, 0) >= 0) {
+                ends[count++] = i + 1;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public int getMaxWordLength() {
+        return maxWordLength;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Places the nodes of the sorted words depth by depth, every sibling group
+     * at the first offset where all of its codes are free.
+     */
+    private static final class Builder {
+
+        private final String[] keys;
+
+        int[] base = new int[1024];
+        int[] check = new int[1024];
+        private final BitSet usedBegins = new BitSet();
+        private int nextCheckPos;
+        private int maxUsed;
+
+        Builder(String[] keys) {
+            this.keys = keys;
+        }
+
+        /**
+         * Builds the arrays and returns their used length.
+         */
+        int build() {
+            // the root keeps base 0 and check -1, so no child matches it
+            check[0] = -1;
+            nextCheckPos = 1;
+
+            int[] root = siblings(0, keys.length, 0);
+            int rootBegin = root.length > 0 ? insert(root, 0, keys.length) : 1;
+            base[0] = rootBegin;
+
+            return maxUsed + 1;
+        }
+
+        /**
+         * Returns the codes at the depth of the words in [left, right) followed
+         * by the start of the words of each code, as pairs.
+         */
+        private int[] siblings(int left, int right, int depth) {
+            int[] result = new int[2 * Math.min(right - left, 65537)];
+            int count = 0;
+            int previous = -1;
+            for (int i = left; i < right; i++) {
+                String key = keys[i];
+                int code = key.length() == depth ? 0 : key.charAt(depth) + 1;
+                if (code != previous) {
+                    result[2 * count] = code;
+                    result[2 * count + 1] = i;
+                    count++;
+                    previous = code;
+                }
+            }
+
+            return Arrays.copyOf(result, 2 * count);
+        }
+
+        /**
+         * Places a sibling group of the words ending before right and returns
+         * its begin.
+         */
+        private int insert(int[] siblings, int depth, int right) {
+            int first = siblings[0];
+            int last = siblings[siblings.length - 2];
+
+            int begin;
+            int pos = Math.max(first + 1, nextCheckPos) - 1;
+            outer:
+            while (true) {
+                pos++;
+                ensure(pos);
+                if (check[pos] != 0) {
+                    continue;
+                }
+
+                begin = pos - first;
+                if (begin < 1 || usedBegins.get(begin)) {
+                    continue;
+                }
+                ensure(begin + last);
+
+                for (int i = 2; i < siblings.length; i += 2) {
+                    if (check[begin + siblings[i]] != 0) {
+                        continue outer;
+                    }
+                }
+                break;
+            }
+
+            // skip the dense prefix in later searches
+            while (nextCheckPos < check.length && check[nextCheckPos] != 0) {
+                nextCheckPos++;
+            }
+
+            usedBegins.set(begin);
+            for (int i = 0; i < siblings.length; i += 2) {
+                int t = begin + siblings[i];
+                check[t] = begin;
+                maxUsed = Math.max(maxUsed, t);
+            }
+
+            int count = siblings.length / 2;
+            for (int i = 0; i < count; i++) {
+                int code = siblings[2 * i];
+                int t = begin + code;
+                if (code == 0) {
+                    // the end of a word has no children
+                    base[t] = -1;
+                    continue;
+                }
+
+                int left = siblings[2 * i + 1];
+                int childRight = i + 1 < count ? siblings[2 * i + 3] : right;
+                // insert may grow the arrays, so store after it returned
+                int childBegin = insert(siblings(left, childRight, depth + 1), depth + 1, childRight);
+                base[t] = childBegin;
+            }
+
+            return begin;
+        }
+
+        private void ensure(int index) {
+            if (index >= base.length) {
+                int capacity = Math.max(index + 1, base.length * 2);
+                base = Arrays.copyOf(base, capacity);
+                check = Arrays.copyOf(check, capacity);
+            }
+        }
+    }
+}
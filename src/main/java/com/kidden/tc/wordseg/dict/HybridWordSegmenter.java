@@ -0,0 +1,178 @@
+package com.kidden.tc.wordseg.dict;
+
+import com.kidden.tc.wordseg.WordSegmenter;
+import com.kidden.tc.wordseg.maxent.WordSegModel;
+import com.kidden.tc.wordseg.maxent.WordSegModelProvider;
+import com.kidden.tc.wordseg.maxent.WordSegmenterME;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A word segmenter which takes the words the dictionary is sure about and
+ * asks the maxent model for the rest of the sentence.
+ *
+ * The sentence is matched forward and backward, always with the longest
+ * dictionary word. Where both matchings agree on a word of two or more
+ * characters, or on a single dictionary character standing between such
+ * words, the word is taken as it is. Stretches where the matchings disagree,
+ * characters outside the dictionary and runs of single characters, the usual
+ * shape of an unknown word, are segmented by the model.
+ *
+ * @author kidden
+ */
+public class HybridWordSegmenter implements WordSegmenter, WordSegModelProvider {
+
+    private final WordSegmenterME segmenter;
+    private final WordSegDictionary dictionary;
+
+    private final LongAdder dictionaryCharacters = new LongAdder();
+    private final LongAdder modelCharacters = new LongAdder();
+
+    public HybridWordSegmenter(WordSegmenterME segmenter, WordSegDictionary dictionary) {
+        this.segmenter = segmenter;
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public WordSegModel getModel() {
+        return segmenter.getModel();
+    }
+
+    public WordSegDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the number of characters segmented by the dictionary.
+     */
+    public long getDictionaryCharacters() {
+        return dictionaryCharacters.sum();
+    }
+
+    /**
+     * Returns the number of characters segmented by the model.
+     */
+    public long getModelCharacters() {
+        return modelCharacters.sum();
+    }
+
+    @Override
+    public String[] segment(String sentence) {
+        int[] boundaries = new int[sentence.length()];
+        int count = segment(sentence, boundaries);
+
+        String[] words = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            words[i] = sentence.substring(start, boundaries[i]);
+            start = boundaries[i];
+        }
+
+        return words;
+    }
+
+    @Override
+    public int segment(CharSequence text, int[] boundaries) {
+        int n = text.length();
+        if (boundaries.length < n) {
+            throw new IllegalArgumentException("The boundaries array is shorter than the text: "
+                    + boundaries.length + " < " + n);
+        }
+
+        // the longest word starting at and ending at every offset
+        int[] longestFrom = new int[n + 1];
+        int[] longestTo = new int[n + 1];
+        boolean[] single = new boolean[n];
+        for (int i = 0; i <= n; i++) {
+            longestFrom[i] = i;
+            longestTo[i] = i;
+        }
+
+        int[] ends = new int[Math.max(1, dictionary.getMaxWordLength())];
+        for (int i = 0; i < n; i++) {
+            int matches = dictionary.prefixMatches(text, i, Math.min(n, i + ends.length), ends);
+            for (int m = 0; m < matches; m++) {
+                int end = ends[m];
+                longestFrom[i] = Math.max(longestFrom[i], end);
+                if (longestTo[end] == end) {
+                    longestTo[end] = i;
+                }
+                if (end == i + 1) {
+                    single[i] = true;
+                }
+            }
+        }
+
+        // cuts of the forward and the backward maximum matching
+        boolean[] forward = new boolean[n + 1];
+        boolean[] backward = new boolean[n + 1];
+        forward[0] = true;
+        for (int i = 0; i < n;) {
+            i = Math.max(longestFrom[i], i + 1);
+            forward[i] = true;
+        }
+        for (int i = n; i > 0;) {
+            backward[i] = true;
+            i = Math.min(longestTo[i], i - 1);
+        }
+        backward[0] = true;
+
+        int count = 0;
+        int hardStart = -1;
+        int start = 0;
+        for (int end = 1; end <= n; end++) {
+            if (!forward[end] || !backward[end]) {
+                continue;
+            }
+
+            // a word both matchings agree on if no cut lies inside
+            boolean agreed = true;
+            for (int i = start + 1; i < end && agreed; i++) {
+                agreed = !forward[i] && !backward[i];
+            }
+
+            boolean sure = agreed && (end - start > 1 || (single[start]
+                    && !isSingle(start - 1, forward, backward) && !isSingle(end, forward, backward)));
+
+            if (sure) {
+                if (hardStart >= 0) {
+                    count = decode(text, hardStart, start, boundaries, count);
+                    hardStart = -1;
+                }
+
+                boundaries[count++] = end;
+                dictionaryCharacters.add(end - start);
+            } else if (hardStart < 0) {
+                hardStart = start;
+            }
+
+            start = end;
+        }
+
+        if (hardStart >= 0) {
+            count = decode(text, hardStart, n, boundaries, count);
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns whether the character at the offset is a single character word
+     * of both matchings.
+     */
+    private static boolean isSingle(int index, boolean[] forward, boolean[] backward) {
+        if (index < 0 || index + 1 >= forward.length) {
+            return false;
+        }
+
+        return forward[index + 1] && backward[index + 1] && forward[index] && backward[index];
+    }
+
+    private int decode(CharSequence text, int start, int end, int[] boundaries, int count) {
+        int[] words = new int[end - start];
+        int n = segmenter.segment(text, start, end, words);
+        System.arraycopy(words, 0, boundaries, count, n);
+        modelCharacters.add(end - start);
+
+        return count + n;
+    }
+}
@@ -0,0 +1,169 @@
+package com.kidden.tc.wordseg.dict;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable character trie stored in flat arrays.
+ *
+ * The nodes are numbered in breadth-first order, so the children of a node
+ * are a run of consecutive nodes sorted by their character. A node keeps the
+ * character of the edge leading to it, the first of its children and whether
+ * a word ends at it; a child is found by binary search over the run.
+ *
+ * @author kidden
+ */
+public final class TrieDictionary implements WordSegDictionary {
+
+    private final char[] labels;
+
+    /**
+     * The children of node i are the nodes firstChild[i] to firstChild[i + 1] - 1.
+     */
+    private final int[] firstChild;
+
+    private final long[] terminals;
+
+    private final int size;
+
+    private final int maxWordLength;
+
+    private static final class Node {
+
+        final TreeMap<Character, Node> children = new TreeMap<Character, Node>();
+        boolean terminal;
+    }
+
+    /**
+     * Builds the trie of the words. Empty words are ignored.
+     *
+     * @param words the words of the dictionary
+     */
+    public TrieDictionary(Collection<? extends CharSequence> words) {
+        Node root = new Node();
+        int count = 0;
+        int longest = 0;
+        for (CharSequence word : words) {
+            if (word.length() == 0) {
+                continue;
+            }
+
+            Node node = root;
+            for (int i = 0; i < word.length(); i++) {
+                Node child = node.children.get(word.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(word.charAt(i), child);
+                }
+                node = child;
+            }
+
+            if (!node.terminal) {
+                node.terminal = true;
+                count++;
+                longest = Math.max(longest, word.length());
+            }
+        }
+
+        // breadth-first numbering
+        List<Node> nodes = new ArrayList<Node>();
+        List<Character> edges = new ArrayList<Character>();
+        nodes.add(root);
+        edges.add('\0');
+        for (int i = 0; i < nodes.size(); i++) {
+            for (Map.Entry<Character, Node> child : nodes.get(i).children.entrySet()) {
+                nodes.add(child.getValue());
+                edges.add(child.getKey());
+            }
+        }
+
+        labels = new char[nodes.size()];
+        firstChild = new int[nodes.size() + 1];
+        terminals = new long[(nodes.size() + 63) >>> 6];
+
+        int next = 1;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            labels[i] = edges.get(i);
+            firstChild[i] = next;
+            next += node.children.size();
+            if (node.terminal) {
+                terminals[i >>> 6] |= 1L << i;
+            }
+        }
+        firstChild[nodes.size()] = next;
+
+        size = count;
+        maxWordLength = longest;
+    }
+
+    /**
+     * Returns the child of the node along the character, -1 if there is none.
+     */
+    private int child(int node, char c) {
+        int lo = firstChild[node];
+        int hi = firstChild[node + 1] - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                lo = mid + 1;
+            } else if (label > c) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean isTerminal(int node) {
+        return (terminals[node >>> 6] & (1L << node)) != 0;
+    }
+
+    @Override
+    public boolean contains(CharSequence text, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+
+        int node = 0;
+        for (int i = start; i < end && node >= 0; i++) {
+            node = child(node, text.charAt(i));
+        }
+
+        return node >= 0 && isTerminal(node);
+    }
+
+    @Override
+    public int prefixMatches(CharSequence text, int start, int end, int[] ends) {
+        int count = 0;
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            node = child(node, text.charAt(i));
+            if (node < 0) {
+                break;
+            }
+            if (isTerminal(node)) {
+                ends[count++] = i + 1;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public int getMaxWordLength() {
+        return maxWordLength;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
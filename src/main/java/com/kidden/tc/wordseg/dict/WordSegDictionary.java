@@ -0,0 +1,52 @@
+package com.kidden.tc.wordseg.dict;
+
+/**
+ * A read-only word list looked up over ranges of a text, so no word strings
+ * are created for the lookups.
+ *
+ * @author kidden
+ */
+public interface WordSegDictionary {
+
+    /**
+     * Returns whether the range of the text is a word of the dictionary.
+     *
+     * @param text the text
+     * @param start the offset of the first character of the word
+     * @param end the offset after the last character of the word
+     * @return true if the dictionary holds the word
+     */
+    public boolean contains(CharSequence text, int start, int end);
+
+    public default boolean contains(CharSequence word) {
+        return contains(word, 0, word.length());
+    }
+
+    /**
+     * Finds the words of the dictionary which start at the given offset of the
+     * text and end no later than the end offset.
+     *
+     * @param text the text
+     * @param start the offset the words start at
+     * @param end the offset the words must end before or at
+     * @param ends the array receiving the end offsets of the words in ascending
+     * order, at least {@link #getMaxWordLength()} long or as long as the range
+     * @return the number of words found
+     */
+    public int prefixMatches(CharSequence text, int start, int end, int[] ends);
+
+    /**
+     * Returns the length of the longest word.
+     *
+     * @return the length of the longest word, 0 if the dictionary is empty
+     */
+    public int getMaxWordLength();
+
+    /**
+     * Returns the number of words.
+     *
+     * @return the number of words
+     */
+    public int size();
+
+}
@@ -0,0 +1,237 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.text.DecimalFormat;
+import java.util.Arrays;
+
+import opennlp.tools.ml.model.AbstractModel;
+
+/**
+ * The evaluation shared by the keyed models: the weights of the known
+ * predicates are summed per outcome and turned into probabilities the way the
+ * trained model type does. Subclasses decide how predicates and weights are
+ * stored.
+ *
+ * @author kidden
+ */
+abstract class AbstractWordSegKeyedModel implements WordSegKeyedModel {
+
+    final String[] outcomes;
+
+    final AbstractModel.ModelType modelType;
+
+    final double correctionConstant;
+
+    final double correctionParam;
+
+    final int predicates;
+
+    AbstractWordSegKeyedModel(String[] outcomes, AbstractModel.ModelType modelType,
+            double correctionConstant, double correctionParam, int predicates) {
+        this.outcomes = outcomes;
+        this.modelType = modelType;
+        this.correctionConstant = correctionConstant;
+        this.correctionParam = correctionParam;
+        this.predicates = predicates;
+    }
+
+    /**
+     * Returns the slot of the key or -1 if the predicate is unknown
+     */
+    abstract int slot(long key);
+
+    /**
+     * Adds the weights of the predicate in the slot times the value to the
+     * sums of the outcomes.
+     */
+    abstract void add(int slot, double value, double[] sums);
+
+    /**
+     * Returns whether the outcome occurs with the predicate in the slot. Only
+     * called if the model has a correction parameter.
+     */
+    abstract boolean isActive(int slot, int outcome);
+
+    /**
+     * Returns the slot of the key in an open addressing table of keys, -1 if
+     * the key is not in the table.
+     */
+    static int slot(long[] keys, int mask, long key) {
+        int slot = (int) key & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                return slot;
+            } else if (k == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public boolean contains(long key) {
+        return slot(key) >= 0;
+    }
+
+    @Override
+    public int getNumPredicates() {
+        return predicates;
+    }
+
+    public double[] eval(String[] context) {
+        return eval(context, null, new double[outcomes.length]);
+    }
+
+    public double[] eval(String[] context, float[] values) {
+        return eval(context, values, new double[outcomes.length]);
+    }
+
+    public double[] eval(String[] context, double[] probs) {
+        return eval(context, null, probs);
+    }
+
+    public double[] eval(String[] context, float[] values, double[] probs) {
+        Arrays.fill(probs, 0, outcomes.length, 0);
+
+        for (int ci = 0; ci < context.length; ci++) {
+            int slot = slot(WordSegFeatureHash.hash(context[ci]));
+            if (slot >= 0) {
+                add(slot, values != null ? values[ci] : 1, probs);
+            }
+        }
+
+        scale(probs);
+        if (correctionParam != 0) {
+            for (int oid = 0; oid < outcomes.length; oid++) {
+                int features = 0;
+                for (int ci = 0; ci < context.length; ci++) {
+                    int slot = slot(WordSegFeatureHash.hash(context[ci]));
+                    if (slot >= 0 && isActive(slot, oid)) {
+                        features++;
+                    }
+                }
+                probs[oid] += (1.0 - features / correctionConstant) * correctionParam;
+            }
+        }
+
+        return normalize(probs);
+    }
+
+    @Override
+    public double[] eval(long[] context, int length, double[] probs) {
+        Arrays.fill(probs, 0, outcomes.length, 0);
+
+        for (int ci = 0; ci < length; ci++) {
+            int slot = slot(context[ci]);
+            if (slot >= 0) {
+                add(slot, 1, probs);
+            }
+        }
+
+        scale(probs);
+        if (correctionParam != 0) {
+            for (int oid = 0; oid < outcomes.length; oid++) {
+                int features = 0;
+                for (int ci = 0; ci < length; ci++) {
+                    int slot = slot(context[ci]);
+                    if (slot >= 0 && isActive(slot, oid)) {
+                        features++;
+                    }
+                }
+                probs[oid] += (1.0 - features / correctionConstant) * correctionParam;
+            }
+        }
+
+        return normalize(probs);
+    }
+
+    /**
+     * Scales the summed weights of a GIS model by the inverse correction
+     * constant. The correction feature is added after the scaling.
+     */
+    private void scale(double[] sums) {
+        if (modelType == AbstractModel.ModelType.Maxent) {
+            double constantInverse = 1.0 / correctionConstant;
+            for (int oid = 0; oid < outcomes.length; oid++) {
+                sums[oid] *= constantInverse;
+            }
+        }
+    }
+
+    /**
+     * Turns the summed weights into probabilities the same way the trained
+     * model type does.
+     */
+    private double[] normalize(double[] sums) {
+        int numOutcomes = outcomes.length;
+        double normal = 0.0;
+
+        if (modelType == AbstractModel.ModelType.Perceptron) {
+            double maxPrior = 1;
+            for (int oid = 0; oid < numOutcomes; oid++) {
+                maxPrior = Math.max(maxPrior, Math.abs(sums[oid]));
+            }
+            for (int oid = 0; oid < numOutcomes; oid++) {
+                sums[oid] = Math.exp(sums[oid] / maxPrior);
+                normal += sums[oid];
+            }
+        } else {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int oid = 0; oid < numOutcomes; oid++) {
+                max = Math.max(max, sums[oid]);
+            }
+            for (int oid = 0; oid < numOutcomes; oid++) {
+                sums[oid] = Math.exp(sums[oid] - max);
+                normal += sums[oid];
+            }
+        }
+
+        for (int oid = 0; oid < numOutcomes; oid++) {
+            sums[oid] /= normal;
+        }
+
+        return sums;
+    }
+
+    public String getBestOutcome(double[] ocs) {
+        int best = 0;
+        for (int i = 1; i < ocs.length; i++) {
+            if (ocs[i] > ocs[best]) {
+                best = i;
+            }
+        }
+        return outcomes[best];
+    }
+
+    public String getAllOutcomes(double[] ocs) {
+        if (ocs.length != outcomes.length) {
+            return "The double array sent as a parameter to " + getClass().getSimpleName()
+                    + ".getAllOutcomes() must not have been produced by this model.";
+        }
+
+        DecimalFormat df = new DecimalFormat("0.0000");
+        StringBuilder sb = new StringBuilder(ocs.length * 2);
+        sb.append(outcomes[0]).append("[").append(df.format(ocs[0])).append("]");
+        for (int i = 1; i < ocs.length; i++) {
+            sb.append("  ").append(outcomes[i]).append("[").append(df.format(ocs[i])).append("]");
+        }
+        return sb.toString();
+    }
+
+    public String getOutcome(int i) {
+        return outcomes[i];
+    }
+
+    public int getIndex(String outcome) {
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i].equals(outcome)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getNumOutcomes() {
+        return outcomes.length;
+    }
+}
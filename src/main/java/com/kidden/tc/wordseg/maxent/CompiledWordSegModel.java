@@ -0,0 +1,168 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import opennlp.tools.ml.model.AbstractModel;
+import opennlp.tools.ml.model.Context;
+
+/**
+ * A trained {@link MaxentModel} compiled into a primitive table for fast
+ * evaluation.
+ *
+ * The predicates are replaced by their {@link WordSegFeatureHash} keys and
+ * stored in an open addressing table of longs; each slot holds the weights of
+ * all outcomes as floats. Evaluation hashes the characters of a predicate
+ * itself, so it neither allocates nor calls {@link String#hashCode()}, and
+ * {@link #eval(long[], int, double[])} scores keys computed without any string
+ * at all. The model is immutable and may be shared by many threads.
+ *
+ * @author kidden
+ */
+public final class CompiledWordSegModel extends AbstractWordSegKeyedModel {
+
+    private final long[] keys;
+
+    /**
+     * The weights of the outcomes indexed by slot * outcomes + outcome
+     */
+    private final float[] weights;
+
+    /**
+     * The outcomes which occur with the predicate of each slot, one bit per
+     * outcome. Only needed by maxent models with a correction parameter.
+     */
+    private final int[] activeOutcomes;
+
+    private final int mask;
+
+    private CompiledWordSegModel(String[] outcomes, AbstractModel.ModelType modelType,
+            double correctionConstant, double correctionParam, int predicates) {
+        super(outcomes, modelType, correctionConstant, correctionParam, predicates);
+
+        int capacity = Integer.highestOneBit(Math.max(4, predicates + predicates / 3) * 2 - 1);
+        keys = new long[capacity];
+        weights = new float[capacity * outcomes.length];
+        activeOutcomes = correctionParam != 0 ? new int[capacity] : null;
+        mask = capacity - 1;
+    }
+
+    /**
+     * Compiles a trained model.
+     *
+     * @param model a GIS, quasi newton or perceptron model
+     * @return the compiled model
+     */
+    @SuppressWarnings("unchecked")
+    public static CompiledWordSegModel compile(AbstractModel model) {
+        AbstractModel.ModelType type = model.getModelType();
+        if (type != AbstractModel.ModelType.Maxent && type != AbstractModel.ModelType.MaxentQn
+                && type != AbstractModel.ModelType.Perceptron) {
+            throw new IllegalArgumentException("Model type is not supported: " + type);
+        }
+
+        Object[] data = model.getDataStructures();
+        Context[] params = (Context[]) data[0];
+        Map<String, Integer> pmap = (Map<String, Integer>) data[1];
+        String[] outcomeNames = (String[]) data[2];
+        double correctionConstant = (Integer) data[3];
+        double correctionParam = type == AbstractModel.ModelType.Maxent ? (Double) data[4] : 0;
+
+        if (correctionParam != 0 && outcomeNames.length > Integer.SIZE) {
+            throw new IllegalArgumentException("Too many outcomes for a correction parameter: "
+                    + outcomeNames.length);
+        }
+
+        CompiledWordSegModel compiled = new CompiledWordSegModel(outcomeNames.clone(), type,
+                correctionConstant, correctionParam, pmap.size());
+
+        for (Map.Entry<String, Integer> predicate : pmap.entrySet()) {
+            Context context = params[predicate.getValue()];
+            compiled.put(WordSegFeatureHash.hash(predicate.getKey()), context.getOutcomes(),
+                    context.getParameters());
+        }
+
+        return compiled;
+    }
+
+    private void put(long key, int[] contextOutcomes, double[] parameters) {
+        int slot = (int) key & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                throw new IllegalArgumentException("Predicate key collision: " + key);
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        for (int i = 0; i < contextOutcomes.length; i++) {
+            weights[slot * outcomes.length + contextOutcomes[i]] = (float) parameters[i];
+            if (activeOutcomes != null) {
+                activeOutcomes[slot] |= 1 << contextOutcomes[i];
+            }
+        }
+    }
+
+    /**
+     * Writes the model in the layout of {@link WordSegModelFormat} with 32 bit
+     * weights, which {@link MappedWordSegModel} maps. The stream is flushed,
+     * not closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream can not be written
+     */
+    public void save(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        new WordSegModelFormat(32, modelType, correctionConstant, correctionParam, outcomes, predicates,
+                keys.length, activeOutcomes != null).writeFloats(data, keys, activeOutcomes, weights);
+        data.flush();
+    }
+
+    public void save(File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            save(out);
+        }
+    }
+
+    @Override
+    int slot(long key) {
+        return slot(keys, mask, key);
+    }
+
+    @Override
+    void add(int slot, double value, double[] sums) {
+        int base = slot * outcomes.length;
+        for (int oid = 0; oid < outcomes.length; oid++) {
+            sums[oid] += weights[base + oid] * value;
+        }
+    }
+
+    @Override
+    boolean isActive(int slot, int outcome) {
+        return (activeOutcomes[slot] & (1 << outcome)) != 0;
+    }
+
+    /**
+     * The slots of the open addressing table, empty slots have key 0.
+     */
+    long[] getKeys() {
+        return keys;
+    }
+
+    float[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * The outcome bits of every slot, null if the model has no correction
+     * parameter.
+     */
+    int[] getActiveOutcomes() {
+        return activeOutcomes;
+    }
+}
@@ -10,7 +10,18 @@ import java.util.List;
  * 
  * @author kidden
  */
-public class DefaultWordSegContextGenerator implements WordSegContextGenerator {
+public class DefaultWordSegContextGenerator implements WordSegContextGenerator, WordSegContextKeyGenerator {
+
+    private static final long C0 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c0=");
+    private static final long C_1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_1=");
+    private static final long C_2 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_2");
+    private static final long C1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c1=");
+    private static final long C2 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c2=");
+    private static final long C_2C_1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_2c_1=");
+    private static final long C_1C0 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_1c0=");
+    private static final long C0C1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c0c1=");
+    private static final long C1C2 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c1c2=");
+    private static final long C_1C1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_1c1=");
 
     public String[] getContext(int index, String[] sequence, String[] priorDecisions, Object[] additionalContext) {
         return getContext(index, sequence, priorDecisions);
@@ -83,4 +94,85 @@ public class DefaultWordSegContextGenerator implements WordSegContextGenerator {
         return contexts;
     }
 
+    @Override
+    public boolean isTagIndependent() {
+        return true;
+    }
+
+    @Override
+    public int getMaxContextKeys() {
+        return 10;
+    }
+
+    @Override
+    public int getContextKeys(int index, CharSequence chars, String[] tags, long[] keys) {
+        return getDefaultContextKeys(index, chars, keys);
+    }
+
+    /**
+     * Writes the keys of the features returned by {@link #getContext(int, Object[], String[])}
+     * in the same order.
+     */
+    static int getDefaultContextKeys(int index, CharSequence chars, long[] keys) {
+        int length = chars.length();
+        boolean has_2 = index - 2 >= 0;
+        boolean has_1 = index - 1 >= 0;
+        boolean has1 = length > index + 1;
+        boolean has2 = length > index + 2;
+
+        char c0 = chars.charAt(index);
+        char c_1 = has_1 ? chars.charAt(index - 1) : 0;
+        char c_2 = has_2 ? chars.charAt(index - 2) : 0;
+        char c1 = has1 ? chars.charAt(index + 1) : 0;
+        char c2 = has2 ? chars.charAt(index + 2) : 0;
+
+        int n = 0;
+        keys[n++] = key(C0, c0);
+
+        if (has_1) {
+            keys[n++] = key(C_1, c_1);
+
+            if (has_2) {
+                keys[n++] = key(C_2, c_2);
+            }
+        }
+
+        if (has1) {
+            keys[n++] = key(C1, c1);
+            if (has2) {
+                keys[n++] = key(C2, c2);
+            }
+        }
+
+        if (has_2) {
+            keys[n++] = key(C_2C_1, c_2, c_1);
+        }
+
+        if (has_1) {
+            keys[n++] = key(C_1C0, c_1, c0);
+        }
+
+        if (has1) {
+            keys[n++] = key(C0C1, c0, c1);
+        }
+
+        if (has2) {
+            keys[n++] = key(C1C2, c1, c2);
+        }
+
+        if (has_1 && has1) {
+            keys[n++] = key(C_1C1, c_1, c1);
+        }
+
+        return n;
+    }
+
+    private static long key(long template, char a) {
+        return WordSegFeatureHash.finish(WordSegFeatureHash.update(template, a));
+    }
+
+    private static long key(long template, char a, char b) {
+        return WordSegFeatureHash.finish(WordSegFeatureHash.update(WordSegFeatureHash.update(template, a), b));
+    }
+
 }
@@ -14,20 +14,17 @@ public class DefaultWordSegSequenceValidator implements SequenceValidator<String
 //      System.out.println("" + i + Arrays.toString(inputSequence) + " " +
 //      Arrays.toString(outcomesSequence) + " " + outcome);
 
+        int tag = WordSegTags.id(outcome);
+        if (tag < 0) {
+            return true;
+        }
+
         if (i == 0) {
-            return outcome.equals("S") || outcome.equals("B");
+            return WordSegTags.isValidStart(tag);
         } else {
-            if (outcome.equals("S")) {
-                return outcomesSequence[i - 1].equals("S") || outcomesSequence[i - 1].equals("E");
-            } else if (outcome.equals("B")) {
-                return outcomesSequence[i - 1].equals("S") || outcomesSequence[i - 1].equals("E");
-            } else if (outcome.equals("M")) {
-                return outcomesSequence[i - 1].equals("B") || outcomesSequence[i - 1].equals("M");
-            } else if (outcome.equals("E")) {
-                return outcomesSequence[i - 1].equals("B") || outcomesSequence[i - 1].equals("M");
-            }
-        }
+            int previousTag = WordSegTags.id(outcomesSequence[i - 1]);
 
-        return true;
+            return previousTag >= 0 && WordSegTags.isValidTransition(previousTag, tag);
+        }
     }
 }
@@ -0,0 +1,159 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A keyed model scored straight from a model file mapped into memory.
+ *
+ * The file has the layout of {@link WordSegModelFormat}, as written by
+ * {@link CompiledWordSegModel#save(java.io.OutputStream)} with float weights
+ * or by {@link QuantizedWordSegModel#save(java.io.OutputStream)} with 8 or 16
+ * bit weights. Loading reads only the header, the tables stay in the page
+ * cache and are shared by every process mapping the same file. Files larger
+ * than 2 GB can not be mapped.
+ *
+ * To segment with it, put it into a {@link WordSegModel} in place of the
+ * trained model. The model is immutable and may be shared by many threads.
+ *
+ * @author kidden
+ */
+public final class MappedWordSegModel extends AbstractWordSegKeyedModel {
+
+    private final int bits;
+
+    private final LongBuffer keys;
+
+    private final int mask;
+
+    private final float[] scales;
+
+    private final IntBuffer activeOutcomes;
+
+    /**
+     * The weights indexed by slot * outcomes + outcome, one of them is set
+     * depending on the bits of a weight.
+     */
+    private final ByteBuffer bytes;
+    private final ShortBuffer shorts;
+    private final FloatBuffer floats;
+
+    private MappedWordSegModel(WordSegModelFormat format, MappedByteBuffer buffer) throws IOException {
+        super(format.outcomes, format.modelType, format.correctionConstant, format.correctionParam,
+                format.predicates);
+
+        bits = format.bits;
+        mask = format.capacity - 1;
+
+        int numOutcomes = format.outcomes.length;
+        long capacity = format.capacity;
+        long keysStart = format.length();
+        long scalesStart = keysStart + 8 * capacity;
+        long activeStart = scalesStart + 4L * numOutcomes;
+        long weightsStart = activeStart + (format.hasActiveOutcomes ? 4 * capacity : 0);
+        long end = weightsStart + capacity * numOutcomes * (bits / 8);
+        if (end > buffer.limit()) {
+            throw new IOException("The model file is truncated");
+        }
+
+        keys = slice(buffer, keysStart, scalesStart).asLongBuffer();
+
+        scales = new float[numOutcomes];
+        slice(buffer, scalesStart, activeStart).asFloatBuffer().get(scales);
+
+        activeOutcomes = format.hasActiveOutcomes
+                ? slice(buffer, activeStart, weightsStart).asIntBuffer() : null;
+
+        ByteBuffer weights = slice(buffer, weightsStart, end);
+        bytes = bits == 8 ? weights : null;
+        shorts = bits == 16 ? weights.asShortBuffer() : null;
+        floats = bits == 32 ? weights.asFloatBuffer() : null;
+    }
+
+    /**
+     * Maps a model file.
+     *
+     * @param file the model file
+     * @return the model backed by the mapped file
+     * @throws IOException if the file can not be read or holds no keyed model
+     */
+    public static MappedWordSegModel map(File file) throws IOException {
+        WordSegModelFormat format;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            format = WordSegModelFormat.read(in);
+        }
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() > Integer.MAX_VALUE) {
+                throw new IOException("The model file is too large to be mapped: " + in.length());
+            }
+
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+            return new MappedWordSegModel(format, buffer);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, long start, long end) {
+        ByteBuffer view = buffer.duplicate();
+        // through Buffer, whose methods return Buffer on every Java version
+        ((Buffer) view).limit((int) end).position((int) start);
+        return view.slice();
+    }
+
+    /**
+     * Returns the number of bits of a weight, 8, 16 or 32.
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    @Override
+    int slot(long key) {
+        int slot = (int) key & mask;
+        while (true) {
+            long k = keys.get(slot);
+            if (k == key) {
+                return slot;
+            } else if (k == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    void add(int slot, double value, double[] sums) {
+        int base = slot * outcomes.length;
+        if (floats != null) {
+            for (int oid = 0; oid < outcomes.length; oid++) {
+                sums[oid] += floats.get(base + oid) * value;
+            }
+        } else if (shorts != null) {
+            for (int oid = 0; oid < outcomes.length; oid++) {
+                sums[oid] += shorts.get(base + oid) * scales[oid] * value;
+            }
+        } else {
+            for (int oid = 0; oid < outcomes.length; oid++) {
+                sums[oid] += bytes.get(base + oid) * scales[oid] * value;
+            }
+        }
+    }
+
+    @Override
+    boolean isActive(int slot, int outcome) {
+        return (activeOutcomes.get(slot) & (1 << outcome)) != 0;
+    }
+}
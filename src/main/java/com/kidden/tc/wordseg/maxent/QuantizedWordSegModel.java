@@ -0,0 +1,231 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link CompiledWordSegModel} whose weights are stored as 8 or 16 bit
+ * integers with one scale per outcome, a quarter or half of the float table.
+ *
+ * The scale of an outcome maps the largest absolute weight of the outcome to
+ * the largest integer, so the rounding error of a weight is at most half a
+ * scale. The model is read from and written to the layout of
+ * {@link WordSegModelFormat} and scored directly from the integers.
+ *
+ * To segment with it, put it into a {@link WordSegModel} in place of the
+ * trained model. The model is immutable and may be shared by many threads.
+ *
+ * @author kidden
+ */
+public final class QuantizedWordSegModel extends AbstractWordSegKeyedModel {
+
+    private final int bits;
+
+    private final long[] keys;
+
+    private final int mask;
+
+    private final float[] scales;
+
+    /**
+     * The weights indexed by slot * outcomes + outcome, in bytes for 8 bits
+     * and in shorts for 16 bits.
+     */
+    private final byte[] bytes;
+    private final short[] shorts;
+
+    private final int[] activeOutcomes;
+
+    private QuantizedWordSegModel(WordSegModelFormat format, long[] keys, float[] scales, byte[] bytes,
+            short[] shorts, int[] activeOutcomes) {
+        super(format.outcomes, format.modelType, format.correctionConstant, format.correctionParam,
+                format.predicates);
+
+        this.bits = format.bits;
+        this.keys = keys;
+        this.mask = keys.length - 1;
+        this.scales = scales;
+        this.bytes = bytes;
+        this.shorts = shorts;
+        this.activeOutcomes = activeOutcomes;
+    }
+
+    /**
+     * Quantizes the weights of a compiled model.
+     *
+     * @param model the compiled model
+     * @param bits 8 or 16
+     * @return the quantized model
+     * @throws IllegalArgumentException if bits is neither 8 nor 16
+     */
+    public static QuantizedWordSegModel quantize(CompiledWordSegModel model, int bits) {
+        if (bits != 8 && bits != 16) {
+            throw new IllegalArgumentException("Weights can be quantized to 8 or 16 bits: " + bits);
+        }
+
+        int numOutcomes = model.getNumOutcomes();
+        long[] keys = model.getKeys();
+        float[] weights = model.getWeights();
+        int max = bits == 8 ? Byte.MAX_VALUE : Short.MAX_VALUE;
+
+        float[] scales = new float[numOutcomes];
+        for (int i = 0; i < weights.length; i++) {
+            scales[i % numOutcomes] = Math.max(scales[i % numOutcomes], Math.abs(weights[i]));
+        }
+        for (int oid = 0; oid < numOutcomes; oid++) {
+            scales[oid] = scales[oid] > 0 ? scales[oid] / max : 1;
+        }
+
+        byte[] bytes = bits == 8 ? new byte[weights.length] : null;
+        short[] shorts = bits == 16 ? new short[weights.length] : null;
+        for (int i = 0; i < weights.length; i++) {
+            int q = Math.round(weights[i] / scales[i % numOutcomes]);
+            q = Math.max(-max, Math.min(max, q));
+            if (bytes != null) {
+                bytes[i] = (byte) q;
+            } else {
+                shorts[i] = (short) q;
+            }
+        }
+
+        int[] active = model.getActiveOutcomes();
+        WordSegModelFormat format = new WordSegModelFormat(bits, model.modelType, model.correctionConstant,
+                model.correctionParam, model.outcomes.clone(), model.getNumPredicates(), keys.length,
+                active != null);
+
+        return new QuantizedWordSegModel(format, keys.clone(), scales, bytes, shorts,
+                active == null ? null : active.clone());
+    }
+
+    /**
+     * Reads a quantized model.
+     *
+     * @param in the stream of a model written by {@link #save(OutputStream)}
+     * @return the model
+     * @throws IOException if the stream can not be read or holds no quantized model
+     */
+    public static QuantizedWordSegModel load(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        WordSegModelFormat format = WordSegModelFormat.read(data);
+        if (format.bits == 32) {
+            throw new IOException("The model is not quantized");
+        }
+
+        int capacity = format.capacity;
+        int numOutcomes = format.outcomes.length;
+
+        long[] keys = new long[capacity];
+        read(data, capacity * 8).asLongBuffer().get(keys);
+        float[] scales = new float[numOutcomes];
+        read(data, numOutcomes * 4).asFloatBuffer().get(scales);
+
+        int[] active = null;
+        if (format.hasActiveOutcomes) {
+            active = new int[capacity];
+            read(data, capacity * 4).asIntBuffer().get(active);
+        }
+
+        byte[] bytes = null;
+        short[] shorts = null;
+        if (format.bits == 8) {
+            bytes = new byte[capacity * numOutcomes];
+            data.readFully(bytes);
+        } else {
+            shorts = new short[capacity * numOutcomes];
+            read(data, shorts.length * 2).asShortBuffer().get(shorts);
+        }
+
+        return new QuantizedWordSegModel(format, keys, scales, bytes, shorts, active);
+    }
+
+    public static QuantizedWordSegModel load(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return load(in);
+        }
+    }
+
+    private static ByteBuffer read(DataInputStream in, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        in.readFully(buffer);
+        return ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Writes the model. The stream is flushed, not closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream can not be written
+     */
+    public void save(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        new WordSegModelFormat(bits, modelType, correctionConstant, correctionParam, outcomes, predicates,
+                keys.length, activeOutcomes != null).write(data);
+
+        for (long key : keys) {
+            data.writeLong(key);
+        }
+        for (float scale : scales) {
+            data.writeFloat(scale);
+        }
+        if (activeOutcomes != null) {
+            for (int active : activeOutcomes) {
+                data.writeInt(active);
+            }
+        }
+        if (bytes != null) {
+            data.write(bytes);
+        } else {
+            for (short weight : shorts) {
+                data.writeShort(weight);
+            }
+        }
+
+        data.flush();
+    }
+
+    public void save(File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            save(out);
+        }
+    }
+
+    /**
+     * Returns the number of bits of a weight, 8 or 16.
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    @Override
+    int slot(long key) {
+        return slot(keys, mask, key);
+    }
+
+    @Override
+    void add(int slot, double value, double[] sums) {
+        int base = slot * outcomes.length;
+        if (bytes != null) {
+            for (int oid = 0; oid < outcomes.length; oid++) {
+                sums[oid] += bytes[base + oid] * scales[oid] * value;
+            }
+        } else {
+            for (int oid = 0; oid < outcomes.length; oid++) {
+                sums[oid] += shorts[base + oid] * scales[oid] * value;
+            }
+        }
+    }
+
+    @Override
+    boolean isActive(int slot, int outcome) {
+        return (activeOutcomes[slot] & (1 << outcome)) != 0;
+    }
+}
@@ -0,0 +1,46 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Segments a range of a batch of sentences, splitting the range in halves
+ * until it holds no more than the threshold. Every sentence is written to the
+ * result slot of its index, so the order of the batch is kept.
+ *
+ * @author kidden
+ */
+final class WordSegBatchTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final WordSegmenterME segmenter;
+    private final List<? extends CharSequence> sentences;
+    private final String[][] results;
+    private final int start;
+    private final int end;
+    private final int threshold;
+
+    WordSegBatchTask(WordSegmenterME segmenter, List<? extends CharSequence> sentences, String[][] results,
+            int start, int end, int threshold) {
+        this.segmenter = segmenter;
+        this.sentences = sentences;
+        this.results = results;
+        this.start = start;
+        this.end = end;
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected void compute() {
+        if (end - start <= threshold) {
+            for (int i = start; i < end; i++) {
+                results[i] = segmenter.segment(sentences.get(i).toString());
+            }
+        } else {
+            int middle = (start + end) >>> 1;
+            invokeAll(new WordSegBatchTask(segmenter, sentences, results, start, middle, threshold),
+                    new WordSegBatchTask(segmenter, sentences, results, middle, end, threshold));
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import opennlp.tools.ml.BeamSearch;
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.ml.model.SequenceClassificationModel;
+import opennlp.tools.util.BeamSearchContextGenerator;
+import opennlp.tools.util.Sequence;
+import opennlp.tools.util.SequenceValidator;
+
+/**
+ * Beam search for word segmentation.
+ *
+ * If the context generator is tag independent the distribution of every
+ * position is computed once per sentence with {@link WordSegEmissions} and
+ * the beam is searched over that table, instead of evaluating the model for
+ * every hypothesis as OpenNLP's {@link BeamSearch} does. The search itself
+ * follows {@link BeamSearch}: the best {@code size} hypotheses are extended
+ * with the best {@code size} outcomes of a position. Other generators and
+ * validators are handed to a {@link BeamSearch}.
+ *
+ * An adaptive search narrows the beam to a single hypothesis at positions
+ * where the best tag leads the second best by at least the margin, and keeps
+ * the full beam only at the ambiguous positions. The average number of
+ * hypotheses extended per position is counted in both modes.
+ *
+ * The search keeps no state between calls and may be shared by many threads.
+ *
+ * @author kidden
+ */
+public class WordSegBeamSearch implements SequenceClassificationModel<String>, WordSegTableDecoder {
+
+    private final int size;
+
+    /**
+     * The lead of the best tag over the second best from which one hypothesis
+     * is extended, infinite for a fixed beam.
+     */
+    private final double margin;
+
+    private final LongAdder positions = new LongAdder();
+    private final LongAdder hypotheses = new LongAdder();
+
+    private volatile WordSegMetricsListener metrics = WordSegMetricsListener.NOOP;
+
+    private final MaxentModel model;
+
+    /**
+     * The model outcome of each tag, null if the model has other outcomes.
+     */
+    private final int[] tagOutcomes;
+
+    public WordSegBeamSearch(int size, MaxentModel model) {
+        this(size, model, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Creates an adaptive beam search.
+     *
+     * @param size the beam size at ambiguous positions
+     * @param model the model
+     * @param margin the lead of the best tag probability over the second best
+     * from which a position is decoded with one hypothesis
+     * @throws IllegalArgumentException if the margin is not positive
+     */
+    public WordSegBeamSearch(int size, MaxentModel model, double margin) {
+        if (!(margin > 0)) {
+            throw new IllegalArgumentException("The beam margin must be positive: " + margin);
+        }
+
+        this.size = size;
+        this.model = model;
+        this.margin = margin;
+
+        int[] outcomes;
+        try {
+            outcomes = WordSegEmissions.tagOutcomes(model);
+        } catch (IllegalArgumentException e) {
+            outcomes = null;
+        }
+        tagOutcomes = outcomes;
+    }
+
+    public boolean isAdaptive() {
+        return margin != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the average number of hypotheses extended per position over all
+     * sentences searched on the emission table, NaN if there were none.
+     */
+    public double getAverageWidth() {
+        long count = positions.sum();
+        return count == 0 ? Double.NaN : (double) hypotheses.sum() / count;
+    }
+
+    /**
+     * Returns the number of positions searched on the emission table.
+     */
+    public long getPositionCount() {
+        return positions.sum();
+    }
+
+    public void resetStatistics() {
+        positions.reset();
+        hypotheses.reset();
+    }
+
+    /**
+     * Sets the listener told about the hypotheses extended per sentence
+     * searched on an emission table.
+     *
+     * @param metrics the listener, {@link WordSegMetricsListener#NOOP} to stop reporting
+     */
+    public void setMetricsListener(WordSegMetricsListener metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("The metrics listener must not be null");
+        }
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Sequence bestSequence(String[] sequence, Object[] additionalContext,
+            BeamSearchContextGenerator<String> cg, SequenceValidator<String> validator) {
+        Sequence[] sequences = bestSequences(1, sequence, additionalContext, cg, validator);
+
+        if (sequences.length > 0) {
+            return sequences[0];
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public Sequence[] bestSequences(int numSequences, String[] sequence, Object[] additionalContext,
+            BeamSearchContextGenerator<String> cg, SequenceValidator<String> validator) {
+        return bestSequences(numSequences, sequence, additionalContext, Double.NEGATIVE_INFINITY, cg,
+                validator);
+    }
+
+    @Override
+    public Sequence[] bestSequences(int numSequences, String[] sequence, Object[] additionalContext,
+            double minSequenceScore, BeamSearchContextGenerator<String> cg, SequenceValidator<String> validator) {
+        if (!searchesTable(cg, validator)) {
+            return new BeamSearch<String>(size, model, 0).bestSequences(numSequences, sequence,
+                    additionalContext, minSequenceScore, cg, validator);
+        }
+
+        int n = sequence.length;
+        if (n == 0) {
+            return numSequences > 0 ? new Sequence[]{new Sequence()} : new Sequence[0];
+        }
+
+        WordSegScratch scratch = new WordSegScratch(0, 0);
+        scratch.ensureCapacity(n, getWidth());
+        WordSegEmissions.compute(sequence, additionalContext, (WordSegContextGenerator) cg, model,
+                tagOutcomes, scratch.emissions);
+        search(scratch, n, minSequenceScore);
+
+        Sequence[] sequences = new Sequence[Math.min(numSequences, scratch.counts[n - 1])];
+        double[] probs = new double[n];
+        for (int s = 0; s < sequences.length; s++) {
+            backtrack(scratch, n, s);
+            for (int i = 0; i < n; i++) {
+                probs[i] = scratch.emissions[i * WordSegTags.COUNT + scratch.tags[i]];
+            }
+
+            Sequence result = new Sequence();
+            for (int i = 0; i < n; i++) {
+                result.add(WordSegTags.name(scratch.tags[i]), probs[i]);
+            }
+            sequences[s] = result;
+        }
+
+        return sequences;
+    }
+
+    /**
+     * Returns true if the search scores every position once from a table of
+     * tag probabilities, false if it falls back to {@link BeamSearch}, which
+     * evaluates the model once per position and hypothesis.
+     */
+    boolean searchesTable(BeamSearchContextGenerator<String> cg, SequenceValidator<String> validator) {
+        return tagOutcomes != null && validator.getClass() == DefaultWordSegSequenceValidator.class
+                && cg instanceof WordSegContextGenerator
+                && ((WordSegContextGenerator) cg).isTagIndependent();
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getWidth() {
+        return size * WordSegTags.COUNT;
+    }
+
+    @Override
+    public boolean bestTags(WordSegScratch scratch, int n) {
+        if (n == 0) {
+            return true;
+        }
+
+        search(scratch, n, Double.NEGATIVE_INFINITY);
+        if (scratch.counts[n - 1] == 0) {
+            return false;
+        }
+
+        backtrack(scratch, n, 0);
+        return true;
+    }
+
+    /**
+     * Follows the back pointers of a hypothesis of the last position.
+     */
+    private void backtrack(WordSegScratch scratch, int n, int rank) {
+        int width = getWidth();
+        int hyp = rank;
+        for (int i = n - 1; i >= 0; i--) {
+            int entry = i * width + hyp;
+            scratch.tags[i] = scratch.states[entry];
+            hyp = scratch.backs[entry];
+        }
+    }
+
+    /**
+     * Runs the beam search over the emission table. The hypotheses of every
+     * position are sorted by descending score.
+     */
+    private void search(WordSegScratch scratch, int n, double minSequenceScore) {
+        double[] emissions = scratch.emissions;
+        int width = getWidth();
+        long extended = 0;
+
+        for (int i = 0; i < n; i++) {
+            int base = i * WordSegTags.COUNT;
+            int next = i * width;
+
+            int beam = lead(emissions, base) >= margin ? 1 : size;
+
+            // only the best beam outcomes are advanced
+            double min = threshold(emissions, base, beam);
+
+            int prevCount = i == 0 ? 1 : scratch.counts[i - 1];
+            int sz = Math.min(beam, prevCount);
+            int count = 0;
+            extended += sz;
+
+            for (int h = 0; h < sz; h++) {
+                int prevTag = i == 0 ? -1 : scratch.states[next - width + h];
+                double prevScore = i == 0 ? 0 : scratch.scores[next - width + h];
+
+                for (int tag = 0; tag < WordSegTags.COUNT; tag++) {
+                    if (tagOutcomes[tag] >= 0 && emissions[base + tag] >= min) {
+                        count = advance(scratch, next, count, emissions[base + tag], minSequenceScore,
+                                prevTag, prevScore, tag, h);
+                    }
+                }
+
+                // if no advanced hypothesis, advance all valid outcomes
+                if (count == 0) {
+                    for (int tag = 0; tag < WordSegTags.COUNT; tag++) {
+                        if (tagOutcomes[tag] >= 0) {
+                            count = advance(scratch, next, count, emissions[base + tag], minSequenceScore,
+                                    prevTag, prevScore, tag, h);
+                        }
+                    }
+                }
+            }
+
+            scratch.counts[i] = count;
+        }
+
+        positions.add(n);
+        hypotheses.add(extended);
+        metrics.beamExpanded(n, (int) extended);
+    }
+
+    /**
+     * Returns how much the best tag probability of the position exceeds the
+     * second best.
+     */
+    private double lead(double[] emissions, int base) {
+        double first = 0;
+        double second = 0;
+        for (int tag = 0; tag < WordSegTags.COUNT; tag++) {
+            if (tagOutcomes[tag] < 0) {
+                continue;
+            }
+
+            double p = emissions[base + tag];
+            if (p > first) {
+                second = first;
+                first = p;
+            } else if (p > second) {
+                second = p;
+            }
+        }
+
+        return first - second;
+    }
+
+    private static int advance(WordSegScratch scratch, int base, int count, double p, double minSequenceScore,
+            int prevTag, double prevScore, int tag, int back) {
+        boolean valid = prevTag < 0 ? WordSegTags.isValidStart(tag)
+                : WordSegTags.isValidTransition(prevTag, tag);
+        if (!valid) {
+            return count;
+        }
+
+        double score = prevScore + Math.log(p);
+        if (score <= minSequenceScore) {
+            return count;
+        }
+
+        return insert(scratch, base, count, score, tag, back);
+    }
+
+    /**
+     * Returns the probability an outcome needs to be among the best beam
+     * outcomes of the position.
+     */
+    private double threshold(double[] emissions, int base, int beam) {
+        int rank = Math.max(0, model.getNumOutcomes() - beam);
+
+        // the rank-th smallest probability of the model outcomes
+        for (int tag = 0; tag < WordSegTags.COUNT; tag++) {
+            if (tagOutcomes[tag] < 0) {
+                continue;
+            }
+
+            double p = emissions[base + tag];
+            int less = 0;
+            int equal = 0;
+            for (int other = 0; other < WordSegTags.COUNT; other++) {
+                if (tagOutcomes[other] >= 0) {
+                    double q = emissions[base + other];
+                    if (q < p) {
+                        less++;
+                    } else if (q == p) {
+                        equal++;
+                    }
+                }
+            }
+
+            if (less <= rank && rank < less + equal) {
+                return p;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Inserts a hypothesis into the sorted hypotheses of a position.
+     */
+    private static int insert(WordSegScratch scratch, int base, int count, double score, int tag, int back) {
+        int r = count;
+        while (r > 0 && scratch.scores[base + r - 1] < score) {
+            scratch.scores[base + r] = scratch.scores[base + r - 1];
+            scratch.states[base + r] = scratch.states[base + r - 1];
+            scratch.backs[base + r] = scratch.backs[base + r - 1];
+            r--;
+        }
+
+        scratch.scores[base + r] = score;
+        scratch.states[base + r] = tag;
+        scratch.backs[base + r] = back;
+
+        return count + 1;
+    }
+
+    @Override
+    public String[] getOutcomes() {
+        String outcomes[] = new String[model.getNumOutcomes()];
+
+        for (int i = 0; i < model.getNumOutcomes(); i++) {
+            outcomes[i] = model.getOutcome(i);
+        }
+
+        return outcomes;
+    }
+}
@@ -0,0 +1,56 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Segments a range of the chunks of a long text, splitting the range in
+ * halves while it holds more than {@link #GRAIN} characters. The words of a
+ * chunk are written to the boundaries from the index of its first character,
+ * which a chunk never overruns since it has no more words than characters.
+ *
+ * @author kidden
+ */
+final class WordSegChunkTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of characters below which a range is not split further.
+     */
+    static final int GRAIN = 2048;
+
+    private final WordSegmenterME segmenter;
+    private final CharSequence text;
+    private final int[] ends;
+    private final int[] counts;
+    private final int[] boundaries;
+    private final int lo;
+    private final int hi;
+
+    WordSegChunkTask(WordSegmenterME segmenter, CharSequence text, int[] ends, int[] counts, int[] boundaries,
+            int lo, int hi) {
+        this.segmenter = segmenter;
+        this.text = text;
+        this.ends = ends;
+        this.counts = counts;
+        this.boundaries = boundaries;
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    @Override
+    protected void compute() {
+        int start = lo == 0 ? 0 : ends[lo - 1];
+
+        if (hi - lo == 1 || ends[hi - 1] - start <= GRAIN) {
+            for (int c = lo; c < hi; c++) {
+                int chunkStart = c == 0 ? 0 : ends[c - 1];
+                counts[c] = segmenter.segment(text, chunkStart, ends[c], boundaries, chunkStart);
+            }
+        } else {
+            int middle = (lo + hi) >>> 1;
+            invokeAll(new WordSegChunkTask(segmenter, text, ends, counts, boundaries, lo, middle),
+                    new WordSegChunkTask(segmenter, text, ends, counts, boundaries, middle, hi));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.kidden.tc.wordseg.maxent;
+
+/**
+ * Finds the safe boundaries of a text, the positions no word continues over:
+ * after sentence-final punctuation, after a line break and after whitespace
+ * between two runs of Han characters. Chunks cut at these boundaries are
+ * segmented on their own.
+ *
+ * @author kidden
+ */
+public final class WordSegChunker {
+
+    private WordSegChunker() {
+    }
+
+    /**
+     * Returns whether the character ends a sentence.
+     */
+    public static boolean isSentenceEnd(char c) {
+        switch (c) {
+            case '。':
+            case '！':
+            case '？':
+            case '；':
+            case '…':
+            case '!':
+            case '?':
+            case ';':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns whether a safe boundary follows the character at the index.
+     */
+    public static boolean isBoundaryAfter(CharSequence text, int index) {
+        char c = text.charAt(index);
+
+        if (c == '\n' || isSentenceEnd(c)) {
+            return true;
+        }
+
+        // the last whitespace between two Han runs
+        if (!Character.isWhitespace(c) || index + 1 >= text.length() || !isHan(text.charAt(index + 1))) {
+            return false;
+        }
+
+        for (int i = index - 1; i >= 0; i--) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return isHan(text.charAt(i));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the end offsets of the chunks of the text. The last chunk ends
+     * at the end of the text, an empty text has no chunks.
+     */
+    public static int[] split(CharSequence text) {
+        int n = text.length();
+
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == n - 1 || isBoundaryAfter(text, i)) {
+                count++;
+            }
+        }
+
+        int[] ends = new int[count];
+        count = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == n - 1 || isBoundaryAfter(text, i)) {
+                ends[count++] = i + 1;
+            }
+        }
+
+        return ends;
+    }
+
+    private static boolean isHan(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+}
@@ -21,4 +21,15 @@ public interface WordSegContextGenerator extends BeamSearchContextGenerator<Stri
      */
     public String[] getContext(int index, String[] tokens, String[] tags, Object[] ac);
 
+    /**
+     * Returns true if the context of a character never depends on the tags of
+     * the previous characters. The decoders then evaluate every position once
+     * per sentence instead of once per hypothesis.
+     *
+     * @return true if the tags passed to the generator are ignored
+     */
+    public default boolean isTagIndependent() {
+        return false;
+    }
+
 }
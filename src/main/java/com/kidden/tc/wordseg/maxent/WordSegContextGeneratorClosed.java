@@ -10,7 +10,7 @@ import java.util.List;
  * 
  * @author kidden
  */
-public class WordSegContextGeneratorClosed implements WordSegContextGenerator {
+public class WordSegContextGeneratorClosed implements WordSegContextGenerator, WordSegContextKeyGenerator {
 
     public String[] getContext(int index, String[] sequence, String[] priorDecisions, Object[] additionalContext) {
         return getContext(index, sequence, priorDecisions);
@@ -82,4 +82,19 @@ public class WordSegContextGeneratorClosed implements WordSegContextGenerator {
         return contexts;
     }
 
+    @Override
+    public boolean isTagIndependent() {
+        return true;
+    }
+
+    @Override
+    public int getMaxContextKeys() {
+        return 10;
+    }
+
+    @Override
+    public int getContextKeys(int index, CharSequence chars, String[] tags, long[] keys) {
+        return DefaultWordSegContextGenerator.getDefaultContextKeys(index, chars, keys);
+    }
+
 }
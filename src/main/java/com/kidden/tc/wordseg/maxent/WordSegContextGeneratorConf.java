@@ -12,7 +12,23 @@ import java.util.Properties;
  *
  * @author kidden
  */
-public class WordSegContextGeneratorConf implements WordSegContextGenerator {
+public class WordSegContextGeneratorConf implements WordSegContextGenerator, WordSegContextKeyGenerator {
+
+    // the hash states of the templates, the c0 prefixed forms start with c0 and can not be hashed ahead
+    private static final long C0 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c0=");
+    private static final long C_1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_1=");
+    private static final long T_1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "t_1=");
+    private static final long C_2 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_2=");
+    private static final long T_2 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "t_2=");
+    private static final long C_2C0 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_2c0=");
+    private static final long C1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c1=");
+    private static final long C2 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c2=");
+    private static final long C_2C_1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_2c_1=");
+    private static final long C_1C0 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_1c0=");
+    private static final long C0C1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c0c1=");
+    private static final long C1C2 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c1c2=");
+    private static final long C_1C1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_1c1=");
+    private static final long C_1C0C1 = WordSegFeatureHash.update(WordSegFeatureHash.start(), "c_1c0c1=");
 
     private boolean c_2Set;
     private boolean c_1Set;
@@ -205,6 +221,175 @@ public class WordSegContextGeneratorConf implements WordSegContextGenerator {
         return contexts;
     }
 
+    /**
+     * The context depends on the previous tags only through the t_1 and t_2
+     * features.
+     */
+    @Override
+    public boolean isTagIndependent() {
+        return !t_1Set && !t_2Set;
+    }
+
+    @Override
+    public int getMaxContextKeys() {
+        return c0prefix ? 28 : 14;
+    }
+
+    /**
+     * Writes the keys of the features returned by {@link #getContext(int, Object[], String[])}
+     * in the same order.
+     */
+    @Override
+    public int getContextKeys(int index, CharSequence chars, String[] tags, long[] keys) {
+        int length = chars.length();
+        boolean has_2 = index - 2 >= 0;
+        boolean has_1 = index - 1 >= 0;
+        boolean has1 = length > index + 1;
+        boolean has2 = length > index + 2;
+
+        char c0 = chars.charAt(index);
+        char c_1 = has_1 ? chars.charAt(index - 1) : 0;
+        char c_2 = has_2 ? chars.charAt(index - 2) : 0;
+        char c1 = has1 ? chars.charAt(index + 1) : 0;
+        char c2 = has2 ? chars.charAt(index + 2) : 0;
+
+        // tags may be null for a tag independent configuration
+        String t_1 = has_1 && (t_1Set || t_2Set) ? tags[index - 1] : null;
+        String t_2 = has_2 && t_2Set ? tags[index - 2] : null;
+
+        int n = 0;
+
+        if (c0Set) {
+            n = addKey(keys, n, C0, "c0=", c0, c0, (char) 0, (char) 0, 1);
+        }
+
+        if (has_1) {
+            if (c_1Set) {
+                n = addKey(keys, n, C_1, "c_1=", c0, c_1, (char) 0, (char) 0, 1);
+            }
+
+            if (t_1Set) {
+                n = addTagKey(keys, n, T_1, "t_1=", c0, null, t_1);
+            }
+
+            if (has_2) {
+                if (c_2Set) {
+                    n = addKey(keys, n, C_2, "c_2=", c0, c_2, (char) 0, (char) 0, 1);
+                }
+
+                if (t_2Set) {
+                    n = addTagKey(keys, n, T_2, "t_2=", c0, t_2 != null ? t_2 : "null", t_1);
+                }
+
+                if (c_2c0set) {
+                    n = addKey(keys, n, C_2C0, "c_2c0=", c0, c_2, c0, (char) 0, 2);
+                }
+            }
+        }
+
+        if (has1) {
+            if (c1Set) {
+                n = addKey(keys, n, C1, "c1=", c0, c1, (char) 0, (char) 0, 1);
+            }
+            if (has2) {
+                if (c2Set) {
+                    n = addKey(keys, n, C2, "c2=", c0, c2, (char) 0, (char) 0, 1);
+                }
+            }
+        }
+
+        if (has_2 && c_2c_1Set) {
+            n = addKey(keys, n, C_2C_1, "c_2c_1=", c0, c_2, c_1, (char) 0, 2);
+        }
+
+        if (has_1 && c_1c0Set) {
+            n = addKey(keys, n, C_1C0, "c_1c0=", c0, c_1, c0, (char) 0, 2);
+        }
+
+        if (has1 && c0c1Set) {
+            n = addKey(keys, n, C0C1, "c0c1=", c0, c0, c1, (char) 0, 2);
+        }
+
+        if (has2 && c1c2Set) {
+            n = addKey(keys, n, C1C2, "c1c2=", c0, c1, c2, (char) 0, 2);
+        }
+
+        if (has_1 && has1) {
+            if (c_1c1Set) {
+                n = addKey(keys, n, C_1C1, "c_1c1=", c0, c_1, c1, (char) 0, 2);
+            }
+
+            if (c_1c0c1set) {
+                n = addKey(keys, n, C_1C0C1, "c_1c0c1=", c0, c_1, c0, c1, 3);
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Adds the key of a character feature and, if enabled, the key of its
+     * c0 prefixed form built by {@link #addC0Prefix(List, String)}, which is
+     * c0 + template + c0 + template without its first character + values.
+     */
+    private int addKey(long[] keys, int n, long templateHash, String template, char c0, char a, char b, char c,
+            int count) {
+        keys[n++] = WordSegFeatureHash.finish(updateValues(templateHash, a, b, c, count));
+
+        if (c0prefix) {
+            keys[n++] = WordSegFeatureHash.finish(updateValues(prefix(template, c0), a, b, c, count));
+        }
+
+        return n;
+    }
+
+    /**
+     * Adds the key of a tag feature, t_1=t_1 or t_2=t_2,t_1 if t_2 is given.
+     */
+    private int addTagKey(long[] keys, int n, long templateHash, String template, char c0, String t_2,
+            String t_1) {
+        keys[n++] = WordSegFeatureHash.finish(updateTags(templateHash, t_2, t_1));
+
+        if (c0prefix) {
+            keys[n++] = WordSegFeatureHash.finish(updateTags(prefix(template, c0), t_2, t_1));
+        }
+
+        return n;
+    }
+
+    private static long prefix(String template, char c0) {
+        long hash = WordSegFeatureHash.update(WordSegFeatureHash.start(), c0);
+        hash = WordSegFeatureHash.update(hash, template);
+        hash = WordSegFeatureHash.update(hash, c0);
+
+        for (int i = 1; i < template.length(); i++) {
+            hash = WordSegFeatureHash.update(hash, template.charAt(i));
+        }
+
+        return hash;
+    }
+
+    private static long updateValues(long hash, char a, char b, char c, int count) {
+        hash = WordSegFeatureHash.update(hash, a);
+        if (count > 1) {
+            hash = WordSegFeatureHash.update(hash, b);
+        }
+        if (count > 2) {
+            hash = WordSegFeatureHash.update(hash, c);
+        }
+
+        return hash;
+    }
+
+    private static long updateTags(long hash, String t_2, String t_1) {
+        if (t_2 != null) {
+            hash = WordSegFeatureHash.update(hash, t_2);
+            hash = WordSegFeatureHash.update(hash, ',');
+        }
+
+        return WordSegFeatureHash.update(hash, t_1 != null ? t_1 : "null");
+    }
+
     @Override
     public String toString() {
         return "WordSegContextGeneratorConf{" + "c_2Set=" + c_2Set + ", c_1Set=" + c_1Set + 
@@ -0,0 +1,71 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Creates the context generator a model was trained with from a feature
+ * configuration, for the tools which load a model from the command line.
+ *
+ * As in {@link com.kidden.tc.wordseg.sighan.SighanRun}, the property
+ * "feature.class" names the generator. A configuration without it is a
+ * feature template file such as sighan/feature.properties, which configures a
+ * {@link WordSegContextGeneratorConf}. Without a configuration the
+ * {@link DefaultWordSegContextGenerator} is used.
+ *
+ * @author kidden
+ */
+public final class WordSegContextGenerators {
+
+    /**
+     * The property naming the class of the context generator.
+     */
+    public static final String FEATURE_CLASS = "feature.class";
+
+    private WordSegContextGenerators() {
+    }
+
+    /**
+     * Creates the context generator of a feature configuration.
+     *
+     * @param conf the feature configuration
+     * @return the context generator
+     * @throws IllegalArgumentException if the generator class is unknown
+     */
+    public static WordSegContextGenerator create(Properties conf) {
+        String featureClass = conf.getProperty(FEATURE_CLASS, WordSegContextGeneratorConf.class.getName()).trim();
+
+        if (featureClass.equals(WordSegContextGeneratorConf.class.getName())) {
+            return new WordSegContextGeneratorConf(conf);
+        } else if (featureClass.equals(WordSegContextGeneratorClosed.class.getName())) {
+            return new WordSegContextGeneratorClosed();
+        } else if (featureClass.equals(DefaultWordSegContextGenerator.class.getName())) {
+            return new DefaultWordSegContextGenerator();
+        }
+
+        throw new IllegalArgumentException("Unknown context generator: " + featureClass);
+    }
+
+    /**
+     * Reads a feature configuration and creates its context generator.
+     *
+     * @param featureConf the properties file of the configuration, null for
+     * the default context generator
+     * @return the context generator
+     * @throws IOException if the file can not be read
+     */
+    public static WordSegContextGenerator load(File featureConf) throws IOException {
+        if (featureConf == null) {
+            return new DefaultWordSegContextGenerator();
+        }
+
+        Properties conf = new Properties();
+        try (InputStream in = new FileInputStream(featureConf)) {
+            conf.load(in);
+        }
+        return create(conf);
+    }
+}
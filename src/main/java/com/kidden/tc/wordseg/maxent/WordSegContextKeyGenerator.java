@@ -0,0 +1,39 @@
+package com.kidden.tc.wordseg.maxent;
+
+/**
+ * The interface for a context generator which writes the features of a
+ * position as primitive keys instead of strings.
+ *
+ * The key of a feature is the {@link WordSegFeatureHash} of the string the
+ * same generator returns from
+ * {@link WordSegContextGenerator#getContext(int, String[], String[], Object[])},
+ * folded from the feature template and the characters without building the
+ * string. Models trained on string features are therefore scored on keys by
+ * {@link WordSegKeyedModel#eval(long[], int, double[])}.
+ *
+ * @author kidden
+ */
+public interface WordSegContextKeyGenerator {
+
+    /**
+     * Returns the maximum number of keys written for one position.
+     *
+     * @return the size a key buffer must have
+     */
+    public int getMaxContextKeys();
+
+    /**
+     * Writes the keys of the context for making a word segmentation tag
+     * decision at the specified index.
+     *
+     * @param index The index of the character for which the context is provided.
+     * @param chars The characters of the sentence, one token per character.
+     * @param tags The tags assigned to the previous characters in the sentence,
+     * may be null if the generator is tag independent.
+     * @param keys The buffer the keys are written to.
+     *
+     * @return the number of keys written
+     */
+    public int getContextKeys(int index, CharSequence chars, String[] tags, long[] keys);
+
+}
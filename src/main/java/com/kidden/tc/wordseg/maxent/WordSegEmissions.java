@@ -0,0 +1,90 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.Arrays;
+
+import opennlp.tools.ml.model.MaxentModel;
+
+/**
+ * Computes the tag distributions of all positions of a sentence at once for
+ * context generators which ignore the previous tags.
+ *
+ * The table holds the probability of every tag indexed by
+ * position * {@link WordSegTags#COUNT} + tag, a tag the model never predicts
+ * has probability 0.
+ *
+ * @author kidden
+ */
+final class WordSegEmissions {
+
+    private WordSegEmissions() {
+    }
+
+    /**
+     * Returns the model outcome of each tag, -1 if the model never predicts the
+     * tag.
+     *
+     * @throws IllegalArgumentException if an outcome is not a word segmentation tag
+     */
+    static int[] tagOutcomes(MaxentModel model) {
+        int[] tagOutcomes = new int[WordSegTags.COUNT];
+        Arrays.fill(tagOutcomes, -1);
+
+        for (int i = 0; i < model.getNumOutcomes(); i++) {
+            int tag = WordSegTags.id(model.getOutcome(i));
+            if (tag < 0) {
+                throw new IllegalArgumentException("Not a word segmentation tag: " + model.getOutcome(i));
+            }
+            tagOutcomes[tag] = i;
+        }
+
+        return tagOutcomes;
+    }
+
+    /**
+     * Fills the table of the sentence, using keys instead of feature strings if
+     * the generator and the model support them.
+     */
+    static void compute(String[] sequence, Object[] additionalContext, WordSegContextGenerator cg,
+            MaxentModel model, int[] tagOutcomes, double[] table) {
+        CharSequence chars = null;
+        if (cg instanceof WordSegContextKeyGenerator && model instanceof WordSegKeyedModel) {
+            chars = WordSegViterbi.toChars(sequence);
+        }
+
+        double[] outcomeProbs = new double[model.getNumOutcomes()];
+
+        if (chars != null) {
+            WordSegContextKeyGenerator keyGen = (WordSegContextKeyGenerator) cg;
+            compute(chars, keyGen, (WordSegKeyedModel) model, tagOutcomes,
+                    new long[keyGen.getMaxContextKeys()], outcomeProbs, table);
+            return;
+        }
+
+        String[] priorTags = new String[sequence.length];
+        for (int i = 0; i < sequence.length; i++) {
+            Arrays.fill(outcomeProbs, 0);
+            model.eval(cg.getContext(i, sequence, priorTags, additionalContext), outcomeProbs);
+            store(outcomeProbs, tagOutcomes, table, i);
+        }
+    }
+
+    /**
+     * Fills the table of the sentence from feature keys. Nothing is allocated.
+     */
+    static void compute(CharSequence chars, WordSegContextKeyGenerator keyGen, WordSegKeyedModel model,
+            int[] tagOutcomes, long[] keys, double[] outcomeProbs, double[] table) {
+        for (int i = 0; i < chars.length(); i++) {
+            int count = keyGen.getContextKeys(i, chars, null, keys);
+            model.eval(keys, count, outcomeProbs);
+            store(outcomeProbs, tagOutcomes, table, i);
+        }
+    }
+
+    private static void store(double[] outcomeProbs, int[] tagOutcomes, double[] table, int index) {
+        int base = index * WordSegTags.COUNT;
+        for (int tag = 0; tag < WordSegTags.COUNT; tag++) {
+            int outcome = tagOutcomes[tag];
+            table[base + tag] = outcome < 0 ? 0 : outcomeProbs[outcome];
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.kidden.tc.wordseg.maxent;
+
+/**
+ * 64-bit hash of feature predicates such as "c_1c0=自然".
+ *
+ * The hash is computed character by character, so a predicate can be hashed
+ * from its template and characters without ever building the string. Zero is
+ * never returned, it marks an empty slot in the tables of
+ * the {@link WordSegKeyedModel}s.
+ *
+ * @author kidden
+ */
+public final class WordSegFeatureHash {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long PRIME = 0x100000001b3L;
+
+    private WordSegFeatureHash() {
+    }
+
+    /**
+     * The state of the hash before any character is added
+     */
+    public static long start() {
+        return OFFSET_BASIS;
+    }
+
+    public static long update(long hash, char c) {
+        return (hash ^ c) * PRIME;
+    }
+
+    public static long update(long hash, CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            hash = (hash ^ chars.charAt(i)) * PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Mixes the state into the final key of the predicate
+     */
+    public static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash == 0 ? PRIME : hash;
+    }
+
+    /**
+     * Returns the key of the predicate
+     */
+    public static long hash(CharSequence predicate) {
+        return finish(update(OFFSET_BASIS, predicate));
+    }
+}
@@ -0,0 +1,33 @@
+package com.kidden.tc.wordseg.maxent;
+
+import opennlp.tools.ml.model.MaxentModel;
+
+/**
+ * A {@link MaxentModel} which also scores predicates given by their
+ * {@link WordSegFeatureHash} keys, as produced by a
+ * {@link WordSegContextKeyGenerator}.
+ *
+ * @author kidden
+ */
+public interface WordSegKeyedModel extends MaxentModel {
+
+    /**
+     * Evaluates predicates given by their {@link WordSegFeatureHash} keys.
+     *
+     * @param context the keys of the predicates
+     * @param length the number of keys to use
+     * @param probs the array the outcome probabilities are written to
+     * @return the probs array
+     */
+    double[] eval(long[] context, int length, double[] probs);
+
+    /**
+     * Returns whether the model knows the predicate of the key.
+     */
+    boolean contains(long key);
+
+    /**
+     * The number of predicates of the model
+     */
+    int getNumPredicates();
+}
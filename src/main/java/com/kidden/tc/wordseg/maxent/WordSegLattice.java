@@ -0,0 +1,272 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * The word lattice of a sentence: every word the model can produce, from
+ * every start offset up to the maximum word length, with its log probability.
+ *
+ * With a tag independent context generator the probability of a tag sequence
+ * is the product of the probabilities of its tags, so the score of a
+ * segmentation is the sum of the scores of its words and every segmentation is
+ * a path through the lattice from offset 0 to the end of the sentence.
+ *
+ * The paths are enumerated lazily in descending order of score by an A* search
+ * whose heuristic, the best score from an offset to the end, is exact. Partial
+ * paths share their prefixes, so taking the next path costs a few queue
+ * operations and no decoding.
+ *
+ * @author kidden
+ */
+public final class WordSegLattice {
+
+    /**
+     * The longest word of a lattice unless given otherwise.
+     */
+    public static final int DEFAULT_MAX_WORD_LENGTH = 32;
+
+    private final String text;
+    private final int maxWordLength;
+
+    /**
+     * The score of the word of length len starting at offset s, indexed by
+     * s * maxWordLength + len - 1, negative infinity if there is no such word.
+     */
+    private final double[] wordScores;
+
+    /**
+     * The best score from an offset to the end of the sentence.
+     */
+    private final double[] bestToEnd;
+
+    /**
+     * Builds the lattice from the tag probabilities of the sentence.
+     *
+     * @param text the sentence
+     * @param emissions the tag probabilities indexed by position * {@link WordSegTags#COUNT} + tag
+     * @param maxWordLength the longest word in the lattice
+     */
+    WordSegLattice(CharSequence text, double[] emissions, int maxWordLength) {
+        this.text = text.toString();
+        this.maxWordLength = maxWordLength;
+
+        int n = this.text.length();
+        wordScores = new double[n * maxWordLength];
+        Arrays.fill(wordScores, Double.NEGATIVE_INFINITY);
+
+        for (int s = 0; s < n; s++) {
+            int base = s * maxWordLength;
+            wordScores[base] = log(emissions[s * WordSegTags.COUNT + WordSegTags.S]);
+
+            // B, then M up to the character before the E
+            double inside = log(emissions[s * WordSegTags.COUNT + WordSegTags.B]);
+            for (int len = 2; len <= maxWordLength && s + len <= n; len++) {
+                int last = s + len - 1;
+                wordScores[base + len - 1] = inside + log(emissions[last * WordSegTags.COUNT + WordSegTags.E]);
+                inside += log(emissions[last * WordSegTags.COUNT + WordSegTags.M]);
+            }
+        }
+
+        bestToEnd = new double[n + 1];
+        for (int s = n - 1; s >= 0; s--) {
+            double best = Double.NEGATIVE_INFINITY;
+            for (int len = 1; len <= maxWordLength && s + len <= n; len++) {
+                best = Math.max(best, wordScores[s * maxWordLength + len - 1] + bestToEnd[s + len]);
+            }
+            bestToEnd[s] = best;
+        }
+    }
+
+    private static double log(double p) {
+        return p > 0 ? Math.log(p) : Double.NEGATIVE_INFINITY;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the length of the sentence.
+     */
+    public int length() {
+        return text.length();
+    }
+
+    public int getMaxWordLength() {
+        return maxWordLength;
+    }
+
+    /**
+     * Returns the log probability of the word between the offsets, negative
+     * infinity if the word is not in the lattice.
+     */
+    public double getWordScore(int start, int end) {
+        if (start < 0 || end > text.length() || start >= end || end - start > maxWordLength) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        return wordScores[start * maxWordLength + end - start - 1];
+    }
+
+    /**
+     * Returns the score of the best segmentation, negative infinity if the
+     * sentence has none.
+     */
+    public double getBestScore() {
+        return bestToEnd[0];
+    }
+
+    /**
+     * Returns the segmentations in descending order of score. The next one is
+     * searched when it is asked for.
+     */
+    public Iterator<Path> paths() {
+        return new PathIterator();
+    }
+
+    /**
+     * Returns the k best segmentations, fewer if the sentence has fewer.
+     */
+    public List<Path> bestPaths(int k) {
+        List<Path> paths = new ArrayList<Path>(Math.max(0, k));
+        for (Iterator<Path> it = paths(); paths.size() < k && it.hasNext();) {
+            paths.add(it.next());
+        }
+
+        return paths;
+    }
+
+    /**
+     * A segmentation of the sentence.
+     */
+    public final class Path {
+
+        private final int[] boundaries;
+        private final double score;
+
+        private Path(int[] boundaries, double score) {
+            this.boundaries = boundaries;
+            this.score = score;
+        }
+
+        /**
+         * Returns the end offset of every word.
+         */
+        public int[] getBoundaries() {
+            return boundaries.clone();
+        }
+
+        /**
+         * Returns the log probability of the segmentation.
+         */
+        public double getScore() {
+            return score;
+        }
+
+        public String[] getWords() {
+            String[] words = new String[boundaries.length];
+            int start = 0;
+            for (int i = 0; i < words.length; i++) {
+                words[i] = text.substring(start, boundaries[i]);
+                start = boundaries[i];
+            }
+
+            return words;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" ", getWords()) + " " + score;
+        }
+    }
+
+    /**
+     * A path from offset 0 to an offset, sharing the words before its last one
+     * with the other paths extending the same prefix.
+     */
+    private static final class Prefix {
+
+        final Prefix parent;
+        final int end;
+        final int words;
+        final double score;
+        final double estimate;
+
+        Prefix(Prefix parent, int end, double score, double estimate) {
+            this.parent = parent;
+            this.end = end;
+            this.words = parent == null ? 0 : parent.words + 1;
+            this.score = score;
+            this.estimate = estimate;
+        }
+    }
+
+    private static final Comparator<Prefix> BEST_FIRST = new Comparator<Prefix>() {
+        @Override
+        public int compare(Prefix a, Prefix b) {
+            return Double.compare(b.estimate, a.estimate);
+        }
+    };
+
+    private final class PathIterator implements Iterator<Path> {
+
+        private final PriorityQueue<Prefix> queue = new PriorityQueue<Prefix>(16, BEST_FIRST);
+        private Path next;
+
+        PathIterator() {
+            if (bestToEnd[0] > Double.NEGATIVE_INFINITY) {
+                queue.add(new Prefix(null, 0, 0, bestToEnd[0]));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = search();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Path path = next;
+            next = null;
+            return path;
+        }
+
+        private Path search() {
+            int n = text.length();
+            Prefix prefix;
+            while ((prefix = queue.poll()) != null) {
+                if (prefix.end == n) {
+                    int[] boundaries = new int[prefix.words];
+                    for (Prefix p = prefix; p.parent != null; p = p.parent) {
+                        boundaries[p.words - 1] = p.end;
+                    }
+                    return new Path(boundaries, prefix.score);
+                }
+
+                int s = prefix.end;
+                for (int len = 1; len <= maxWordLength && s + len <= n; len++) {
+                    double score = prefix.score + wordScores[s * maxWordLength + len - 1];
+                    double estimate = score + bestToEnd[s + len];
+                    if (estimate > Double.NEGATIVE_INFINITY) {
+                        queue.add(new Prefix(prefix, s + len, score, estimate));
+                    }
+                }
+            }
+
+            return null;
+        }
+    }
+}
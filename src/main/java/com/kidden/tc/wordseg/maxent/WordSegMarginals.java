@@ -0,0 +1,105 @@
+package com.kidden.tc.wordseg.maxent;
+
+/**
+ * Computes the posterior probability of a word boundary after every character
+ * of a sentence by forward-backward over the S, B, M, E tag grammar.
+ *
+ * The emissions come from a tag independent context generator, so the
+ * probability of a tag sequence is the product of the probabilities of its
+ * tags, normalized over the sequences {@link WordSegTags} allows. The forward
+ * and backward values are rescaled at every position, which keeps long
+ * sentences from underflowing.
+ *
+ * @author kidden
+ */
+final class WordSegMarginals {
+
+    private static final int T = WordSegTags.COUNT;
+
+    private WordSegMarginals() {
+    }
+
+    /**
+     * Writes the probability that a word ends after character i to
+     * marginals[offset + i] for every i below n - 1. Nothing is allocated.
+     *
+     * @param emissions the tag probabilities indexed by position * {@link WordSegTags#COUNT} + tag
+     * @param n the length of the sentence
+     * @param forward a buffer of at least n * {@link WordSegTags#COUNT} values
+     * @param backward a buffer of at least n * {@link WordSegTags#COUNT} values
+     * @param marginals the array receiving the probabilities
+     * @param offset the index of the first probability
+     */
+    static void compute(double[] emissions, int n, double[] forward, double[] backward,
+            double[] marginals, int offset) {
+        if (n < 2) {
+            return;
+        }
+
+        for (int tag = 0; tag < T; tag++) {
+            forward[tag] = WordSegTags.isValidStart(tag) ? emissions[tag] : 0;
+        }
+        normalize(forward, 0);
+
+        for (int i = 1; i < n; i++) {
+            int base = i * T;
+            for (int tag = 0; tag < T; tag++) {
+                double sum = 0;
+                for (int prev = 0; prev < T; prev++) {
+                    if (WordSegTags.isValidTransition(prev, tag)) {
+                        sum += forward[base - T + prev];
+                    }
+                }
+                forward[base + tag] = sum * emissions[base + tag];
+            }
+            normalize(forward, base);
+        }
+
+        int last = (n - 1) * T;
+        for (int tag = 0; tag < T; tag++) {
+            backward[last + tag] = WordSegTags.isValidEnd(tag) ? 1 : 0;
+        }
+
+        for (int i = n - 2; i >= 0; i--) {
+            int base = i * T;
+            for (int tag = 0; tag < T; tag++) {
+                double sum = 0;
+                for (int next = 0; next < T; next++) {
+                    if (WordSegTags.isValidTransition(tag, next)) {
+                        sum += emissions[base + T + next] * backward[base + T + next];
+                    }
+                }
+                backward[base + tag] = sum;
+            }
+            normalize(backward, base);
+        }
+
+        // the scales cancel out in the posterior of each position
+        for (int i = 0; i < n - 1; i++) {
+            int base = i * T;
+            double total = 0;
+            double end = 0;
+            for (int tag = 0; tag < T; tag++) {
+                double p = forward[base + tag] * backward[base + tag];
+                total += p;
+                if (WordSegTags.isValidEnd(tag)) {
+                    end += p;
+                }
+            }
+            marginals[offset + i] = total > 0 ? end / total : 0;
+        }
+    }
+
+    private static void normalize(double[] values, int base) {
+        double sum = 0;
+        for (int tag = 0; tag < T; tag++) {
+            sum += values[base + tag];
+        }
+
+        if (sum > 0) {
+            for (int tag = 0; tag < T; tag++) {
+                values[base + tag] /= sum;
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.kidden.tc.wordseg.maxent;
 
+import com.kidden.tc.wordseg.dict.DoubleArrayTrie;
+import com.kidden.tc.wordseg.dict.WordSegDictionary;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -27,7 +29,7 @@ public final class WordSegMeasure {
     private long sentences;
     private long sentencesOK;
     
-    private HashSet<String> dictionary;
+    private WordSegDictionary dictionary;
     
     private long targetIV;
     private long targetOOV;
@@ -36,6 +38,16 @@ public final class WordSegMeasure {
     private long truePositiveOOV;
     
     public WordSegMeasure(HashSet<String> dict){
+        this(new DoubleArrayTrie(dict));
+    }
+
+    /**
+     * Creates a measure which also scores the words in and out of the
+     * dictionary.
+     *
+     * @param dict the dictionary of the training words
+     */
+    public WordSegMeasure(WordSegDictionary dict){
         this.dictionary = dict;
     }
     
@@ -0,0 +1,103 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link WordSegMetricsListener} counting with striped {@link LongAdder}s
+ * and recording the latency of every segmented sentence in a
+ * {@link WordSegLatencyHistogram}.
+ *
+ * The counters only ever grow until {@link #reset()}, an exporter computes the
+ * rates from the difference of two readings.
+ *
+ * @author kidden
+ */
+public class WordSegMetrics implements WordSegMetricsListener {
+
+    private final LongAdder sentences = new LongAdder();
+    private final LongAdder characters = new LongAdder();
+    private final LongAdder words = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder positions = new LongAdder();
+    private final LongAdder hypotheses = new LongAdder();
+
+    private final WordSegLatencyHistogram latency = new WordSegLatencyHistogram();
+
+    @Override
+    public void sentenceSegmented(int characters, int words, long nanos) {
+        sentences.increment();
+        this.characters.add(characters);
+        this.words.add(words);
+        latency.record(nanos);
+    }
+
+    @Override
+    public void modelEvaluated(int evaluations) {
+        this.evaluations.add(evaluations);
+    }
+
+    @Override
+    public void beamExpanded(int positions, int hypotheses) {
+        this.positions.add(positions);
+        this.hypotheses.add(hypotheses);
+    }
+
+    public long getSentenceCount() {
+        return sentences.sum();
+    }
+
+    public long getCharacterCount() {
+        return characters.sum();
+    }
+
+    public long getWordCount() {
+        return words.sum();
+    }
+
+    public long getEvaluationCount() {
+        return evaluations.sum();
+    }
+
+    /**
+     * Returns the number of positions searched by the beam search.
+     */
+    public long getBeamPositionCount() {
+        return positions.sum();
+    }
+
+    /**
+     * Returns the number of hypotheses extended by the beam search.
+     */
+    public long getBeamExpansionCount() {
+        return hypotheses.sum();
+    }
+
+    /**
+     * Returns the latencies of the segmented sentences.
+     */
+    public WordSegLatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public void reset() {
+        sentences.reset();
+        characters.reset();
+        words.reset();
+        evaluations.reset();
+        positions.reset();
+        hypotheses.reset();
+        latency.reset();
+    }
+
+    @Override
+    public String toString() {
+        long micros = TimeUnit.MICROSECONDS.toNanos(1);
+        return String.format("sentences=%d chars=%d words=%d evaluations=%d beamPositions=%d beamExpansions=%d "
+                + "latency(us) mean=%.1f p50=%.1f p99=%.1f p999=%.1f max=%.1f",
+                getSentenceCount(), getCharacterCount(), getWordCount(), getEvaluationCount(),
+                getBeamPositionCount(), getBeamExpansionCount(), latency.getMean() / micros,
+                (double) latency.getPercentile(50) / micros, (double) latency.getPercentile(99) / micros,
+                (double) latency.getPercentile(99.9) / micros, (double) latency.getMax() / micros);
+    }
+}
@@ -0,0 +1,60 @@
+package com.kidden.tc.wordseg.maxent;
+
+/**
+ * Receives the counts and timings of the segmentation hot paths.
+ *
+ * A {@link WordSegmenterME} reports to {@link #NOOP} unless a listener is set
+ * with {@link WordSegmenterME#setMetricsListener(WordSegMetricsListener)}, and
+ * it does not even read the clock while it does. The methods are called from
+ * every decoding thread, an implementation must be thread safe and cheap, see
+ * {@link WordSegMetrics}.
+ *
+ * @author kidden
+ */
+public interface WordSegMetricsListener {
+
+    /**
+     * The listener which ignores everything.
+     */
+    public static final WordSegMetricsListener NOOP = new WordSegMetricsListener() {
+        @Override
+        public void sentenceSegmented(int characters, int words, long nanos) {
+        }
+
+        @Override
+        public void modelEvaluated(int evaluations) {
+        }
+
+        @Override
+        public void beamExpanded(int positions, int hypotheses) {
+        }
+    };
+
+    /**
+     * Called after a sentence or text has been segmented or tagged.
+     *
+     * @param characters the number of characters
+     * @param words the number of words, also when tagging
+     * @param nanos the time the call took in nanoseconds
+     */
+    public void sentenceSegmented(int characters, int words, long nanos);
+
+    /**
+     * Called after a range of characters has been decoded with the model. A
+     * tag independent context generator evaluates the model once per
+     * character, pretokenized runs are not evaluated at all. Otherwise the
+     * decoder evaluates it once per character and hypothesis, and the count is
+     * an upper bound: the beam size or the number of tags per character.
+     *
+     * @param evaluations the number of model evaluations
+     */
+    public void modelEvaluated(int evaluations);
+
+    /**
+     * Called by {@link WordSegBeamSearch} after searching a sentence.
+     *
+     * @param positions the number of positions searched
+     * @param hypotheses the number of hypotheses extended over all positions
+     */
+    public void beamExpanded(int positions, int hypotheses);
+}
@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.Properties;
 
 import opennlp.tools.ml.BeamSearch;
+import opennlp.tools.ml.model.AbstractModel;
 import opennlp.tools.ml.model.MaxentModel;
 import opennlp.tools.ml.model.SequenceClassificationModel;
 import opennlp.tools.util.InvalidFormatException;
@@ -26,6 +27,8 @@ public final class WordSegModel extends BaseModel {
 
     public static final String WORDSEG_MODEL_ENTRY_NAME = "wordseg.model";
 
+    private transient volatile CompiledWordSegModel compiledModel;
+
     public WordSegModel(String languageCode, SequenceClassificationModel<String> wordsegModel,
             Map<String, String> manifestInfoEntries) {
 
@@ -104,6 +107,29 @@ public final class WordSegModel extends BaseModel {
         }
     }
 
+    /**
+     * Returns the compiled form of the maxent model. The model is compiled on
+     * the first call and shared afterwards.
+     *
+     * @return the compiled model
+     * @throws IllegalStateException if the model is not a trained maxent model
+     */
+    public CompiledWordSegModel getCompiledModel() {
+        CompiledWordSegModel compiled = compiledModel;
+
+        if (compiled == null) {
+            Object model = artifactMap.get(WORDSEG_MODEL_ENTRY_NAME);
+            if (!(model instanceof AbstractModel)) {
+                throw new IllegalStateException("Only a trained maxent model can be compiled!");
+            }
+
+            compiled = CompiledWordSegModel.compile((AbstractModel) model);
+            compiledModel = compiled;
+        }
+
+        return compiled;
+    }
+
     public SequenceClassificationModel<String> getWordSegSequenceModel() {
 
         Properties manifest = (Properties) artifactMap.get(MANIFEST_ENTRY);
@@ -116,7 +142,12 @@ public final class WordSegModel extends BaseModel {
                 beamSize = Integer.parseInt(beamSizeString);
             }
 
-            return new BeamSearch<>(beamSize, (MaxentModel) artifactMap.get(WORDSEG_MODEL_ENTRY_NAME));
+            if (WordSegmenterME.VITERBI_DECODER.equals(
+                    manifest.getProperty(WordSegmenterME.DECODER_PARAMETER))) {
+                return new WordSegViterbi((MaxentModel) artifactMap.get(WORDSEG_MODEL_ENTRY_NAME));
+            }
+
+            return new WordSegBeamSearch(beamSize, (MaxentModel) artifactMap.get(WORDSEG_MODEL_ENTRY_NAME));
         } else if (artifactMap.get(WORDSEG_MODEL_ENTRY_NAME) instanceof SequenceClassificationModel) {
             return (SequenceClassificationModel) artifactMap.get(WORDSEG_MODEL_ENTRY_NAME);
         } else {
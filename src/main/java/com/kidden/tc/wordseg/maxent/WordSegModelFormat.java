@@ -0,0 +1,150 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import opennlp.tools.ml.model.AbstractModel;
+
+/**
+ * The flat binary layout of a keyed model file, all big-endian:
+ *
+ * <pre>
+ * int     magic, version, bits per weight (8, 16 or 32)
+ * UTF     model type
+ * double  correction constant, correction parameter
+ * int     number of outcomes, followed by the outcome names as UTF
+ * int     number of predicates, number of slots, 1 if there are outcome bits
+ * long    key of every slot, 0 for an empty slot
+ * float   scale of every outcome
+ * int     outcome bits of every slot, if any
+ * weights of every slot and outcome, as bytes, shorts or floats
+ * </pre>
+ *
+ * A weight is its stored value times the scale of its outcome. The layout is
+ * read into the heap by {@link QuantizedWordSegModel} and mapped by
+ * {@link MappedWordSegModel}.
+ *
+ * @author kidden
+ */
+final class WordSegModelFormat {
+
+    static final int MAGIC = 0x5753514D;
+
+    static final int VERSION = 1;
+
+    final int bits;
+    final AbstractModel.ModelType modelType;
+    final double correctionConstant;
+    final double correctionParam;
+    final String[] outcomes;
+    final int predicates;
+    final int capacity;
+    final boolean hasActiveOutcomes;
+
+    WordSegModelFormat(int bits, AbstractModel.ModelType modelType, double correctionConstant,
+            double correctionParam, String[] outcomes, int predicates, int capacity, boolean hasActiveOutcomes) {
+        if (bits != 8 && bits != 16 && bits != 32) {
+            throw new IllegalArgumentException("Weights must have 8, 16 or 32 bits: " + bits);
+        }
+
+        this.bits = bits;
+        this.modelType = modelType;
+        this.correctionConstant = correctionConstant;
+        this.correctionParam = correctionParam;
+        this.outcomes = outcomes;
+        this.predicates = predicates;
+        this.capacity = capacity;
+        this.hasActiveOutcomes = hasActiveOutcomes;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(bits);
+        out.writeUTF(modelType.name());
+        out.writeDouble(correctionConstant);
+        out.writeDouble(correctionParam);
+        out.writeInt(outcomes.length);
+        for (String outcome : outcomes) {
+            out.writeUTF(outcome);
+        }
+        out.writeInt(predicates);
+        out.writeInt(capacity);
+        out.writeInt(hasActiveOutcomes ? 1 : 0);
+    }
+
+    /**
+     * Returns the number of bytes of the header, where the keys start.
+     */
+    int length() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.size();
+    }
+
+    /**
+     * Writes the header and the tables of a model with 32 bit weights.
+     */
+    void writeFloats(DataOutputStream out, long[] keys, int[] activeOutcomes, float[] weights)
+            throws IOException {
+        write(out);
+        for (long key : keys) {
+            out.writeLong(key);
+        }
+        for (int oid = 0; oid < outcomes.length; oid++) {
+            out.writeFloat(1);
+        }
+        if (activeOutcomes != null) {
+            for (int active : activeOutcomes) {
+                out.writeInt(active);
+            }
+        }
+        for (float weight : weights) {
+            out.writeFloat(weight);
+        }
+    }
+
+    static WordSegModelFormat read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a keyed word segmentation model");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported keyed model version: " + version);
+        }
+
+        int bits = in.readInt();
+        AbstractModel.ModelType modelType;
+        try {
+            modelType = AbstractModel.ModelType.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown model type", e);
+        }
+        double correctionConstant = in.readDouble();
+        double correctionParam = in.readDouble();
+        String[] outcomes = new String[in.readInt()];
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = in.readUTF();
+        }
+        int predicates = in.readInt();
+        int capacity = in.readInt();
+        boolean hasActiveOutcomes = in.readInt() != 0;
+
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IOException("The number of slots is not a power of two: " + capacity);
+        }
+
+        try {
+            return new WordSegModelFormat(bits, modelType, correctionConstant, correctionParam, outcomes,
+                    predicates, capacity, hasActiveOutcomes);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.kidden.tc.wordseg.maxent;
+
+/**
+ * Implemented by segmenters backed by a {@link WordSegModel}, so wrappers can
+ * tell when the model behind a segmenter has been replaced.
+ *
+ * @author kidden
+ */
+public interface WordSegModelProvider {
+
+    /**
+     * Returns the model the segmenter currently decodes with.
+     *
+     * @return the current model
+     */
+    public WordSegModel getModel();
+
+}
@@ -0,0 +1,396 @@
+package com.kidden.tc.wordseg.maxent;
+
+import com.kidden.tc.wordseg.dict.DoubleArrayTrie;
+import com.kidden.tc.wordseg.dict.WordSegDictionary;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import opennlp.tools.ml.BeamSearch;
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.maxent.quasinewton.QNModel;
+import opennlp.tools.ml.model.AbstractModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.Event;
+import opennlp.tools.ml.perceptron.PerceptronModel;
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.PlainTextByLineStream;
+
+/**
+ * Drops predicates from a trained model to make it smaller and faster.
+ *
+ * A predicate is dropped if none of its weights reaches the weight threshold
+ * in absolute value, if it occurs less often than the count threshold in the
+ * training corpus, or if its template is one of the dropped templates. The
+ * kept predicates keep their weights, the pruned model is a
+ * {@link WordSegModel} of the same type which is written and loaded like the
+ * original one.
+ *
+ * Usage: -model file -gold file [-encoding name] [-train file]
+ * [-weights w1,w2,...] [-counts n1,n2,...] [-templates t1,t2,...]
+ * [-featureConf file]
+ *
+ * The main method prunes the model once for every weight threshold, count
+ * threshold and template and reports the number of predicates, the size of the
+ * serialized model, the load time, the speed in characters per second, the
+ * median of {@value #TIMED_PASSES} passes over the gold sentences after at
+ * least {@value #WARMUP_PASSES} warm-up passes, and the F-measure and out of
+ * vocabulary recall on the gold corpus of every level.
+ * Count thresholds and the out of vocabulary recall need the training corpus.
+ * The predicates are counted and the levels segmented with the context
+ * generator of the feature configuration, see {@link WordSegContextGenerators},
+ * which must be the one the model was trained with.
+ *
+ * @author kidden
+ */
+public class WordSegModelPruner {
+
+    static final int WARMUP_PASSES = 2;
+
+    /**
+     * The fewest characters segmented before timing, so a small gold corpus
+     * is warmed up as well as a large one.
+     */
+    static final long WARMUP_CHARS = 2000000;
+
+    static final int TIMED_PASSES = 5;
+
+    private final double minWeight;
+
+    private final Map<String, Integer> counts;
+
+    private final int minCount;
+
+    private final Set<String> templates;
+
+    /**
+     * Initializes a pruner dropping predicates by weight only.
+     *
+     * @param minWeight the smallest absolute weight a kept predicate must have
+     */
+    public WordSegModelPruner(double minWeight) {
+        this(minWeight, null, 0, Collections.<String>emptySet());
+    }
+
+    /**
+     * Initializes a pruner.
+     *
+     * @param minWeight the smallest absolute weight a kept predicate must have
+     * @param counts the number of times every predicate occurs in the training
+     * corpus, see {@link #countPredicates(ObjectStream, WordSegContextGenerator)},
+     * or null to ignore counts
+     * @param minCount the smallest count a kept predicate must have
+     * @param templates the templates to drop, such as "c_1c1"
+     * @throws IllegalArgumentException if a threshold is negative or a count
+     * threshold is given without counts
+     */
+    public WordSegModelPruner(double minWeight, Map<String, Integer> counts, int minCount,
+            Set<String> templates) {
+        if (minWeight < 0 || minCount < 0) {
+            throw new IllegalArgumentException("The thresholds must not be negative");
+        }
+        if (minCount > 0 && counts == null) {
+            throw new IllegalArgumentException("A count threshold needs the predicate counts");
+        }
+
+        this.minWeight = minWeight;
+        this.counts = counts;
+        this.minCount = minCount;
+        this.templates = templates;
+    }
+
+    /**
+     * Returns the template of a predicate, the part before the '=' or the
+     * leading ASCII characters of a predicate without one.
+     *
+     * @param predicate the predicate, such as "c_1c0=北京"
+     * @return the template, such as "c_1c0"
+     */
+    public static String template(String predicate) {
+        int end = predicate.indexOf('=');
+        if (end < 0) {
+            end = 0;
+            while (end < predicate.length() && predicate.charAt(end) < 128) {
+                end++;
+            }
+        }
+        return predicate.substring(0, end);
+    }
+
+    /**
+     * Counts how often every predicate occurs in the events of a corpus.
+     *
+     * @param samples the training samples
+     * @param contextGenerator the context generator of the model
+     * @return the count of every predicate
+     * @throws IOException if the samples can not be read
+     */
+    public static Map<String, Integer> countPredicates(ObjectStream<WordSegSample> samples,
+            WordSegContextGenerator contextGenerator) throws IOException {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+
+        try (ObjectStream<Event> events = new WordSegSampleEventStream(samples, contextGenerator)) {
+            Event event;
+            while ((event = events.read()) != null) {
+                for (String predicate : event.getContext()) {
+                    Integer count = counts.get(predicate);
+                    counts.put(predicate, count == null ? 1 : count + 1);
+                }
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Returns whether a predicate with the given weights is kept.
+     */
+    boolean keep(String predicate, double[] parameters) {
+        if (templates.contains(template(predicate))) {
+            return false;
+        }
+
+        if (minCount > 0) {
+            Integer count = counts.get(predicate);
+            if (count == null || count < minCount) {
+                return false;
+            }
+        }
+
+        for (double parameter : parameters) {
+            if (Math.abs(parameter) >= minWeight) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Prunes a model.
+     *
+     * @param model the model, which must hold a trained maxent or perceptron model
+     * @return the pruned model with the manifest settings of the original one
+     * @throws IllegalArgumentException if the model is not a trained model
+     */
+    @SuppressWarnings("unchecked")
+    public WordSegModel prune(WordSegModel model) {
+        Object artifact = model.getArtifact(WordSegModel.WORDSEG_MODEL_ENTRY_NAME);
+        if (!(artifact instanceof AbstractModel)) {
+            throw new IllegalArgumentException("Only a trained maxent model can be pruned");
+        }
+
+        AbstractModel trained = (AbstractModel) artifact;
+        Object[] data = trained.getDataStructures();
+        Context[] params = (Context[]) data[0];
+        Map<String, Integer> pmap = (Map<String, Integer>) data[1];
+        String[] outcomeNames = (String[]) data[2];
+
+        List<String> predicates = new ArrayList<String>(pmap.size());
+        List<Context> contexts = new ArrayList<Context>(pmap.size());
+        for (Map.Entry<String, Integer> predicate : pmap.entrySet()) {
+            Context context = params[predicate.getValue()];
+            if (keep(predicate.getKey(), context.getParameters())) {
+                predicates.add(predicate.getKey());
+                contexts.add(new Context(context.getOutcomes().clone(), context.getParameters().clone()));
+            }
+        }
+
+        String[] predLabels = predicates.toArray(new String[predicates.size()]);
+        Context[] prunedParams = contexts.toArray(new Context[contexts.size()]);
+
+        AbstractModel pruned;
+        switch (trained.getModelType()) {
+            case Maxent:
+                pruned = new GISModel(prunedParams, predLabels, outcomeNames.clone(), (Integer) data[3],
+                        (Double) data[4]);
+                break;
+            case MaxentQn:
+                pruned = new QNModel(prunedParams, predLabels, outcomeNames.clone());
+                break;
+            case Perceptron:
+                pruned = new PerceptronModel(prunedParams, predLabels, outcomeNames.clone());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported model type: " + trained.getModelType());
+        }
+
+        Map<String, String> settings = new HashMap<String, String>();
+        for (String key : new String[]{WordSegmenterME.DECODER_PARAMETER, WordSegmenterME.COMPILED_PARAMETER,
+            WordSegmenterME.BEAM_MARGIN_PARAMETER, WordSegmenterME.PRETOKENIZE_PARAMETER}) {
+            if (model.getManifestProperty(key) != null) {
+                settings.put(key, model.getManifestProperty(key));
+            }
+        }
+
+        String beamSize = model.getManifestProperty(BeamSearch.BEAM_SIZE_PARAMETER);
+        return new WordSegModel(model.getLanguage(), pruned,
+                beamSize == null ? WordSegmenterME.DEFAULT_BEAM_SIZE : Integer.parseInt(beamSize), settings);
+    }
+
+    /**
+     * Returns the number of predicates of a trained model.
+     */
+    public static int getNumPredicates(WordSegModel model) {
+        AbstractModel trained = model.getArtifact(WordSegModel.WORDSEG_MODEL_ENTRY_NAME);
+        Object[] data = trained.getDataStructures();
+        return ((Map<?, ?>) data[1]).size();
+    }
+
+    private static double[] parseList(String list) {
+        String[] parts = list.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Double.parseDouble(parts[i].trim());
+        }
+        return values;
+    }
+
+    private static List<String> readSentences(File goldFile, String encoding) throws IOException {
+        List<String> sentences = new ArrayList<String>();
+        ObjectStream<String> lineStream = new PlainTextByLineStream(new FileInputStreamFactory(goldFile), encoding);
+        try (ObjectStream<WordSegSample> samples = new WordTagSampleStream(lineStream)) {
+            WordSegSample sample;
+            while ((sample = samples.read()) != null) {
+                StringBuilder sentence = new StringBuilder();
+                for (String c : sample.getSentence()) {
+                    sentence.append(c);
+                }
+                sentences.add(sentence.toString());
+            }
+        }
+        return sentences;
+    }
+
+    /**
+     * Returns the median speed of the timed passes over the sentences, taken
+     * after the warm-up passes have compiled the hot code.
+     */
+    static double charsPerSecond(WordSegmenterME segmenter, List<String> sentences) {
+        long chars = 0;
+        for (String sentence : sentences) {
+            chars += sentence.length();
+        }
+
+        long warm = 0;
+        for (int pass = 0; chars > 0 && (pass < WARMUP_PASSES || warm < WARMUP_CHARS); pass++) {
+            for (String sentence : sentences) {
+                segmenter.segment(sentence);
+            }
+            warm += chars;
+        }
+
+        double[] speeds = new double[TIMED_PASSES];
+        for (int pass = 0; pass < TIMED_PASSES; pass++) {
+            long start = System.nanoTime();
+            for (String sentence : sentences) {
+                segmenter.segment(sentence);
+            }
+            speeds[pass] = chars / ((System.nanoTime() - start) / 1e9);
+        }
+
+        Arrays.sort(speeds);
+        return speeds[TIMED_PASSES / 2];
+    }
+
+    private static void report(String level, WordSegModel model, WordSegContextGenerator contextGenerator,
+            List<String> sentences, File goldFile, String encoding, WordSegDictionary dictionary)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        model.serialize(out);
+        byte[] bytes = out.toByteArray();
+
+        long start = System.nanoTime();
+        WordSegModel loaded = new WordSegModel(new ByteArrayInputStream(bytes));
+        double loadMillis = (System.nanoTime() - start) / 1e6;
+
+        WordSegmenterME segmenter = new WordSegmenterME(loaded, contextGenerator);
+        double charsPerSecond = charsPerSecond(segmenter, sentences);
+
+        WordSegMeasure measure = dictionary == null ? new WordSegMeasure() : new WordSegMeasure(dictionary);
+        WordSegQuantizer.evaluate(segmenter, goldFile, encoding, measure);
+
+        System.out.printf("%-16s %10d %12d %10.1f %12.0f %8.4f %8s%n", level, getNumPredicates(loaded),
+                bytes.length, loadMillis, charsPerSecond, measure.getMeasure(),
+                dictionary == null ? "-" : String.format("%.4f", measure.getRecallScoreOOV()));
+    }
+
+    public static void main(String[] args) throws IOException {
+        String modelFile = null;
+        String goldFile = null;
+        String trainFile = null;
+        String featureConf = null;
+        String encoding = "UTF-8";
+        double[] weights = new double[0];
+        double[] minCounts = new double[0];
+        String[] templates = new String[0];
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-model")) {
+                modelFile = args[++i];
+            } else if (args[i].equals("-gold")) {
+                goldFile = args[++i];
+            } else if (args[i].equals("-train")) {
+                trainFile = args[++i];
+            } else if (args[i].equals("-encoding")) {
+                encoding = args[++i];
+            } else if (args[i].equals("-weights")) {
+                weights = parseList(args[++i]);
+            } else if (args[i].equals("-counts")) {
+                minCounts = parseList(args[++i]);
+            } else if (args[i].equals("-templates")) {
+                templates = args[++i].split(",");
+            } else if (args[i].equals("-featureConf")) {
+                featureConf = args[++i];
+            }
+        }
+
+        if (modelFile == null || goldFile == null || (minCounts.length > 0 && trainFile == null)) {
+            System.err.println("Usage: WordSegModelPruner -model file -gold file [-encoding name] [-train file] "
+                    + "[-weights w1,w2,...] [-counts n1,n2,...] [-templates t1,t2,...] [-featureConf file]");
+            System.err.println("Count thresholds need the training corpus.");
+            System.exit(1);
+        }
+
+        WordSegModel model = new WordSegModel(new File(modelFile));
+        List<String> sentences = readSentences(new File(goldFile), encoding);
+        WordSegContextGenerator contextGenerator = WordSegContextGenerators.load(
+                featureConf == null ? null : new File(featureConf));
+
+        WordSegDictionary dictionary = null;
+        Map<String, Integer> counts = null;
+        if (trainFile != null) {
+            dictionary = new DoubleArrayTrie(WordSegmenterME.buildDictionary(new File(trainFile), encoding));
+            if (minCounts.length > 0) {
+                ObjectStream<String> lineStream = new PlainTextByLineStream(
+                        new FileInputStreamFactory(new File(trainFile)), encoding);
+                counts = countPredicates(new WordTagSampleStream(lineStream), contextGenerator);
+            }
+        }
+
+        System.out.printf("%-16s %10s %12s %10s %12s %8s %8s%n", "Level", "Predicates", "Bytes", "Load ms",
+                "Chars/sec", "F", "ROOV");
+        report("none", model, contextGenerator, sentences, new File(goldFile), encoding, dictionary);
+
+        Set<String> none = Collections.emptySet();
+        for (double weight : weights) {
+            report("weight<" + weight, new WordSegModelPruner(weight).prune(model), contextGenerator, sentences,
+                    new File(goldFile), encoding, dictionary);
+        }
+        for (double minCount : minCounts) {
+            report("count<" + (int) minCount, new WordSegModelPruner(0, counts, (int) minCount, none).prune(model),
+                    contextGenerator, sentences, new File(goldFile), encoding, dictionary);
+        }
+        for (String template : templates) {
+            Set<String> dropped = new HashSet<String>(Collections.singleton(template.trim()));
+            report("-" + template.trim(), new WordSegModelPruner(0, null, 0, dropped).prune(model),
+                    contextGenerator, sentences, new File(goldFile), encoding, dictionary);
+        }
+    }
+}
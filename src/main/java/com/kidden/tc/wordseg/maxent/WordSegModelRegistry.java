@@ -0,0 +1,414 @@
+package com.kidden.tc.wordseg.maxent;
+
+import com.kidden.tc.wordseg.WordSegmenter;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A word segmenter whose model can be replaced while it is in use.
+ *
+ * The active model and the segmenter built from it are held together behind
+ * an atomic reference. A new model is loaded, turned into a segmenter and
+ * warmed up by segmenting a few sentences before it is published, so requests
+ * never wait for a reload: every call decodes with the model that was active
+ * when it started, and calls starting after the switch use the new one. Of
+ * two concurrent swaps the one which started last wins, the model of the
+ * other one is dropped if it is ready after it.
+ *
+ * A model is replaced explicitly with {@link #swap(WordSegModel)}, reloaded
+ * from the model file with {@link #reload()} or {@link #reloadAsync()}, or
+ * reloaded whenever the file changes once {@link #watch(long, TimeUnit)} polls
+ * it. A model which fails to load is logged and the active model stays in
+ * place. Because the registry is a {@link WordSegModelProvider}, a
+ * {@link com.kidden.tc.wordseg.cache.CachingWordSegmenter} around it is
+ * cleared when the model changes.
+ *
+ * @author kidden
+ */
+public class WordSegModelRegistry implements WordSegmenter, WordSegModelProvider, Closeable {
+
+    /**
+     * Creates the segmenter decoding with a model.
+     */
+    public interface SegmenterFactory {
+
+        WordSegmenter create(WordSegModel model);
+    }
+
+    /**
+     * Creates a {@link WordSegmenterME} with the default context generator.
+     */
+    public static final SegmenterFactory MAXENT = new SegmenterFactory() {
+        @Override
+        public WordSegmenter create(WordSegModel model) {
+            return new WordSegmenterME(model);
+        }
+    };
+
+    /**
+     * The number of times the warm-up sentences are segmented.
+     */
+    public static final int DEFAULT_WARMUP_ROUNDS = 50;
+
+    private static final List<String> DEFAULT_WARMUP_SENTENCES = Arrays.asList(
+            "北京大学的学生喜欢研究中文分词。", "2016年8月，他在上海参加了第3届ACM会议。");
+
+    private static final Logger logger = Logger.getLogger(WordSegModelRegistry.class.getName());
+
+    /**
+     * A model with its segmenter, published as one.
+     */
+    private static final class Active {
+
+        final WordSegModel model;
+        final WordSegmenter segmenter;
+        final long version;
+
+        Active(WordSegModel model, WordSegmenter segmenter, long version) {
+            this.model = model;
+            this.segmenter = segmenter;
+            this.version = version;
+        }
+    }
+
+    private final AtomicReference<Active> active = new AtomicReference<Active>();
+
+    private final File modelFile;
+
+    private final SegmenterFactory factory;
+
+    private final List<String> warmupSentences;
+
+    private final int warmupRounds;
+
+    /**
+     * Numbers the swaps in the order they start.
+     */
+    private final AtomicLong swaps = new AtomicLong();
+
+    /**
+     * Serializes the publications, so versions increase in the order of the
+     * swaps.
+     */
+    private final Object swapLock = new Object();
+
+    /**
+     * The number of the swap whose model is active, guarded by the swap lock.
+     */
+    private long publishedSwap;
+
+    private ScheduledExecutorService executor;
+
+    private boolean watching;
+
+    /**
+     * The modification time and length of the model file when it was last read.
+     */
+    private volatile long lastModified;
+    private volatile long lastLength;
+
+    private volatile Exception lastError;
+
+    /**
+     * Creates a registry holding a model which is replaced with
+     * {@link #swap(WordSegModel)} only.
+     *
+     * @param model the initial model
+     */
+    public WordSegModelRegistry(WordSegModel model) {
+        this(model, null, MAXENT, DEFAULT_WARMUP_SENTENCES, DEFAULT_WARMUP_ROUNDS);
+    }
+
+    /**
+     * Creates a registry holding the model of a file which can be reloaded.
+     *
+     * @param modelFile the model file
+     * @throws IOException if the model can not be read
+     */
+    public WordSegModelRegistry(File modelFile) throws IOException {
+        this(modelFile, MAXENT);
+    }
+
+    /**
+     * Creates a registry holding the model of a file which can be reloaded,
+     * warming up every new segmenter with the default sentences.
+     *
+     * @param modelFile the model file
+     * @param factory the factory of the segmenters
+     * @throws IOException if the model can not be read
+     */
+    public WordSegModelRegistry(File modelFile, SegmenterFactory factory) throws IOException {
+        this(modelFile, factory, DEFAULT_WARMUP_SENTENCES, DEFAULT_WARMUP_ROUNDS);
+    }
+
+    /**
+     * Creates a registry holding the model of a file which can be reloaded.
+     *
+     * @param modelFile the model file
+     * @param factory the factory of the segmenters
+     * @param warmupSentences the sentences every new segmenter segments before it is used
+     * @param warmupRounds the number of times the sentences are segmented
+     * @throws IOException if the model can not be read
+     */
+    public WordSegModelRegistry(File modelFile, SegmenterFactory factory, List<String> warmupSentences,
+            int warmupRounds) throws IOException {
+        this(null, modelFile, factory, warmupSentences, warmupRounds);
+
+        if (modelFile == null) {
+            throw new IllegalArgumentException("The model file must not be null");
+        }
+        reload();
+    }
+
+    private WordSegModelRegistry(WordSegModel model, File modelFile, SegmenterFactory factory,
+            List<String> warmupSentences, int warmupRounds) {
+        if (warmupRounds < 0) {
+            throw new IllegalArgumentException("The warm-up rounds must not be negative: " + warmupRounds);
+        }
+
+        this.modelFile = modelFile;
+        this.factory = factory;
+        this.warmupSentences = warmupSentences;
+        this.warmupRounds = warmupRounds;
+
+        if (model != null) {
+            swap(model);
+        }
+    }
+
+    private WordSegmenter active() {
+        Active current = active.get();
+        if (current == null) {
+            throw new IllegalStateException("No model has been loaded");
+        }
+        return current.segmenter;
+    }
+
+    @Override
+    public String[] segment(String sentence) {
+        return active().segment(sentence);
+    }
+
+    @Override
+    public int segment(CharSequence text, int[] boundaries) {
+        return active().segment(text, boundaries);
+    }
+
+    @Override
+    public List<String[]> segment(List<? extends CharSequence> sentences) {
+        return active().segment(sentences);
+    }
+
+    @Override
+    public WordSegModel getModel() {
+        Active current = active.get();
+        return current == null ? null : current.model;
+    }
+
+    /**
+     * Returns the segmenter of the active model.
+     */
+    public WordSegmenter getSegmenter() {
+        return active();
+    }
+
+    /**
+     * Returns the number of models published so far, 1 for the initial model.
+     */
+    public long getVersion() {
+        Active current = active.get();
+        return current == null ? 0 : current.version;
+    }
+
+    /**
+     * Returns the error of the last failed reload, null if the last reload
+     * succeeded.
+     */
+    public Exception getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Returns the model file, null if the registry holds no file.
+     */
+    public File getModelFile() {
+        return modelFile;
+    }
+
+    /**
+     * Builds and warms up the segmenter of a model, then makes it the active
+     * one. Calls in flight finish with the previous model. If a swap which
+     * started later has published its model in the meantime, the model is
+     * dropped and the newer one stays active.
+     *
+     * @param model the new model
+     * @return false if the model was dropped for a newer one
+     */
+    public boolean swap(WordSegModel model) {
+        if (model == null) {
+            throw new IllegalArgumentException("The model must not be null");
+        }
+
+        long number = swaps.incrementAndGet();
+        WordSegmenter segmenter = factory.create(model);
+        for (int round = 0; round < warmupRounds; round++) {
+            for (String sentence : warmupSentences) {
+                segmenter.segment(sentence);
+            }
+        }
+
+        synchronized (swapLock) {
+            if (number < publishedSwap) {
+                logger.log(Level.FINE, "Dropped a model swapped in before the active one");
+                return false;
+            }
+
+            publishedSwap = number;
+            active.set(new Active(model, segmenter, getVersion() + 1));
+        }
+        return true;
+    }
+
+    /**
+     * Reads the model file and makes its model the active one.
+     *
+     * @throws IOException if the model can not be read or the segmenter of the
+     * new model fails to be built or warmed up, the active model is kept
+     * @throws IllegalStateException if the registry holds no model file
+     */
+    public void reload() throws IOException {
+        if (modelFile == null) {
+            throw new IllegalStateException("The registry has no model file");
+        }
+
+        // taken before reading, so a write during the load triggers another one
+        long modified = modelFile.lastModified();
+        long length = modelFile.length();
+
+        WordSegModel model;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(modelFile))) {
+            model = new WordSegModel(in);
+        } catch (IOException e) {
+            lastModified = modified;
+            lastLength = length;
+            lastError = e;
+            throw e;
+        } catch (RuntimeException e) {
+            // a truncated model may fail before the format is checked
+            lastModified = modified;
+            lastLength = length;
+            lastError = new IOException("Not a word segmentation model: " + modelFile, e);
+            throw (IOException) lastError;
+        }
+
+        lastModified = modified;
+        lastLength = length;
+        try {
+            swap(model);
+        } catch (RuntimeException e) {
+            // recorded like a load failure, so the watcher waits for the file to change
+            lastError = new IOException("Can not segment with the model of " + modelFile, e);
+            throw (IOException) lastError;
+        }
+        lastError = null;
+    }
+
+    /**
+     * Reloads the model file in the background.
+     *
+     * @return the future of the reload, which fails with the error of the load
+     */
+    public Future<Void> reloadAsync() {
+        return executor().submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                reload();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Polls the model file and reloads it in the background whenever its
+     * modification time or length changes. Errors are logged and the active
+     * model is kept until the file changes again.
+     *
+     * @param period the time between two polls
+     * @param unit the unit of the period
+     * @throws IllegalStateException if the registry holds no model file or is
+     * watching already
+     */
+    public synchronized void watch(long period, TimeUnit unit) {
+        if (modelFile == null) {
+            throw new IllegalStateException("The registry has no model file");
+        }
+        if (watching) {
+            throw new IllegalStateException("The model file is watched already");
+        }
+        if (period <= 0) {
+            throw new IllegalArgumentException("The period must be positive: " + period);
+        }
+
+        watching = true;
+        executor().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (modelFile.lastModified() == lastModified && modelFile.length() == lastLength) {
+                    return;
+                }
+
+                try {
+                    reload();
+                    logger.log(Level.INFO, "Reloaded {0}, version {1}", new Object[]{modelFile, getVersion()});
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.WARNING, "Can not reload " + modelFile + ", keeping version "
+                            + getVersion(), e);
+                }
+            }
+        }, period, period, unit);
+    }
+
+    private synchronized ScheduledExecutorService executor() {
+        if (executor == null) {
+            ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "wordseg-model-registry");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            pool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * Stops watching the model file. The active model stays usable.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        watching = false;
+    }
+}
@@ -0,0 +1,278 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.EnumSet;
+import java.util.Locale;
+
+/**
+ * Finds the runs of a text which are words on their own and need no model:
+ * ASCII words, numbers, URLs, e-mail addresses and full-width alphanumerics.
+ *
+ * The characters are classified through a table over the Basic Multilingual
+ * Plane, built once, so a run is found with one array lookup per character.
+ * A run never starts or ends next to a character of its own class, so
+ * "iPhone12" is one word and is not cut into "iPhone" and "12".
+ *
+ * @author kidden
+ */
+public final class WordSegPretokenizer {
+
+    /**
+     * The kinds of runs taken as words.
+     */
+    public enum Kind {
+
+        /**
+         * ASCII letters mixed with digits, such as "iPhone12"
+         */
+        ALPHANUMERIC,
+        /**
+         * ASCII digits, with a point or a comma between digits, such as "3.14"
+         */
+        NUMBER,
+        /**
+         * Addresses starting with http://, https://, ftp:// or www.
+         */
+        URL,
+        /**
+         * E-mail addresses
+         */
+        EMAIL,
+        /**
+         * Full-width letters and digits, such as "ＡＢ１２"
+         */
+        FULLWIDTH
+    }
+
+    private static final int LETTER = 1;
+    private static final int DIGIT = 2;
+    private static final int FULLWIDTH_ALNUM = 4;
+    private static final int URL_CHAR = 8;
+    private static final int EMAIL_LOCAL = 16;
+
+    private static final byte[] CLASSES = new byte[Character.MAX_VALUE + 1];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            CLASSES[c] |= LETTER | EMAIL_LOCAL;
+            CLASSES[Character.toUpperCase(c)] |= LETTER | EMAIL_LOCAL;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] |= DIGIT | EMAIL_LOCAL;
+        }
+        for (char c : "._%+-".toCharArray()) {
+            CLASSES[c] |= EMAIL_LOCAL;
+        }
+        for (char c = '!'; c <= '~'; c++) {
+            if ("\"'<>\\^`{|}".indexOf(c) < 0) {
+                CLASSES[c] |= URL_CHAR;
+            }
+        }
+        for (char c = '０'; c <= '９'; c++) {
+            CLASSES[c] |= FULLWIDTH_ALNUM;
+        }
+        for (char c = 'Ａ'; c <= 'Ｚ'; c++) {
+            CLASSES[c] |= FULLWIDTH_ALNUM;
+        }
+        for (char c = 'ａ'; c <= 'ｚ'; c++) {
+            CLASSES[c] |= FULLWIDTH_ALNUM;
+        }
+    }
+
+    private static final String[] URL_PREFIXES = {"http://", "https://", "ftp://", "www."};
+
+    private final EnumSet<Kind> kinds;
+
+    /**
+     * Creates a pretokenizer taking all kinds of runs as words.
+     */
+    public WordSegPretokenizer() {
+        this(EnumSet.allOf(Kind.class));
+    }
+
+    /**
+     * @param kinds the kinds of runs taken as words
+     */
+    public WordSegPretokenizer(EnumSet<Kind> kinds) {
+        this.kinds = EnumSet.copyOf(kinds);
+    }
+
+    /**
+     * Parses a setting value: true or all for all kinds, false or none for
+     * no pretokenization, otherwise a comma separated list of kind names.
+     *
+     * @param value the setting value, may be null
+     * @return the pretokenizer or null if there is no pretokenization
+     * @throws IllegalArgumentException if a kind is unknown
+     */
+    public static WordSegPretokenizer parse(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        String kindList = value.trim().toUpperCase(Locale.ROOT);
+        if (kindList.isEmpty() || kindList.equals("FALSE") || kindList.equals("NONE")) {
+            return null;
+        }
+        if (kindList.equals("TRUE") || kindList.equals("ALL")) {
+            return new WordSegPretokenizer();
+        }
+
+        EnumSet<Kind> kinds = EnumSet.noneOf(Kind.class);
+        for (String name : kindList.split(",")) {
+            try {
+                kinds.add(Kind.valueOf(name.trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Pretokenization kind is not supported: " + name.trim());
+            }
+        }
+
+        return new WordSegPretokenizer(kinds);
+    }
+
+    public EnumSet<Kind> getKinds() {
+        return EnumSet.copyOf(kinds);
+    }
+
+    /**
+     * Returns the end of the run starting at the index, or the index itself if
+     * no run of the enabled kinds starts there.
+     *
+     * @param text the text
+     * @param start the offset of the first character of the range looked at
+     * @param index the offset the run would start at
+     * @param end the offset after the last character of the range
+     * @return the offset after the run
+     */
+    public int match(CharSequence text, int start, int index, int end) {
+        char c = text.charAt(index);
+        int cls = CLASSES[c];
+
+        if ((cls & (LETTER | DIGIT)) != 0) {
+            // a run does not start inside a word
+            if (index > start && (CLASSES[text.charAt(index - 1)] & (LETTER | DIGIT)) != 0) {
+                return index;
+            }
+
+            if (kinds.contains(Kind.URL)) {
+                int runEnd = matchUrl(text, index, end);
+                if (runEnd > index) {
+                    return runEnd;
+                }
+            }
+            if (kinds.contains(Kind.EMAIL)) {
+                int runEnd = matchEmail(text, index, end);
+                if (runEnd > index) {
+                    return runEnd;
+                }
+            }
+
+            return matchAlphanumeric(text, index, end);
+        } else if ((cls & FULLWIDTH_ALNUM) != 0 && kinds.contains(Kind.FULLWIDTH)) {
+            if (index > start && (CLASSES[text.charAt(index - 1)] & FULLWIDTH_ALNUM) != 0) {
+                return index;
+            }
+
+            int i = index;
+            while (i < end && (CLASSES[text.charAt(i)] & FULLWIDTH_ALNUM) != 0) {
+                i++;
+            }
+            return i;
+        }
+
+        return index;
+    }
+
+    private int matchAlphanumeric(CharSequence text, int index, int end) {
+        boolean letters = false;
+        int i = index;
+        while (i < end) {
+            int cls = CLASSES[text.charAt(i)];
+            if ((cls & LETTER) != 0) {
+                letters = true;
+            } else if ((cls & DIGIT) == 0) {
+                // a decimal point or a thousands separator between digits
+                char c = text.charAt(i);
+                if ((c != '.' && c != ',') || i + 1 >= end
+                        || (CLASSES[text.charAt(i - 1)] & DIGIT) == 0
+                        || (CLASSES[text.charAt(i + 1)] & DIGIT) == 0) {
+                    break;
+                }
+            }
+            i++;
+        }
+
+        return kinds.contains(letters ? Kind.ALPHANUMERIC : Kind.NUMBER) ? i : index;
+    }
+
+    private static int matchUrl(CharSequence text, int index, int end) {
+        int i = -1;
+        for (String prefix : URL_PREFIXES) {
+            if (regionMatches(text, index, end, prefix)) {
+                i = index + prefix.length();
+                break;
+            }
+        }
+        if (i < 0) {
+            return index;
+        }
+
+        int bodyStart = i;
+        while (i < end && (CLASSES[text.charAt(i)] & URL_CHAR) != 0) {
+            i++;
+        }
+        i = trimTrailing(text, bodyStart, i, ".,;:!?)");
+
+        return i > bodyStart ? i : index;
+    }
+
+    private static int matchEmail(CharSequence text, int index, int end) {
+        int i = index;
+        while (i < end && (CLASSES[text.charAt(i)] & EMAIL_LOCAL) != 0) {
+            i++;
+        }
+        if (i == index || i >= end || text.charAt(i) != '@') {
+            return index;
+        }
+
+        // labels of letters, digits and hyphens separated by points
+        int domainStart = ++i;
+        int dots = 0;
+        while (i < end) {
+            char c = text.charAt(i);
+            if ((CLASSES[c] & (LETTER | DIGIT)) != 0 || c == '-') {
+                i++;
+            } else if (c == '.' && i > domainStart && text.charAt(i - 1) != '.') {
+                dots++;
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (text.charAt(i - 1) == '.') {
+            i--;
+            dots--;
+        }
+
+        return dots > 0 ? i : index;
+    }
+
+    private static int trimTrailing(CharSequence text, int start, int end, String chars) {
+        while (end > start && chars.indexOf(text.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean regionMatches(CharSequence text, int index, int end, String prefix) {
+        if (end - index < prefix.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(text.charAt(index + i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+package com.kidden.tc.wordseg.maxent;
+
+import com.kidden.tc.wordseg.dict.DoubleArrayTrie;
+import com.kidden.tc.wordseg.dict.WordSegDictionary;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import opennlp.tools.ml.BeamSearch;
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.PlainTextByLineStream;
+
+/**
+ * Writes the {@link QuantizedWordSegModel} of a model and reports how much the
+ * quantization changes the F-measure on a gold corpus. With 32 bits the
+ * compiled model is written with float weights instead, for
+ * {@link MappedWordSegModel}.
+ *
+ * Usage: -model file -bits 8|16|32 -output file [-gold file -encoding name [-train file]
+ * [-featureConf file]]
+ *
+ * With a training corpus the recall of out of vocabulary words is reported as
+ * well. A model trained with another context generator than the default one
+ * is evaluated with the generator of its feature configuration, see
+ * {@link WordSegContextGenerators}.
+ *
+ * @author kidden
+ */
+public class WordSegQuantizer {
+
+    /**
+     * Evaluates the segmenter on a gold corpus.
+     *
+     * @param segmenter the segmenter
+     * @param goldFile the corpus of segmented sentences
+     * @param encoding the encoding of the corpus
+     * @param measure the measure to update, with the dictionary of the training
+     * corpus if the out of vocabulary recall is wanted
+     * @return the measure
+     * @throws IOException if the corpus can not be read
+     */
+    public static WordSegMeasure evaluate(WordSegmenterME segmenter, File goldFile, String encoding,
+            WordSegMeasure measure) throws IOException {
+        WordSegEvaluator evaluator = new WordSegEvaluator(segmenter);
+        evaluator.setMeasure(measure);
+
+        ObjectStream<String> lineStream = new PlainTextByLineStream(new FileInputStreamFactory(goldFile), encoding);
+        try (ObjectStream<WordSegSample> sampleStream = new WordTagSampleStream(lineStream)) {
+            evaluator.evaluate(sampleStream);
+        }
+
+        return evaluator.getMeasure();
+    }
+
+    /**
+     * Returns a segmenter scoring with a keyed model, such as a quantized or a
+     * mapped one, and decoding like the original one.
+     *
+     * @param original the model the keyed model was made from
+     * @param keyed the keyed model
+     * @param contextGenerator the context generator of the original model
+     * @return the segmenter
+     */
+    public static WordSegmenterME createSegmenter(WordSegModel original, WordSegKeyedModel keyed,
+            WordSegContextGenerator contextGenerator) {
+        Map<String, String> settings = new HashMap<String, String>();
+        for (String key : new String[]{BeamSearch.BEAM_SIZE_PARAMETER, WordSegmenterME.DECODER_PARAMETER,
+            WordSegmenterME.BEAM_MARGIN_PARAMETER, WordSegmenterME.PRETOKENIZE_PARAMETER}) {
+            if (original.getManifestProperty(key) != null) {
+                settings.put(key, original.getManifestProperty(key));
+            }
+        }
+
+        WordSegModel model = new WordSegModel(original.getLanguage(), keyed, null);
+        return new WordSegmenterME(model, contextGenerator, settings);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String modelFile = null;
+        String outputFile = null;
+        String goldFile = null;
+        String trainFile = null;
+        String featureConf = null;
+        String encoding = "UTF-8";
+        int bits = 8;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-model")) {
+                modelFile = args[++i];
+            } else if (args[i].equals("-output")) {
+                outputFile = args[++i];
+            } else if (args[i].equals("-bits")) {
+                bits = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-gold")) {
+                goldFile = args[++i];
+            } else if (args[i].equals("-train")) {
+                trainFile = args[++i];
+            } else if (args[i].equals("-encoding")) {
+                encoding = args[++i];
+            } else if (args[i].equals("-featureConf")) {
+                featureConf = args[++i];
+            }
+        }
+
+        if (modelFile == null || outputFile == null) {
+            System.err.println("Usage: WordSegQuantizer -model file -bits 8|16|32 -output file "
+                    + "[-gold file -encoding name [-train file] [-featureConf file]]");
+            System.exit(1);
+        }
+
+        WordSegModel model = new WordSegModel(new File(modelFile));
+        WordSegKeyedModel exported;
+        if (bits == 32) {
+            model.getCompiledModel().save(new File(outputFile));
+            exported = model.getCompiledModel();
+        } else {
+            QuantizedWordSegModel quantized = QuantizedWordSegModel.quantize(model.getCompiledModel(), bits);
+            quantized.save(new File(outputFile));
+            exported = quantized;
+        }
+
+        System.out.println("Predicates: " + exported.getNumPredicates());
+        System.out.println("Model file: " + new File(modelFile).length() + " bytes");
+        System.out.println("Exported file (" + bits + " bits): " + new File(outputFile).length() + " bytes");
+
+        if (goldFile == null) {
+            return;
+        }
+
+        WordSegContextGenerator contextGenerator = WordSegContextGenerators.load(
+                featureConf == null ? null : new File(featureConf));
+        WordSegmenterME full = new WordSegmenterME(model, contextGenerator);
+        WordSegmenterME reduced = createSegmenter(model, exported, contextGenerator);
+
+        WordSegDictionary dictionary = trainFile == null ? null
+                : new DoubleArrayTrie(WordSegmenterME.buildDictionary(new File(trainFile), encoding));
+        WordSegMeasure fullMeasure = dictionary == null ? new WordSegMeasure() : new WordSegMeasure(dictionary);
+        WordSegMeasure reducedMeasure = dictionary == null ? new WordSegMeasure() : new WordSegMeasure(dictionary);
+        evaluate(full, new File(goldFile), encoding, fullMeasure);
+        evaluate(reduced, new File(goldFile), encoding, reducedMeasure);
+
+        System.out.println("Full precision:");
+        System.out.println(fullMeasure);
+        System.out.println("Exported:");
+        System.out.println(reducedMeasure);
+        System.out.printf("F-measure change: %+.6f%n", reducedMeasure.getMeasure() - fullMeasure.getMeasure());
+    }
+}
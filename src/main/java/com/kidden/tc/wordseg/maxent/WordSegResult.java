@@ -0,0 +1,115 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.List;
+
+import opennlp.tools.util.Sequence;
+
+/**
+ * The immutable result of segmenting one sentence: the tag of every character,
+ * the probability of each tag and the score of the whole tag sequence.
+ *
+ * A result is not tied to the segmenter that produced it, so a single
+ * {@link WordSegmenterME} can be shared by many threads and every caller keeps
+ * its own result.
+ *
+ * @author kidden
+ */
+public final class WordSegResult {
+
+    private final String[] tags;
+
+    private final double[] probs;
+
+    private final double score;
+
+    /**
+     *
+     * @param tags the tag of each character
+     * @param probs the probability of each tag
+     * @param score the score of the tag sequence
+     */
+    public WordSegResult(String[] tags, double[] probs, double score) {
+        this(tags, probs, score, false);
+    }
+
+    private WordSegResult(String[] tags, double[] probs, double score, boolean owned) {
+        if (tags.length != probs.length) {
+            throw new IllegalArgumentException("There must be exactly one probability for each tag. tags: "
+                    + tags.length + ", probs: " + probs.length);
+        }
+
+        // arrays built by the decoder are not referenced anywhere else
+        this.tags = owned ? tags : tags.clone();
+        this.probs = owned ? probs : probs.clone();
+        this.score = score;
+    }
+
+    /**
+     * Creates a result from a sequence returned by the decoder.
+     *
+     * @throws IllegalStateException if the decoder found no sequence
+     */
+    static WordSegResult of(Sequence sequence) {
+        if (sequence == null) {
+            throw new IllegalStateException("The decoder found no tag sequence the sequence validator accepts");
+        }
+
+        List<String> outcomes = sequence.getOutcomes();
+
+        return new WordSegResult(outcomes.toArray(new String[outcomes.size()]),
+                sequence.getProbs(), sequence.getScore(), true);
+    }
+
+    /**
+     * The number of tagged characters
+     * @return
+     */
+    public int size() {
+        return tags.length;
+    }
+
+    /**
+     * The tags of the sentence, one for each character
+     * @return
+     */
+    public String[] getTags() {
+        return tags.clone();
+    }
+
+    public String getTag(int index) {
+        return tags[index];
+    }
+
+    /**
+     * The probabilities of the tags, one for each character
+     * @return
+     */
+    public double[] getProbs() {
+        return probs.clone();
+    }
+
+    public double getProb(int index) {
+        return probs[index];
+    }
+
+    /**
+     * The score of the tag sequence, the sum of the log probabilities of the tags
+     * @return
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+
+        result.append(score);
+        for (int i = 0; i < tags.length; i++) {
+            result.append(' ');
+            result.append(tags[i]);
+        }
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package com.kidden.tc.wordseg.maxent;
+
+/**
+ * The buffers one thread uses to decode sentences without allocation. The
+ * arrays grow to the longest sentence decoded and are reused afterwards.
+ *
+ * @author kidden
+ */
+final class WordSegScratch {
+
+    final long[] keys;
+    final double[] outcomeProbs;
+    final Window window = new Window();
+
+    /**
+     * The tag probabilities indexed by position * {@link WordSegTags#COUNT} + tag.
+     */
+    double[] emissions = new double[0];
+
+    /**
+     * The scaled forward and backward values of {@link WordSegMarginals},
+     * indexed like the emissions.
+     */
+    double[] forward = new double[0];
+    double[] backward = new double[0];
+
+    /**
+     * The best tag of every position.
+     */
+    int[] tags = new int[0];
+
+    /**
+     * The hypotheses of the decoder indexed by position * width + rank.
+     */
+    double[] scores = new double[0];
+    int[] states = new int[0];
+    int[] backs = new int[0];
+
+    /**
+     * The number of hypotheses of every position.
+     */
+    int[] counts = new int[0];
+
+    WordSegScratch(int maxContextKeys, int numOutcomes) {
+        keys = new long[maxContextKeys];
+        outcomeProbs = new double[numOutcomes];
+    }
+
+    /**
+     * Grows the buffers for a sentence of the given length, keeping at most
+     * width hypotheses per position.
+     */
+    void ensureCapacity(int length, int width) {
+        if (tags.length < length) {
+            int capacity = Math.max(length, tags.length * 2);
+            emissions = new double[capacity * WordSegTags.COUNT];
+            forward = new double[capacity * WordSegTags.COUNT];
+            backward = new double[capacity * WordSegTags.COUNT];
+            tags = new int[capacity];
+            counts = new int[capacity];
+        }
+
+        if (scores.length < length * width) {
+            int capacity = Math.max(length * width, scores.length * 2);
+            scores = new double[capacity];
+            states = new int[capacity];
+            backs = new int[capacity];
+        }
+    }
+
+    /**
+     * A view of a range of a text, so a range is decoded without copying it.
+     */
+    static final class Window implements CharSequence {
+
+        private CharSequence text;
+        private int start;
+        private int end;
+
+        Window reset(CharSequence text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(this.start + start, this.start + end);
+        }
+
+        @Override
+        public String toString() {
+            return text.subSequence(start, end).toString();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.kidden.tc.wordseg.maxent;
+
+/**
+ * A decoder which finds the best tags of a sentence from the emission table of
+ * a tag independent context generator held in a {@link WordSegScratch}.
+ *
+ * @author kidden
+ */
+interface WordSegTableDecoder {
+
+    /**
+     * Returns the number of hypotheses a position of the scratch must hold.
+     */
+    int getWidth();
+
+    /**
+     * Decodes the emission table of the scratch and writes the best tags to
+     * {@link WordSegScratch#tags}. Nothing is allocated.
+     *
+     * @param scratch the buffers holding the emission table of the sentence
+     * @param n the length of the sentence
+     * @return false if the sentence has no tag sequence
+     */
+    boolean bestTags(WordSegScratch scratch, int n);
+}
@@ -0,0 +1,84 @@
+package com.kidden.tc.wordseg.maxent;
+
+/**
+ * Integer ids of the word segmentation tags and the transitions allowed
+ * between them.
+ *
+ * Tag set includes S, B, M, E.
+ *
+ * @author kidden
+ */
+public final class WordSegTags {
+
+    public static final int S = 0;
+    public static final int B = 1;
+    public static final int M = 2;
+    public static final int E = 3;
+
+    /**
+     * The number of tags
+     */
+    public static final int COUNT = 4;
+
+    private static final String[] NAMES = {"S", "B", "M", "E"};
+
+    /**
+     * Allowed transitions indexed by [previous tag][tag]
+     */
+    private static final boolean[][] TRANSITIONS = {
+        {true, true, false, false},
+        {false, false, true, true},
+        {false, false, true, true},
+        {true, true, false, false}
+    };
+
+    private WordSegTags() {
+    }
+
+    /**
+     * Returns the id of the tag
+     *
+     * @param tag tag name
+     * @return the id of the tag or -1 if it is not a word segmentation tag
+     */
+    public static int id(String tag) {
+        if (tag.length() != 1) {
+            return -1;
+        }
+
+        switch (tag.charAt(0)) {
+            case 'S':
+                return S;
+            case 'B':
+                return B;
+            case 'M':
+                return M;
+            case 'E':
+                return E;
+            default:
+                return -1;
+        }
+    }
+
+    public static String name(int tag) {
+        return NAMES[tag];
+    }
+
+    /**
+     * The first character of a sentence starts a word
+     */
+    public static boolean isValidStart(int tag) {
+        return tag == S || tag == B;
+    }
+
+    /**
+     * The last character of a sentence ends a word
+     */
+    public static boolean isValidEnd(int tag) {
+        return tag == S || tag == E;
+    }
+
+    public static boolean isValidTransition(int previousTag, int tag) {
+        return TRANSITIONS[previousTag][tag];
+    }
+}
@@ -0,0 +1,163 @@
+package com.kidden.tc.wordseg.maxent;
+
+/**
+ * Pulls the words of a text from a {@link WordSegmenterME} one at a time,
+ * with their offsets.
+ *
+ * A stream is reset with a new text, which is segmented at once into an array
+ * of word ends kept by the stream, then every {@link #incrementToken()} moves
+ * to the next word. The term is a view of the text, not a copy, and is only
+ * valid until the next call. Words made only of whitespace are skipped.
+ *
+ * With a compiled or other keyed model and a tag independent key generator
+ * the segmenter decodes without allocation, so once the array of word ends
+ * has grown to the longest text a stream allocates nothing per text or per
+ * word. A stream is meant to be reused by one thread, the segmenter may be
+ * shared by many streams.
+ *
+ * <pre>
+ * stream.reset(text);
+ * while (stream.incrementToken()) {
+ *     index(stream.term(), stream.startOffset(), stream.endOffset());
+ * }
+ * </pre>
+ *
+ * @author kidden
+ */
+public final class WordSegTokenStream {
+
+    private final WordSegmenterME segmenter;
+
+    private final WordSegScratch.Window term = new WordSegScratch.Window();
+
+    private CharSequence text;
+
+    /**
+     * The end offset of every word of the text.
+     */
+    private int[] boundaries = new int[0];
+
+    private int count;
+
+    private int next;
+
+    private int end;
+
+    private int startOffset;
+
+    private int endOffset;
+
+    public WordSegTokenStream(WordSegmenterME segmenter) {
+        if (segmenter == null) {
+            throw new IllegalArgumentException("The segmenter must not be null");
+        }
+
+        this.segmenter = segmenter;
+    }
+
+    /**
+     * Segments a new text, the next {@link #incrementToken()} moves to its first word.
+     *
+     * @param text the text
+     */
+    public void reset(CharSequence text) {
+        reset(text, 0, text.length());
+    }
+
+    /**
+     * Segments a range of a new text. The offsets are those of the text.
+     *
+     * @param text the text
+     * @param start the offset of the first character of the range
+     * @param end the offset after the last character of the range
+     */
+    public void reset(CharSequence text, int start, int end) {
+        if (start < 0 || end > text.length() || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end
+                    + ") is out of the text of length " + text.length());
+        }
+
+        int n = end - start;
+        if (boundaries.length < n) {
+            boundaries = new int[Math.max(n, boundaries.length * 2)];
+        }
+
+        this.text = text;
+        this.end = end;
+        count = segmenter.segment(text, start, end, boundaries);
+        next = 0;
+        startOffset = start;
+        endOffset = start;
+        term.reset(text, start, start);
+    }
+
+    /**
+     * Moves to the next word.
+     *
+     * @return false if there is no word left
+     * @throws IllegalStateException if the stream has not been reset with a text
+     */
+    public boolean incrementToken() {
+        if (text == null) {
+            throw new IllegalStateException("The stream has no text, call reset first");
+        }
+
+        while (next < count) {
+            int start = endOffset;
+            endOffset = boundaries[next++];
+            startOffset = start;
+
+            if (!isWhitespace(start, endOffset)) {
+                term.reset(text, startOffset, endOffset);
+                return true;
+            }
+        }
+
+        startOffset = end;
+        endOffset = end;
+        term.reset(text, end, end);
+        return false;
+    }
+
+    private boolean isWhitespace(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the current word, a view of the text valid until the next call
+     * of {@link #incrementToken()} or {@link #reset(CharSequence)}.
+     */
+    public CharSequence term() {
+        return term;
+    }
+
+    /**
+     * Returns the offset of the first character of the current word in the text.
+     */
+    public int startOffset() {
+        return startOffset;
+    }
+
+    /**
+     * Returns the offset after the last character of the current word in the text.
+     */
+    public int endOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Drops the reference to the text, keeping the array of word ends for the
+     * next text.
+     */
+    public void close() {
+        text = null;
+        term.reset(null, 0, 0);
+        count = 0;
+        next = 0;
+    }
+}
@@ -0,0 +1,408 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.Arrays;
+
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.ml.model.SequenceClassificationModel;
+import opennlp.tools.util.BeamSearchContextGenerator;
+import opennlp.tools.util.Sequence;
+import opennlp.tools.util.SequenceValidator;
+
+/**
+ * Exact first-order Viterbi decoder over the S, B, M, E tag set.
+ *
+ * The legal tag transitions are taken from {@link WordSegTags}, so the
+ * validator passed to the decoding methods is not consulted. A context
+ * generator may look at the two previous tags: the previous tag is part of
+ * the decoder state, the one before it is taken from the best path ending in
+ * that state. The decoder keeps no state between calls and may be shared by
+ * many threads.
+ *
+ * @author kidden
+ */
+public class WordSegViterbi implements SequenceClassificationModel<String>, WordSegTableDecoder {
+
+    private final MaxentModel model;
+
+    /**
+     * The model outcome of each tag, -1 if the model never predicts the tag.
+     */
+    private final int[] tagOutcomes;
+
+    public WordSegViterbi(MaxentModel model) {
+        this.model = model;
+
+        tagOutcomes = WordSegEmissions.tagOutcomes(model);
+    }
+
+    @Override
+    public Sequence bestSequence(String[] sequence, Object[] additionalContext,
+            BeamSearchContextGenerator<String> cg, SequenceValidator<String> validator) {
+        Sequence[] sequences = bestSequences(1, sequence, additionalContext, cg, validator);
+
+        if (sequences.length > 0) {
+            return sequences[0];
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public Sequence[] bestSequences(int numSequences, String[] sequence, Object[] additionalContext,
+            BeamSearchContextGenerator<String> cg, SequenceValidator<String> validator) {
+        return bestSequences(numSequences, sequence, additionalContext, Double.NEGATIVE_INFINITY, cg, validator);
+    }
+
+    /**
+     * Returns the best sequences in descending order of score. Every state keeps
+     * its {@code numSequences} best paths, so the result is exact for context
+     * generators which look at no more than the previous tag.
+     */
+    @Override
+    public Sequence[] bestSequences(int numSequences, String[] sequence, Object[] additionalContext,
+            double minSequenceScore, BeamSearchContextGenerator<String> cg, SequenceValidator<String> validator) {
+        int n = sequence.length;
+        int k = numSequences;
+
+        if (k <= 0) {
+            return new Sequence[0];
+        } else if (n == 0) {
+            return new Sequence[]{new Sequence()};
+        }
+
+        // path entries indexed by ((position * tags) + tag) * k + rank
+        double[] scores = new double[n * WordSegTags.COUNT * k];
+        double[] probs = new double[n * WordSegTags.COUNT * k];
+        int[] backTags = new int[n * WordSegTags.COUNT * k];
+        int[] backRanks = new int[n * WordSegTags.COUNT * k];
+        int[] counts = new int[n * WordSegTags.COUNT];
+
+        String[] priorTags = new String[n];
+        Scorer scorer = new Scorer(sequence, additionalContext, cg, priorTags);
+
+        double[] dist = scorer.eval(0);
+        for (int tag = 0; tag < WordSegTags.COUNT; tag++) {
+            double p = tagProb(dist, tag);
+            if (WordSegTags.isValidStart(tag) && p > 0) {
+                insert(scores, probs, backTags, backRanks, counts, k, tag, Math.log(p), p, -1, -1);
+            }
+        }
+
+        for (int i = 1; i < n; i++) {
+            scorer.nextPosition();
+
+            for (int prev = 0; prev < WordSegTags.COUNT; prev++) {
+                int prevState = (i - 1) * WordSegTags.COUNT + prev;
+                if (counts[prevState] == 0) {
+                    continue;
+                }
+
+                priorTags[i - 1] = WordSegTags.name(prev);
+                if (i > 1) {
+                    priorTags[i - 2] = WordSegTags.name(backTags[prevState * k]);
+                }
+
+                dist = scorer.eval(i);
+
+                for (int tag = 0; tag < WordSegTags.COUNT; tag++) {
+                    double p = tagProb(dist, tag);
+                    if (!WordSegTags.isValidTransition(prev, tag) || p <= 0) {
+                        continue;
+                    }
+
+                    double logP = Math.log(p);
+                    int state = i * WordSegTags.COUNT + tag;
+                    for (int r = 0; r < counts[prevState]; r++) {
+                        insert(scores, probs, backTags, backRanks, counts, k, state,
+                                scores[prevState * k + r] + logP, p, prev, r);
+                    }
+                }
+            }
+        }
+
+        return collect(scores, probs, backTags, backRanks, counts, n, k, minSequenceScore);
+    }
+
+    @Override
+    public int getWidth() {
+        return WordSegTags.COUNT;
+    }
+
+    @Override
+    public boolean bestTags(WordSegScratch scratch, int n) {
+        if (n == 0) {
+            return true;
+        }
+
+        double[] emissions = scratch.emissions;
+        double[] scores = scratch.scores;
+        int[] backs = scratch.backs;
+
+        for (int tag = 0; tag < WordSegTags.COUNT; tag++) {
+            double p = emissions[tag];
+            scores[tag] = WordSegTags.isValidStart(tag) && p > 0 ? Math.log(p) : Double.NEGATIVE_INFINITY;
+        }
+
+        for (int i = 1; i < n; i++) {
+            int base = i * WordSegTags.COUNT;
+            for (int tag = 0; tag < WordSegTags.COUNT; tag++) {
+                double p = emissions[base + tag];
+                double best = Double.NEGATIVE_INFINITY;
+                int back = -1;
+
+                if (p > 0) {
+                    for (int prev = 0; prev < WordSegTags.COUNT; prev++) {
+                        double score = scores[base - WordSegTags.COUNT + prev];
+                        if (WordSegTags.isValidTransition(prev, tag) && score > best) {
+                            best = score;
+                            back = prev;
+                        }
+                    }
+                }
+
+                scores[base + tag] = back < 0 ? Double.NEGATIVE_INFINITY : best + Math.log(p);
+                backs[base + tag] = back;
+            }
+        }
+
+        // paths ending inside a word are only used if no path ends with a complete word
+        int last = (n - 1) * WordSegTags.COUNT;
+        int tag = -1;
+        for (int pass = 0; pass < 2 && tag < 0; pass++) {
+            double best = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < WordSegTags.COUNT; t++) {
+                if ((pass == 1 || WordSegTags.isValidEnd(t)) && scores[last + t] > best) {
+                    best = scores[last + t];
+                    tag = t;
+                }
+            }
+        }
+
+        if (tag < 0) {
+            return false;
+        }
+
+        for (int i = n - 1; i >= 0; i--) {
+            scratch.tags[i] = tag;
+            tag = backs[i * WordSegTags.COUNT + tag];
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates the contexts of one sentence. Contexts which ignore the previous
+     * tags are evaluated only once per position. Keys are used instead of
+     * feature strings when the generator and the model support them.
+     */
+    private class Scorer {
+
+        private final String[] sequence;
+        private final Object[] additionalContext;
+        private final BeamSearchContextGenerator<String> cg;
+        private final String[] priorTags;
+
+        private final double[] outcomeProbs = new double[model.getNumOutcomes()];
+
+        private WordSegContextKeyGenerator keyGen;
+        private WordSegKeyedModel keyed;
+        private CharSequence chars;
+        private long[] keys;
+        private long[] lastKeys;
+        private int lastKeyCount = -1;
+
+        private String[] lastContext;
+
+        private final boolean tagIndependent;
+        private boolean evaluated;
+
+        Scorer(String[] sequence, Object[] additionalContext, BeamSearchContextGenerator<String> cg,
+                String[] priorTags) {
+            this.sequence = sequence;
+            this.additionalContext = additionalContext;
+            this.cg = cg;
+            this.priorTags = priorTags;
+
+            tagIndependent = cg instanceof WordSegContextGenerator
+                    && ((WordSegContextGenerator) cg).isTagIndependent();
+
+            if (cg instanceof WordSegContextKeyGenerator && model instanceof WordSegKeyedModel) {
+                chars = toChars(sequence);
+            }
+
+            if (chars != null) {
+                keyGen = (WordSegContextKeyGenerator) cg;
+                keyed = (WordSegKeyedModel) model;
+                keys = new long[keyGen.getMaxContextKeys()];
+                lastKeys = new long[keyGen.getMaxContextKeys()];
+            }
+        }
+
+        void nextPosition() {
+            lastContext = null;
+            lastKeyCount = -1;
+            evaluated = false;
+        }
+
+        double[] eval(int index) {
+            // the previous tags do not change the context of the position
+            if (tagIndependent && evaluated) {
+                return outcomeProbs;
+            }
+            evaluated = true;
+
+            if (keyGen != null) {
+                int count = keyGen.getContextKeys(index, chars, priorTags, keys);
+                if (count != lastKeyCount || !sameKeys(count)) {
+                    keyed.eval(keys, count, outcomeProbs);
+
+                    long[] swap = lastKeys;
+                    lastKeys = keys;
+                    keys = swap;
+                    lastKeyCount = count;
+                }
+            } else {
+                String[] context = cg.getContext(index, sequence, priorTags, additionalContext);
+                if (!Arrays.equals(context, lastContext)) {
+                    Arrays.fill(outcomeProbs, 0);
+                    model.eval(context, outcomeProbs);
+                    lastContext = context;
+                }
+            }
+
+            return outcomeProbs;
+        }
+
+        private boolean sameKeys(int count) {
+            for (int i = 0; i < count; i++) {
+                if (keys[i] != lastKeys[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Joins the tokens if every token is a single character, returns null
+     * otherwise.
+     */
+    static CharSequence toChars(String[] sequence) {
+        StringBuilder chars = new StringBuilder(sequence.length);
+        for (String token : sequence) {
+            if (token.length() != 1) {
+                return null;
+            }
+            chars.append(token.charAt(0));
+        }
+
+        return chars;
+    }
+
+    private double tagProb(double[] dist, int tag) {
+        int outcome = tagOutcomes[tag];
+        return outcome < 0 ? 0 : dist[outcome];
+    }
+
+    /**
+     * Inserts a path into the sorted best paths of a state, dropping the worst
+     * one if the state is full.
+     */
+    private static void insert(double[] scores, double[] probs, int[] backTags, int[] backRanks,
+            int[] counts, int k, int state, double score, double prob, int backTag, int backRank) {
+        int count = counts[state];
+        int base = state * k;
+
+        if (count == k && scores[base + k - 1] >= score) {
+            return;
+        }
+
+        int r = count < k ? count : k - 1;
+        while (r > 0 && scores[base + r - 1] < score) {
+            scores[base + r] = scores[base + r - 1];
+            probs[base + r] = probs[base + r - 1];
+            backTags[base + r] = backTags[base + r - 1];
+            backRanks[base + r] = backRanks[base + r - 1];
+            r--;
+        }
+
+        scores[base + r] = score;
+        probs[base + r] = prob;
+        backTags[base + r] = backTag;
+        backRanks[base + r] = backRank;
+
+        if (count < k) {
+            counts[state] = count + 1;
+        }
+    }
+
+    /**
+     * Merges the paths of the final states and follows the back pointers of the
+     * best ones. Paths ending inside a word are only used if no path ends with
+     * a complete word.
+     */
+    private static Sequence[] collect(double[] scores, double[] probs, int[] backTags, int[] backRanks,
+            int[] counts, int n, int k, double minSequenceScore) {
+        int last = (n - 1) * WordSegTags.COUNT;
+
+        boolean complete = false;
+        for (int tag = 0; tag < WordSegTags.COUNT; tag++) {
+            if (WordSegTags.isValidEnd(tag) && counts[last + tag] > 0) {
+                complete = true;
+            }
+        }
+
+        int[] finalCounts = new int[1];
+        double[] finalScores = new double[k];
+        double[] finalProbs = new double[k];
+        int[] finalTags = new int[k];
+        int[] finalRanks = new int[k];
+        for (int tag = 0; tag < WordSegTags.COUNT; tag++) {
+            if (complete && !WordSegTags.isValidEnd(tag)) {
+                continue;
+            }
+
+            int state = last + tag;
+            for (int r = 0; r < counts[state]; r++) {
+                double score = scores[state * k + r];
+                if (score > minSequenceScore) {
+                    insert(finalScores, finalProbs, finalTags, finalRanks, finalCounts, k, 0,
+                            score, 0, tag, r);
+                }
+            }
+        }
+
+        Sequence[] sequences = new Sequence[finalCounts[0]];
+        String[] tags = new String[n];
+        double[] tagProbs = new double[n];
+        for (int s = 0; s < sequences.length; s++) {
+            int tag = finalTags[s];
+            int rank = finalRanks[s];
+            for (int i = n - 1; i >= 0; i--) {
+                int entry = (i * WordSegTags.COUNT + tag) * k + rank;
+                tags[i] = WordSegTags.name(tag);
+                tagProbs[i] = probs[entry];
+                tag = backTags[entry];
+                rank = backRanks[entry];
+            }
+
+            Sequence sequence = new Sequence();
+            for (int i = 0; i < n; i++) {
+                sequence.add(tags[i], tagProbs[i]);
+            }
+            sequences[s] = sequence;
+        }
+
+        return sequences;
+    }
+
+    @Override
+    public String[] getOutcomes() {
+        String outcomes[] = new String[model.getNumOutcomes()];
+
+        for (int i = 0; i < model.getNumOutcomes(); i++) {
+            outcomes[i] = model.getOutcome(i);
+        }
+
+        return outcomes;
+    }
+}
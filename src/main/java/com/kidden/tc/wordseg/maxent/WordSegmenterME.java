@@ -11,10 +11,12 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import opennlp.tools.ml.BeamSearch;
 import opennlp.tools.ml.EventModelSequenceTrainer;
@@ -35,11 +37,53 @@ import opennlp.tools.util.TrainingParameters;
 /**
  * A chinese word segmenter that uses maximum entropy.
  *
+ * The segmenter keeps no per-sentence state in {@link #decode(String[], Object[])}
+ * and {@link #segment(String)}, so one instance backed by one {@link WordSegModel}
+ * can be shared by any number of threads. Only the legacy {@link #probs()}
+ * accessors remember the last sentence tagged through {@link #tag(String[], Object[])}.
+ *
  */
-public class WordSegmenterME implements WordSegmenter {
+public class WordSegmenterME implements WordSegmenter, WordSegModelProvider {
 
     public static final int DEFAULT_BEAM_SIZE = 3;
 
+    /**
+     * The manifest entry or training parameter which selects the decoder,
+     * {@link #BEAM_DECODER} or {@link #VITERBI_DECODER}.
+     */
+    public static final String DECODER_PARAMETER = "Decoder";
+
+    /**
+     * Decode with the beam search of {@link WordSegBeamSearch}, the default.
+     */
+    public static final String BEAM_DECODER = "beam";
+
+    /**
+     * Decode with the exact Viterbi search of {@link WordSegViterbi}.
+     */
+    public static final String VITERBI_DECODER = "viterbi";
+
+    /**
+     * The manifest entry or training parameter which makes the segmenter
+     * score with the {@link CompiledWordSegModel} when set to "true".
+     */
+    public static final String COMPILED_PARAMETER = "Compiled";
+
+    /**
+     * The manifest entry, training parameter or setting which makes the beam
+     * search adaptive: a position whose best tag leads the second best by at
+     * least this probability margin is decoded with a single hypothesis.
+     */
+    public static final String BEAM_MARGIN_PARAMETER = "BeamMargin";
+
+    /**
+     * The manifest entry, training parameter or setting which lets
+     * {@link WordSegPretokenizer} take ASCII words, numbers, URLs, e-mail
+     * addresses and full-width runs as words without the model, see
+     * {@link WordSegPretokenizer#parse(String)}.
+     */
+    public static final String PRETOKENIZE_PARAMETER = "Pretokenize";
+
     private WordSegModel modelPackage;
 
     /**
@@ -53,12 +97,37 @@ public class WordSegmenterME implements WordSegmenter {
      */
     protected int size;
 
-    private Sequence bestSequence;
+    private volatile WordSegResult lastResult;
+
+    private volatile WordSegMetricsListener metrics = WordSegMetricsListener.NOOP;
+
+    /**
+     * The event model, null if the model package holds a sequence model.
+     */
+    private MaxentModel eventModel;
 
+    /**
+     * The sequence model which decodes the sentences.
+     */
     private SequenceClassificationModel<String> model;
 
     private SequenceValidator<String> sequenceValidator;
 
+    /**
+     * The decoder of {@link #segment(CharSequence, int, int, int[])}, null if
+     * the sentences are decoded through {@link #decode(String[], Object[])}.
+     */
+    private WordSegTableDecoder tableDecoder;
+
+    private int[] tagOutcomes;
+
+    /**
+     * Finds the runs which bypass the model, null if every character is decoded.
+     */
+    private WordSegPretokenizer pretokenizer;
+
+    private final ThreadLocal<WordSegScratch> scratch = new ThreadLocal<WordSegScratch>();
+
     public WordSegmenterME(WordSegModel model) {
         this(model, new DefaultWordSegContextGenerator());
     }
@@ -71,7 +140,21 @@ public class WordSegmenterME implements WordSegmenter {
      * @param contextGenerator context generator for ME
      */
     public WordSegmenterME(WordSegModel model, WordSegContextGenerator contextGenerator) {
-        init(model, contextGenerator);
+        init(model, contextGenerator, null);
+    }
+
+    /**
+     * Initializes the current instance with the provided model and decoding
+     * settings, such as {@link #DECODER_PARAMETER}, which take precedence over
+     * the entries of the model manifest.
+     *
+     * @param model
+     * @param contextGenerator context generator for ME
+     * @param settings decoding settings, may be null
+     */
+    public WordSegmenterME(WordSegModel model, WordSegContextGenerator contextGenerator,
+            Map<String, String> settings) {
+        init(model, contextGenerator, settings);
     }
     
     public WordSegmenterME(File modelFile) throws IOException {
@@ -82,13 +165,14 @@ public class WordSegmenterME implements WordSegmenter {
         InputStream modelIn = new BufferedInputStream(new FileInputStream(modelFile));
         WordSegModel model = new WordSegModel(modelIn);
         
-        init(model, contextGenerator);
+        init(model, contextGenerator, null);
     }
     
-    private void init(WordSegModel model, WordSegContextGenerator contextGenerator){
+    private void init(WordSegModel model, WordSegContextGenerator contextGenerator,
+            Map<String, String> settings){
         int beamSize = WordSegmenterME.DEFAULT_BEAM_SIZE;
 
-        String beamSizeString = model.getManifestProperty(BeamSearch.BEAM_SIZE_PARAMETER);
+        String beamSizeString = getSetting(model, settings, BeamSearch.BEAM_SIZE_PARAMETER);
 
         if (beamSizeString != null) {
             beamSize = Integer.parseInt(beamSizeString);
@@ -101,14 +185,51 @@ public class WordSegmenterME implements WordSegmenter {
 
         sequenceValidator = new DefaultWordSegSequenceValidator();
 
-        if (model.getWordSegSequenceModel() != null) {
+        String decoder = getSetting(model, settings, DECODER_PARAMETER);
+
+        eventModel = model.getWordSegModel();
+        if (eventModel != null && "true".equals(getSetting(model, settings, COMPILED_PARAMETER))) {
+            eventModel = model.getCompiledModel();
+        }
+
+        if (eventModel == null) {
             this.model = model.getWordSegSequenceModel();
+        } else if (VITERBI_DECODER.equals(decoder)) {
+            this.model = new WordSegViterbi(eventModel);
+        } else if (decoder == null || BEAM_DECODER.equals(decoder)) {
+            String margin = getSetting(model, settings, BEAM_MARGIN_PARAMETER);
+            if (margin == null) {
+                this.model = new WordSegBeamSearch(size, eventModel);
+            } else {
+                this.model = new WordSegBeamSearch(size, eventModel, Double.parseDouble(margin));
+            }
         } else {
-            this.model = new opennlp.tools.ml.BeamSearch<String>(beamSize,
-                    model.getWordSegModel(), 0);
+            throw new IllegalArgumentException("Decoder is not supported: " + decoder);
+        }
+
+        pretokenizer = WordSegPretokenizer.parse(getSetting(model, settings, PRETOKENIZE_PARAMETER));
+
+        // offsets are decoded from keys without allocation if possible
+        if (eventModel instanceof WordSegKeyedModel && contextGen instanceof WordSegContextKeyGenerator
+                && contextGen.isTagIndependent() && this.model instanceof WordSegTableDecoder) {
+            tableDecoder = (WordSegTableDecoder) this.model;
+            tagOutcomes = WordSegEmissions.tagOutcomes(eventModel);
         }
     }
 
+    @Override
+    public WordSegModel getModel() {
+        return modelPackage;
+    }
+
+    private static String getSetting(WordSegModel model, Map<String, String> settings, String key) {
+        if (settings != null && settings.containsKey(key)) {
+            return settings.get(key);
+        }
+
+        return model.getManifestProperty(key);
+    }
+
     /**
      * Retrieves an array of all possible segmentation tags from the segmenter.
      *
@@ -122,43 +243,625 @@ public class WordSegmenterME implements WordSegmenter {
         return this.tag(sentence, null);
     }
 
+    /**
+     * Tags the characters of the sentence. With a {@link WordSegPretokenizer}
+     * the tags are those of the segmentation, the runs it finds included.
+     */
     public String[] tag(String sentence) {
+        if (pretokenizer == null) {
+            return tag(toChars(sentence));
+        }
+
+        int[] boundaries = new int[sentence.length()];
+        int count = segment(sentence, boundaries);
+
+        String[] tags = new String[sentence.length()];
+        int start = 0;
+        for (int w = 0; w < count; w++) {
+            int end = boundaries[w];
+            if (end - start == 1) {
+                tags[start] = WordSegTags.name(WordSegTags.S);
+            } else {
+                tags[start] = WordSegTags.name(WordSegTags.B);
+                for (int i = start + 1; i < end - 1; i++) {
+                    tags[i] = WordSegTags.name(WordSegTags.M);
+                }
+                tags[end - 1] = WordSegTags.name(WordSegTags.E);
+            }
+            start = end;
+        }
+
+        return tags;
+    }
+
+    /**
+     * Returns the average number of hypotheses the beam search extended per
+     * position, NaN if the segmenter does not decode with
+     * {@link WordSegBeamSearch} or has not searched on emission tables yet.
+     *
+     * @see WordSegBeamSearch#getAverageWidth()
+     */
+    public double getAverageBeamWidth() {
+        return model instanceof WordSegBeamSearch ? ((WordSegBeamSearch) model).getAverageWidth() : Double.NaN;
+    }
+
+    /**
+     * Sets the listener told about every segmented or tagged sentence and
+     * every range decoded with the model. The beam search decoder reports its
+     * expansions to the same listener.
+     *
+     * @param metrics the listener, {@link WordSegMetricsListener#NOOP} to stop reporting
+     * @throws IllegalArgumentException if the listener is null
+     */
+    public void setMetricsListener(WordSegMetricsListener metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("The metrics listener must not be null");
+        }
+
+        this.metrics = metrics;
+        if (model instanceof WordSegBeamSearch) {
+            ((WordSegBeamSearch) model).setMetricsListener(metrics);
+        }
+    }
+
+    public WordSegMetricsListener getMetricsListener() {
+        return metrics;
+    }
+
+    public WordSegPretokenizer getPretokenizer() {
+        return pretokenizer;
+    }
+
+    private static String[] toChars(String sentence) {
         String[] chars = new String[sentence.length()];
 
         for (int i = 0; i < sentence.length(); i++) {
             chars[i] = sentence.charAt(i) + "";
         }
 
-        return tag(chars);
+        return chars;
+    }
+
+    /**
+     * Finds the best tag sequence of the sentence. Nothing is remembered by the
+     * segmenter, so this method may be called concurrently.
+     *
+     * @param sentence the characters of the sentence
+     * @param additionalContext the additional context passed to the context generator
+     * @return the tags, their probabilities and the sequence score
+     * @throws IllegalStateException if no tag sequence is valid, which the
+     * default sequence validator never causes
+     */
+    public WordSegResult decode(String[] sentence, Object[] additionalContext) {
+        Sequence sequence = model.bestSequence(sentence, additionalContext,
+                contextGen, sequenceValidator);
+
+        return WordSegResult.of(sequence);
+    }
+
+    public WordSegResult decode(String[] sentence) {
+        return decode(sentence, null);
+    }
+
+    public WordSegResult decode(String sentence) {
+        return decode(toChars(sentence));
     }
 
     @Override
     public String[] segment(String text) {
-        String[] tags = tag(text);
+        int[] boundaries = new int[text.length()];
+        int count = segment(text, boundaries);
+
+        String[] words = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            words[i] = text.substring(start, boundaries[i]);
+            start = boundaries[i];
+        }
+
+        return words;
+    }
+
+    /**
+     * Segments a batch of sentences in the common {@link ForkJoinPool}.
+     *
+     * @param sentences the sentences to be segmented
+     * @return the words of every sentence, in the order of the batch
+     */
+    @Override
+    public List<String[]> segment(List<? extends CharSequence> sentences) {
+        return segment(sentences, ForkJoinPool.commonPool());
+    }
 
-        String word = new String();
-        ArrayList<String> words = new ArrayList<String>();
-        for (int i = 0; i < tags.length; i++) {
-            word += text.charAt(i);
+    /**
+     * Segments a batch of sentences in the given pool. The batch is split into
+     * a few tasks per worker, and every worker reuses its own decoding buffers
+     * for all of its sentences.
+     *
+     * @param sentences the sentences to be segmented
+     * @param pool the pool the sentences are segmented in
+     * @return the words of every sentence, in the order of the batch
+     */
+    public List<String[]> segment(List<? extends CharSequence> sentences, ForkJoinPool pool) {
+        String[][] results = new String[sentences.size()][];
 
-            if (tags[i].equals("S") || tags[i].equals("E")) {
-                words.add(word);
-                word = "";
+        if (!sentences.isEmpty()) {
+            int threshold = Math.max(1, sentences.size() / (pool.getParallelism() * 4));
+            pool.invoke(new WordSegBatchTask(this, sentences, results, 0, sentences.size(), threshold));
+        }
+
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public int segment(CharSequence text, int[] boundaries) {
+        return segment(text, 0, text.length(), boundaries);
+    }
+
+    /**
+     * Segments a range of the text and writes the end offset of every word,
+     * relative to the start of the text, to the boundaries. The first word
+     * starts at {@code start}, every following word at the end of the previous
+     * one.
+     *
+     * With a {@link WordSegKeyedModel}, such as the {@link CompiledWordSegModel},
+     * and a tag independent {@link WordSegContextKeyGenerator} the range is
+     * decoded from buffers kept per thread and nothing is allocated, otherwise
+     * the characters are copied into strings and decoded with
+     * {@link #decode(String[], Object[])}.
+     * With a {@link WordSegPretokenizer} its runs are words on their own and
+     * only the characters between them are decoded.
+     *
+     * @param text the text to be segmented
+     * @param start the offset of the first character of the range
+     * @param end the offset after the last character of the range
+     * @param boundaries the array receiving the end offsets of the words
+     * @return the number of words
+     * @throws IllegalArgumentException if the boundaries are shorter than the range
+     */
+    public int segment(CharSequence text, int start, int end, int[] boundaries) {
+        if (start < 0 || end > text.length() || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end
+                    + ") is out of the text of length " + text.length());
+        }
+
+        int n = end - start;
+        if (boundaries.length < n) {
+            throw new IllegalArgumentException("The boundaries array is shorter than the text: "
+                    + boundaries.length + " < " + n);
+        }
+
+        WordSegMetricsListener listener = metrics;
+        if (listener == WordSegMetricsListener.NOOP) {
+            return segment(text, start, end, boundaries, 0);
+        }
+
+        long begin = System.nanoTime();
+        int count = segment(text, start, end, boundaries, 0);
+        listener.sentenceSegmented(n, count, System.nanoTime() - begin);
+        return count;
+    }
+
+    /**
+     * Segments a range of the text and writes the end offsets of the words to
+     * the boundaries from the given index on.
+     */
+    int segment(CharSequence text, int start, int end, int[] boundaries, int offset) {
+        if (pretokenizer == null) {
+            return decodeRange(text, start, end, boundaries, offset);
+        }
+
+        int count = offset;
+        int gap = start;
+        for (int i = start; i < end;) {
+            int runEnd = pretokenizer.match(text, start, i, end);
+            if (runEnd == i) {
+                i++;
+                continue;
             }
 
+            if (gap < i) {
+                count += decodeRange(text, gap, i, boundaries, count);
+            }
+            boundaries[count++] = runEnd;
+            i = runEnd;
+            gap = runEnd;
+        }
+        if (gap < end) {
+            count += decodeRange(text, gap, end, boundaries, count);
         }
 
-        if (word.length() > 0) {
-            words.add(word);
+        return count - offset;
+    }
+
+    /**
+     * Decodes every character of the range with the model.
+     */
+    private int decodeRange(CharSequence text, int start, int end, int[] boundaries, int offset) {
+        int n = end - start;
+        WordSegScratch buffers = getScratch();
+        int width = tableDecoder == null ? 0 : tableDecoder.getWidth();
+        buffers.ensureCapacity(n, width);
+
+        int evaluations = n;
+        if (tableDecoder == null || !decodeTable(text, start, end, buffers)) {
+            evaluations = evaluations(n);
+            String[] chars = new String[n];
+            for (int i = 0; i < n; i++) {
+                chars[i] = String.valueOf(text.charAt(start + i));
+            }
+
+            String[] tags = decode(chars).getTags();
+            for (int i = 0; i < n; i++) {
+                buffers.tags[i] = WordSegTags.id(tags[i]);
+            }
+        }
+
+        int count = offset;
+        for (int i = 0; i < n; i++) {
+            int tag = buffers.tags[i];
+            if (tag >= 0 && WordSegTags.isValidEnd(tag)) {
+                boundaries[count++] = start + i + 1;
+            }
+        }
+
+        // a sentence ending inside a word still ends the word
+        if (n > 0 && (count == offset || boundaries[count - 1] != end)) {
+            boundaries[count++] = end;
+        }
+
+        metrics.modelEvaluated(evaluations);
+        return count - offset;
+    }
+
+    /**
+     * Returns how many times the decoder evaluates the model for a sentence
+     * of n characters: once per character when it scores a table of tag
+     * probabilities, otherwise once per character and hypothesis, at most
+     * the beam size for the beam search and the number of tags for the
+     * Viterbi decoder.
+     */
+    private int evaluations(int n) {
+        if (model instanceof WordSegViterbi) {
+            return contextGen.isTagIndependent() ? n : n * WordSegTags.COUNT;
+        } else if (model instanceof WordSegBeamSearch) {
+            WordSegBeamSearch search = (WordSegBeamSearch) model;
+            return search.searchesTable(contextGen, sequenceValidator) ? n : n * search.getSize();
+        }
+        return n;
+    }
+
+    /**
+     * Segments a long text in the given pool. The text is cut at the safe
+     * boundaries found by {@link WordSegChunker}, where no word can continue,
+     * and the chunks are segmented in parallel. The result is the same as
+     * segmenting every chunk on its own with
+     * {@link #segment(CharSequence, int, int, int[])}, one after another.
+     * The cuts are word ends of the whole text segmented at once as well, but
+     * the words next to a cut may differ from it, since the features of a
+     * chunk do not see the characters past its ends.
+     *
+     * @param text the text to be segmented
+     * @param boundaries the array receiving the end offsets of the words, at
+     * least as long as the text
+     * @param pool the pool the chunks are segmented in
+     * @return the number of words
+     */
+    public int segment(CharSequence text, int[] boundaries, ForkJoinPool pool) {
+        int n = text.length();
+        if (boundaries.length < n) {
+            throw new IllegalArgumentException("The boundaries array is shorter than the text: "
+                    + boundaries.length + " < " + n);
+        }
+
+        WordSegMetricsListener listener = metrics;
+        long begin = listener == WordSegMetricsListener.NOOP ? 0 : System.nanoTime();
+
+        int[] ends = WordSegChunker.split(text);
+        int[] counts = new int[ends.length];
+        if (ends.length > 0) {
+            pool.invoke(new WordSegChunkTask(this, text, ends, counts, boundaries, 0, ends.length));
+        }
+
+        // the words of a chunk were written from the index of its first character
+        int count = 0;
+        for (int c = 0; c < ends.length; c++) {
+            int start = c == 0 ? 0 : ends[c - 1];
+            System.arraycopy(boundaries, start, boundaries, count, counts[c]);
+            count += counts[c];
+        }
+
+        if (listener != WordSegMetricsListener.NOOP) {
+            listener.sentenceSegmented(n, count, System.nanoTime() - begin);
+        }
+        return count;
+    }
+
+    /**
+     * Builds the word lattice of the text with words of up to
+     * {@link WordSegLattice#DEFAULT_MAX_WORD_LENGTH} characters.
+     *
+     * @param text the sentence
+     * @return the lattice of the sentence
+     * @throws UnsupportedOperationException if the context generator looks at
+     * the previous tags or the model package holds a sequence model
+     */
+    public WordSegLattice lattice(CharSequence text) {
+        return lattice(text, WordSegLattice.DEFAULT_MAX_WORD_LENGTH);
+    }
+
+    /**
+     * Builds the word lattice of the text, whose paths are the segmentations
+     * of the text in order of their probability. The model scores every
+     * character once, the paths are enumerated without decoding again.
+     * Runs of a {@link WordSegPretokenizer} are certain words, as they are for
+     * {@link #segment(CharSequence, int[])}: every path keeps them whole, even
+     * if they are longer than the longest word, and the text between them is
+     * scored on its own.
+     *
+     * @param text the sentence
+     * @param maxWordLength the longest word in the lattice
+     * @return the lattice of the sentence
+     * @throws UnsupportedOperationException if the context generator looks at
+     * the previous tags or the model package holds a sequence model
+     */
+    public WordSegLattice lattice(CharSequence text, int maxWordLength) {
+        if (maxWordLength < 1) {
+            throw new IllegalArgumentException("The maximum word length must be positive: " + maxWordLength);
+        }
+        if (eventModel == null || !contextGen.isTagIndependent()) {
+            throw new UnsupportedOperationException("A lattice needs an event model and a tag independent "
+                    + "context generator");
+        }
+
+        if (pretokenizer == null) {
+            return new WordSegLattice(text, emissions(text), maxWordLength);
         }
 
-        return words.toArray(new String[words.size()]);
+        int n = text.length();
+        double[] table = new double[n * WordSegTags.COUNT];
+        int gap = 0;
+        for (int i = 0; i < n;) {
+            int runEnd = pretokenizer.match(text, 0, i, n);
+            if (runEnd == i) {
+                i++;
+                continue;
+            }
+
+            copyEmissions(text, gap, i, table);
+
+            // the tags of the run are certain, so every other word over it scores negative infinity
+            for (int j = i; j < runEnd; j++) {
+                int tag = runEnd - i == 1 ? WordSegTags.S
+                        : j == i ? WordSegTags.B : j == runEnd - 1 ? WordSegTags.E : WordSegTags.M;
+                table[j * WordSegTags.COUNT + tag] = 1;
+            }
+            maxWordLength = Math.max(maxWordLength, runEnd - i);
+            i = runEnd;
+            gap = runEnd;
+        }
+        copyEmissions(text, gap, n, table);
+
+        return new WordSegLattice(text, table, maxWordLength);
+    }
+
+    /**
+     * Copies the tag probabilities of a range, scored as a sentence of its
+     * own, to the table at their offsets in the text.
+     */
+    private void copyEmissions(CharSequence text, int start, int end, double[] table) {
+        if (start < end) {
+            double[] range = emissions(text.subSequence(start, end));
+            System.arraycopy(range, 0, table, start * WordSegTags.COUNT, (end - start) * WordSegTags.COUNT);
+        }
+    }
+
+    /**
+     * Returns the probability of a word boundary between every two adjacent
+     * characters of the text.
+     *
+     * @param text the sentence
+     * @return the probability that a word ends after character i at index i,
+     * one value less than the text has characters
+     * @throws UnsupportedOperationException if the context generator looks at
+     * the previous tags or the model package holds a sequence model
+     * @see #boundaryMarginals(CharSequence, double[])
+     */
+    public double[] boundaryMarginals(CharSequence text) {
+        double[] marginals = new double[Math.max(0, text.length() - 1)];
+        boundaryMarginals(text, marginals);
+
+        return marginals;
+    }
+
+    /**
+     * Computes the posterior probability of a word boundary between every two
+     * adjacent characters of the text by forward-backward over the tags, in
+     * time linear in the length of the text. The probabilities are taken over
+     * all segmentations, not only the best one. Runs of a
+     * {@link WordSegPretokenizer} are certain words.
+     *
+     * With a {@link WordSegKeyedModel} and a {@link WordSegContextKeyGenerator}
+     * only buffers kept per thread are used.
+     *
+     * @param text the sentence
+     * @param marginals the array receiving the probability that a word ends
+     * after character i at index i, at least one shorter than the text
+     * @throws IllegalArgumentException if the array is too short
+     * @throws UnsupportedOperationException if the context generator looks at
+     * the previous tags or the model package holds a sequence model
+     */
+    public void boundaryMarginals(CharSequence text, double[] marginals) {
+        int n = text.length();
+        if (marginals.length < n - 1) {
+            throw new IllegalArgumentException("The marginals array is too short: "
+                    + marginals.length + " < " + (n - 1));
+        }
+        if (eventModel == null || !contextGen.isTagIndependent()) {
+            throw new UnsupportedOperationException("Boundary marginals need an event model and a tag "
+                    + "independent context generator");
+        }
+
+        if (pretokenizer == null) {
+            decodeMarginals(text, 0, n, marginals);
+            return;
+        }
+
+        int gap = 0;
+        for (int i = 0; i < n;) {
+            int runEnd = pretokenizer.match(text, 0, i, n);
+            if (runEnd == i) {
+                i++;
+                continue;
+            }
+
+            decodeMarginals(text, gap, i, marginals);
+            if (i > 0) {
+                marginals[i - 1] = 1;
+            }
+            for (int j = i; j < runEnd - 1; j++) {
+                marginals[j] = 0;
+            }
+            if (runEnd < n) {
+                marginals[runEnd - 1] = 1;
+            }
+            i = runEnd;
+            gap = runEnd;
+        }
+        decodeMarginals(text, gap, n, marginals);
+    }
+
+    /**
+     * Returns the confidence of the segmentation of the text: the smallest
+     * probability, over the positions between two characters, of the more
+     * likely decision there, boundary or no boundary. A sentence of fewer than
+     * two characters has confidence 1.
+     *
+     * @param text the sentence
+     * @return a value between 0.5 and 1
+     * @see #boundaryMarginals(CharSequence, double[])
+     */
+    public double boundaryConfidence(CharSequence text) {
+        double[] marginals = boundaryMarginals(text);
+
+        double confidence = 1;
+        for (double p : marginals) {
+            confidence = Math.min(confidence, Math.max(p, 1 - p));
+        }
+
+        return confidence;
+    }
+
+    /**
+     * Writes the boundary probabilities of the characters of a range but its
+     * last one to the marginals, at their offsets in the text.
+     */
+    private void decodeMarginals(CharSequence text, int start, int end, double[] marginals) {
+        int n = end - start;
+        if (n < 2) {
+            return;
+        }
+
+        WordSegScratch buffers = getScratch();
+        buffers.ensureCapacity(n, tableDecoder == null ? 0 : tableDecoder.getWidth());
+
+        double[] table;
+        if (tableDecoder != null) {
+            CharSequence chars = buffers.window.reset(text, start, end);
+            try {
+                WordSegEmissions.compute(chars, (WordSegContextKeyGenerator) contextGen,
+                        (WordSegKeyedModel) eventModel, tagOutcomes, buffers.keys, buffers.outcomeProbs,
+                        buffers.emissions);
+            } finally {
+                buffers.window.reset(null, 0, 0);
+            }
+            table = buffers.emissions;
+        } else {
+            table = emissions(text.subSequence(start, end));
+        }
+
+        WordSegMarginals.compute(table, n, buffers.forward, buffers.backward, marginals, start);
+    }
+
+    /**
+     * Returns the tag probabilities of every character of the text, indexed by
+     * position * {@link WordSegTags#COUNT} + tag. Only for tag independent
+     * context generators.
+     */
+    private double[] emissions(CharSequence text) {
+        int n = text.length();
+        if (tableDecoder != null) {
+            WordSegScratch buffers = getScratch();
+            buffers.ensureCapacity(n, tableDecoder.getWidth());
+            WordSegEmissions.compute(text, (WordSegContextKeyGenerator) contextGen,
+                    (WordSegKeyedModel) eventModel, tagOutcomes, buffers.keys, buffers.outcomeProbs,
+                    buffers.emissions);
+
+            return Arrays.copyOf(buffers.emissions, n * WordSegTags.COUNT);
+        }
+
+        String[] chars = new String[n];
+        for (int i = 0; i < n; i++) {
+            chars[i] = String.valueOf(text.charAt(i));
+        }
+
+        double[] table = new double[n * WordSegTags.COUNT];
+        WordSegEmissions.compute(chars, null, contextGen, eventModel, WordSegEmissions.tagOutcomes(eventModel),
+                table);
+        return table;
+    }
+
+    private boolean decodeTable(CharSequence text, int start, int end, WordSegScratch buffers) {
+        CharSequence chars = buffers.window.reset(text, start, end);
+        try {
+            WordSegEmissions.compute(chars, (WordSegContextKeyGenerator) contextGen,
+                    (WordSegKeyedModel) eventModel, tagOutcomes, buffers.keys, buffers.outcomeProbs,
+                    buffers.emissions);
+
+            return tableDecoder.bestTags(buffers, end - start);
+        } finally {
+            buffers.window.reset(null, 0, 0);
+        }
+    }
+
+    private WordSegScratch getScratch() {
+        WordSegScratch buffers = scratch.get();
+
+        if (buffers == null) {
+            if (tableDecoder == null) {
+                buffers = new WordSegScratch(0, 0);
+            } else {
+                buffers = new WordSegScratch(((WordSegContextKeyGenerator) contextGen).getMaxContextKeys(),
+                        eventModel.getNumOutcomes());
+            }
+            scratch.set(buffers);
+        }
+
+        return buffers;
     }
 
     public String[] tag(String[] sentence, Object[] additionaContext) {
-        bestSequence = model.bestSequence(sentence, additionaContext, contextGen, sequenceValidator);
-        List<String> t = bestSequence.getOutcomes();
-        return t.toArray(new String[t.size()]);
+        WordSegMetricsListener listener = metrics;
+        long begin = listener == WordSegMetricsListener.NOOP ? 0 : System.nanoTime();
+
+        WordSegResult result = decode(sentence, additionaContext);
+        lastResult = result;
+
+        if (listener != WordSegMetricsListener.NOOP) {
+            String[] tags = result.getTags();
+            int words = 0;
+            for (int i = 0; i < tags.length; i++) {
+                int tag = WordSegTags.id(tags[i]);
+                // a sentence ending inside a word still ends the word
+                if ((tag >= 0 && WordSegTags.isValidEnd(tag)) || i == tags.length - 1) {
+                    words++;
+                }
+            }
+
+            listener.modelEvaluated(evaluations(sentence.length));
+            listener.sentenceSegmented(sentence.length, words, System.nanoTime() - begin);
+        }
+        return result.getTags();
     }
 
     /**
@@ -192,23 +895,28 @@ public class WordSegmenterME implements WordSegmenter {
 
     /**
      * Populates the specified array with the probabilities for each tag of the
-     * last tagged sentence.
+     * last tagged sentence. When the segmenter is shared between threads use
+     * {@link #decode(String[], Object[])} instead.
      *
      * @param probs An array to put the probabilities into.
      */
     public void probs(double[] probs) {
-        bestSequence.getProbs(probs);
+        WordSegResult result = lastResult;
+        for (int i = 0; i < result.size(); i++) {
+            probs[i] = result.getProb(i);
+        }
     }
 
     /**
      * Returns an array with the probabilities for each tag of the last tagged
-     * sentence.
+     * sentence. When the segmenter is shared between threads use
+     * {@link #decode(String[], Object[])} instead.
      *
      * @return an array with the probabilities for each tag of the last tagged
      * sentence.
      */
     public double[] probs() {
-        return bestSequence.getProbs();
+        return lastResult.getProbs();
     }
 
     public String[] getOrderedTags(List<String> words, List<String> tags, int index) {
@@ -217,9 +925,9 @@ public class WordSegmenterME implements WordSegmenter {
 
     public String[] getOrderedTags(List<String> words, List<String> tags, int index, double[] tprobs) {
 
-        if (modelPackage.getWordSegModel() != null) {
+        if (eventModel != null) {
 
-            MaxentModel posModel = modelPackage.getWordSegModel();
+            MaxentModel posModel = eventModel;
 
             double[] probs = posModel.eval(contextGen.getContext(index,
                     words.toArray(new String[words.size()]),
@@ -264,6 +972,14 @@ public class WordSegmenterME implements WordSegmenter {
         //WordSegContextGenerator contextGenerator = new DefaultWordSegContextGenerator();
         Map<String, String> manifestInfoEntries = new HashMap<String, String>();
 
+        for (String parameter : new String[]{DECODER_PARAMETER, COMPILED_PARAMETER, BEAM_MARGIN_PARAMETER,
+                PRETOKENIZE_PARAMETER}) {
+            String value = trainParams.getSettings().get(parameter);
+            if (value != null) {
+                manifestInfoEntries.put(parameter, value);
+            }
+        }
+
         TrainerType trainerType = TrainerFactory.getTrainerType(trainParams.getSettings());
 
         MaxentModel posModel = null;
@@ -0,0 +1,44 @@
+package com.kidden.tc.wordseg.pipeline;
+
+/**
+ * A numbered batch of sentences passed between the stages of the pipeline.
+ * The segmenter workers fill in the words, the writer puts the batches back
+ * in the order of their numbers.
+ *
+ * @author kidden
+ */
+final class SentenceBatch {
+
+    /**
+     * The batch which tells the next stage that no more batches follow.
+     */
+    static final SentenceBatch END = new SentenceBatch(-1, 0);
+
+    final long number;
+    final String[] sentences;
+    final String[][] words;
+
+    /**
+     * Whether a line break follows the sentence in the text.
+     */
+    final boolean[] lineEnds;
+
+    int size;
+
+    SentenceBatch(long number, int capacity) {
+        this.number = number;
+        sentences = new String[capacity];
+        words = new String[capacity][];
+        lineEnds = new boolean[capacity];
+    }
+
+    boolean isFull() {
+        return size == sentences.length;
+    }
+
+    void add(String sentence, boolean lineEnd) {
+        sentences[size] = sentence;
+        lineEnds[size] = lineEnd;
+        size++;
+    }
+}
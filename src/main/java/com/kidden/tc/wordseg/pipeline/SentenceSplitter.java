@@ -0,0 +1,87 @@
+package com.kidden.tc.wordseg.pipeline;
+
+import com.kidden.tc.wordseg.maxent.WordSegChunker;
+
+/**
+ * Cuts a stream of characters into the sentences handed to the segmenter and
+ * groups them into batches.
+ *
+ * A sentence ends after sentence-final punctuation, at whitespace and at a
+ * line break, which is remembered so the writer can restore the lines. A
+ * sentence reaching the maximum length is cut there, so the memory held per
+ * sentence stays bounded however long the lines of the text are. Carriage
+ * returns are dropped.
+ *
+ * @author kidden
+ */
+final class SentenceSplitter {
+
+    /**
+     * Receives the full batches.
+     */
+    interface Sink {
+
+        void accept(SentenceBatch batch) throws InterruptedException;
+    }
+
+    private final Sink sink;
+    private final int batchSize;
+    private final int maxSentenceLength;
+
+    private final StringBuilder sentence = new StringBuilder();
+    private SentenceBatch batch;
+    private long batchNumber;
+
+    SentenceSplitter(Sink sink, int batchSize, int maxSentenceLength) {
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.maxSentenceLength = maxSentenceLength;
+        batch = new SentenceBatch(batchNumber++, batchSize);
+    }
+
+    void append(CharSequence chars) throws InterruptedException {
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+
+            if (c == '\n') {
+                endSentence(true);
+            } else if (c == '\r') {
+                // line breaks are written as \n
+            } else if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                endSentence(false);
+            } else {
+                sentence.append(c);
+
+                if (WordSegChunker.isSentenceEnd(c)
+                        || (sentence.length() >= maxSentenceLength && !Character.isHighSurrogate(c))) {
+                    endSentence(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ends the last sentence and hands over the last batch.
+     */
+    void finish() throws InterruptedException {
+        endSentence(false);
+
+        if (batch.size > 0) {
+            sink.accept(batch);
+        }
+    }
+
+    private void endSentence(boolean lineEnd) throws InterruptedException {
+        if (sentence.length() == 0 && !lineEnd) {
+            return;
+        }
+
+        batch.add(sentence.toString(), lineEnd);
+        sentence.setLength(0);
+
+        if (batch.isFull()) {
+            sink.accept(batch);
+            batch = new SentenceBatch(batchNumber++, batchSize);
+        }
+    }
+}
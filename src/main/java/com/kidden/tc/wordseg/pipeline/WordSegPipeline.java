@@ -0,0 +1,384 @@
+package com.kidden.tc.wordseg.pipeline;
+
+import com.kidden.tc.wordseg.WordSegmenter;
+import com.kidden.tc.wordseg.maxent.WordSegmenterME;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Segments raw text of any size from a channel into another channel.
+ *
+ * The text flows through four stages connected by bounded queues: a reader
+ * decoding the bytes of the input, a {@link SentenceSplitter}, a number of
+ * workers sharing one {@link WordSegmenter}, and a writer which restores the
+ * order of the batches and encodes the words. A stage blocks when the queue
+ * in front of the next stage is full, and the splitter blocks while
+ * {@code queueCapacity} batches are split but not yet written, so a slow
+ * batch can not make the writer hold an unbounded number of later ones. The
+ * memory used does not depend on the size of the text.
+ *
+ * The output has the lines of the input, with the words of a line separated
+ * by one space. Whitespace of the input only separates words.
+ *
+ * @author kidden
+ */
+public class WordSegPipeline {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    public static final int DEFAULT_MAX_SENTENCE_LENGTH = 4096;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final CharBuffer END_OF_TEXT = CharBuffer.allocate(0);
+
+    private final WordSegmenter segmenter;
+    private final int workers;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final int maxSentenceLength;
+
+    public WordSegPipeline(WordSegmenter segmenter, int workers) {
+        this(segmenter, workers, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_MAX_SENTENCE_LENGTH);
+    }
+
+    /**
+     * Initializes the pipeline.
+     *
+     * @param segmenter the segmenter shared by the workers
+     * @param workers the number of segmenter workers
+     * @param queueCapacity the number of chunks or batches a queue holds, and
+     * the number of batches between the splitter and the writer
+     * @param batchSize the number of sentences of a batch
+     * @param maxSentenceLength the length at which a sentence is cut
+     */
+    public WordSegPipeline(WordSegmenter segmenter, int workers, int queueCapacity, int batchSize,
+            int maxSentenceLength) {
+        if (workers < 1 || queueCapacity < 1 || batchSize < 1 || maxSentenceLength < 1) {
+            throw new IllegalArgumentException("The workers, queue capacity, batch size and "
+                    + "maximum sentence length must be positive");
+        }
+
+        this.segmenter = segmenter;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.maxSentenceLength = maxSentenceLength;
+    }
+
+    /**
+     * Segments the text of a file into another file.
+     *
+     * @return the number of sentences segmented
+     */
+    public long run(File input, File output, Charset charset) throws IOException {
+        try (FileInputStream in = new FileInputStream(input);
+                FileOutputStream out = new FileOutputStream(output)) {
+            return run(in.getChannel(), out.getChannel(), charset);
+        }
+    }
+
+    /**
+     * Segments the text read from a channel and writes it to another channel.
+     * The channels are not closed.
+     *
+     * @param in the channel the text is read from
+     * @param out the channel the segmented text is written to
+     * @param charset the charset of both texts
+     * @return the number of sentences segmented
+     * @throws IOException if reading or writing fails, or a worker fails
+     */
+    public long run(ReadableByteChannel in, WritableByteChannel out, Charset charset) throws IOException {
+        final BlockingQueue<CharBuffer> chunks = new ArrayBlockingQueue<CharBuffer>(queueCapacity);
+        final BlockingQueue<SentenceBatch> sentences = new ArrayBlockingQueue<SentenceBatch>(queueCapacity);
+        final BlockingQueue<SentenceBatch> segmented = new ArrayBlockingQueue<SentenceBatch>(queueCapacity);
+        final Semaphore inFlight = new Semaphore(queueCapacity);
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers + 3);
+        try {
+            CompletionService<Long> stages = new ExecutorCompletionService<Long>(executor);
+            stages.submit(new Reader(in, charset, chunks));
+            stages.submit(new Splitter(chunks, sentences, inFlight));
+            for (int i = 0; i < workers; i++) {
+                stages.submit(new Worker(sentences, segmented));
+            }
+            stages.submit(new Writer(out, charset, segmented, inFlight));
+
+            long count = 0;
+            for (int i = 0; i < workers + 3; i++) {
+                count += stages.take().get();
+            }
+            return count;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Segmentation was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            // stops the stages still blocked on a queue after a failure
+            executor.shutdownNow();
+        }
+    }
+
+    private static class Reader implements Callable<Long> {
+
+        private final ReadableByteChannel in;
+        private final CharsetDecoder decoder;
+        private final BlockingQueue<CharBuffer> chunks;
+
+        Reader(ReadableByteChannel in, Charset charset, BlockingQueue<CharBuffer> chunks) {
+            this.in = in;
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.chunks = chunks;
+        }
+
+        @Override
+        public Long call() throws IOException, InterruptedException {
+            ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+            CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = in.read(bytes) < 0;
+
+                ((Buffer) bytes).flip();
+                CoderResult result;
+                do {
+                    result = decoder.decode(bytes, chars, endOfInput);
+                    put(chars);
+                } while (result.isOverflow());
+                bytes.compact();
+            }
+
+            while (decoder.flush(chars).isOverflow()) {
+                put(chars);
+            }
+            put(chars);
+
+            chunks.put(END_OF_TEXT);
+            return 0L;
+        }
+
+        private void put(CharBuffer chars) throws InterruptedException {
+            ((Buffer) chars).flip();
+            if (chars.hasRemaining()) {
+                CharBuffer chunk = CharBuffer.allocate(chars.remaining());
+                chunk.put(chars);
+                ((Buffer) chunk).flip();
+                chunks.put(chunk);
+            }
+            ((Buffer) chars).clear();
+        }
+    }
+
+    private class Splitter implements Callable<Long> {
+
+        private final BlockingQueue<CharBuffer> chunks;
+        private final BlockingQueue<SentenceBatch> sentences;
+        private final Semaphore inFlight;
+
+        Splitter(BlockingQueue<CharBuffer> chunks, BlockingQueue<SentenceBatch> sentences, Semaphore inFlight) {
+            this.chunks = chunks;
+            this.sentences = sentences;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public Long call() throws InterruptedException {
+            SentenceSplitter splitter = new SentenceSplitter(new SentenceSplitter.Sink() {
+                @Override
+                public void accept(SentenceBatch batch) throws InterruptedException {
+                    // released by the writer once the batch is written
+                    inFlight.acquire();
+                    sentences.put(batch);
+                }
+            }, batchSize, maxSentenceLength);
+
+            CharBuffer chunk;
+            while ((chunk = chunks.take()) != END_OF_TEXT) {
+                splitter.append(chunk);
+            }
+            splitter.finish();
+
+            // one end for every worker
+            for (int i = 0; i < workers; i++) {
+                sentences.put(SentenceBatch.END);
+            }
+            return 0L;
+        }
+    }
+
+    private class Worker implements Callable<Long> {
+
+        private final BlockingQueue<SentenceBatch> sentences;
+        private final BlockingQueue<SentenceBatch> segmented;
+
+        Worker(BlockingQueue<SentenceBatch> sentences, BlockingQueue<SentenceBatch> segmented) {
+            this.sentences = sentences;
+            this.segmented = segmented;
+        }
+
+        @Override
+        public Long call() throws InterruptedException {
+            SentenceBatch batch;
+            while ((batch = sentences.take()) != SentenceBatch.END) {
+                for (int i = 0; i < batch.size; i++) {
+                    String sentence = batch.sentences[i];
+                    batch.words[i] = sentence.isEmpty() ? new String[0] : segmenter.segment(sentence);
+                }
+                segmented.put(batch);
+            }
+
+            segmented.put(SentenceBatch.END);
+            return 0L;
+        }
+    }
+
+    private class Writer implements Callable<Long> {
+
+        private final WritableByteChannel out;
+        private final CharsetEncoder encoder;
+        private final BlockingQueue<SentenceBatch> segmented;
+        private final Semaphore inFlight;
+
+        Writer(WritableByteChannel out, Charset charset, BlockingQueue<SentenceBatch> segmented,
+                Semaphore inFlight) {
+            this.out = out;
+            this.encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.segmented = segmented;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public Long call() throws IOException, InterruptedException {
+            // batches finished ahead of their turn, fewer than the in flight permits
+            Map<Long, SentenceBatch> pending = new HashMap<Long, SentenceBatch>();
+            long next = 0;
+            long count = 0;
+
+            StringBuilder text = new StringBuilder();
+            ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+            boolean lineStart = true;
+
+            int ends = 0;
+            while (ends < workers) {
+                SentenceBatch batch = segmented.take();
+                if (batch == SentenceBatch.END) {
+                    ends++;
+                    continue;
+                }
+
+                pending.put(batch.number, batch);
+                while ((batch = pending.remove(next)) != null) {
+                    next++;
+
+                    text.setLength(0);
+                    for (int i = 0; i < batch.size; i++) {
+                        String[] words = batch.words[i];
+                        for (String word : words) {
+                            if (!lineStart) {
+                                text.append(' ');
+                            }
+                            text.append(word);
+                            lineStart = false;
+                        }
+                        if (words.length > 0) {
+                            count++;
+                        }
+
+                        if (batch.lineEnds[i]) {
+                            text.append('\n');
+                            lineStart = true;
+                        }
+                    }
+
+                    encode(CharBuffer.wrap(text), bytes, false);
+                    inFlight.release();
+                }
+            }
+
+            encode(CharBuffer.allocate(0), bytes, true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain(bytes);
+            }
+            drain(bytes);
+
+            return count;
+        }
+
+        private void encode(CharBuffer chars, ByteBuffer bytes, boolean endOfInput) throws IOException {
+            while (encoder.encode(chars, bytes, endOfInput).isOverflow()) {
+                drain(bytes);
+            }
+        }
+
+        private void drain(ByteBuffer bytes) throws IOException {
+            ((Buffer) bytes).flip();
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            ((Buffer) bytes).clear();
+        }
+    }
+
+    /**
+     * Segments a text file with a model.
+     *
+     * Usage: WordSegPipeline model input output [encoding] [workers]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: WordSegPipeline model input output [encoding] [workers]");
+            System.exit(1);
+        }
+
+        Charset charset = Charset.forName(args.length > 3 ? args[3] : "UTF-8");
+        int workers = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        WordSegmenterME segmenter = new WordSegmenterME(new File(args[0]));
+        WordSegPipeline pipeline = new WordSegPipeline(segmenter, workers);
+
+        long start = System.currentTimeMillis();
+        long count = pipeline.run(new File(args[1]), new File(args[2]), charset);
+        System.out.println("Segmented " + count + " sentences in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+}
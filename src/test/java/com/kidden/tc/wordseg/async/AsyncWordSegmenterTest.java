@@ -0,0 +1,161 @@
+package com.kidden.tc.wordseg.async;
+
+import com.kidden.tc.wordseg.WordSegmenter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class AsyncWordSegmenterTest {
+
+    /**
+     * Takes every character as a word, only the first sentence waits for the
+     * release latch and the name of the last thread is remembered.
+     */
+    private static class BlockingSegmenter implements WordSegmenter {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile String thread;
+
+        @Override
+        public String[] segment(String sentence) {
+            thread = Thread.currentThread().getName();
+            boolean first = started.getCount() > 0;
+            started.countDown();
+            try {
+                if (first) {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            String[] words = new String[sentence.length()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = String.valueOf(sentence.charAt(i));
+            }
+            return words;
+        }
+    }
+
+    public AsyncWordSegmenterTest() {
+    }
+
+    @Test
+    public void testSegment() throws Exception {
+        BlockingSegmenter segmenter = new BlockingSegmenter();
+        segmenter.release.countDown();
+
+        try (AsyncWordSegmenter async = new AsyncWordSegmenter(segmenter)) {
+            assertArrayEquals(new String[]{"分", "词"}, async.segmentAsync("分词").get());
+            assertTrue(segmenter.thread.startsWith("wordseg-async-"));
+
+            List<String[]> words = async.segmentAsync(Arrays.asList("北京", "大学")).get();
+            assertArrayEquals(new String[]{"北", "京"}, words.get(0));
+            assertArrayEquals(new String[]{"大", "学"}, words.get(1));
+
+            assertArrayEquals(new String[]{"中", "文"}, async.segmentAsync(() -> "中文").get());
+            try {
+                async.segmentAsync(() -> {
+                    throw new IOException("unreadable");
+                }).get();
+                fail("The failed read was segmented");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        BlockingSegmenter segmenter = new BlockingSegmenter();
+        try (AsyncWordSegmenter async = new AsyncWordSegmenter(segmenter, 1, 1,
+                AsyncWordSegmenter.RejectionPolicy.ABORT)) {
+            CompletableFuture<String[]> first = async.segmentAsync("北京");
+            assertTrue(segmenter.started.await(10, TimeUnit.SECONDS));
+            CompletableFuture<String[]> second = async.segmentAsync("大学");
+            CompletableFuture<String[]> third = async.segmentAsync("分词");
+
+            assertTrue(third.isCompletedExceptionally());
+            assertEquals(1, async.getRejectedCount());
+
+            segmenter.release.countDown();
+            assertEquals(2, first.get().length);
+            assertEquals(2, second.get().length);
+        }
+    }
+
+    @Test
+    public void testDiscardOldest() throws Exception {
+        BlockingSegmenter segmenter = new BlockingSegmenter();
+        try (AsyncWordSegmenter async = new AsyncWordSegmenter(segmenter, 1, 1,
+                AsyncWordSegmenter.RejectionPolicy.DISCARD_OLDEST)) {
+            async.segmentAsync("北京");
+            assertTrue(segmenter.started.await(10, TimeUnit.SECONDS));
+            CompletableFuture<String[]> second = async.segmentAsync("大学");
+            CompletableFuture<String[]> third = async.segmentAsync("分词");
+
+            try {
+                second.get();
+                fail("The oldest sentence was not discarded");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+
+            segmenter.release.countDown();
+            assertArrayEquals(new String[]{"分", "词"}, third.get());
+        }
+    }
+
+    @Test
+    public void testCallerRuns() throws Exception {
+        BlockingSegmenter segmenter = new BlockingSegmenter();
+        try (AsyncWordSegmenter async = new AsyncWordSegmenter(segmenter, 1, 1,
+                AsyncWordSegmenter.RejectionPolicy.CALLER_RUNS)) {
+            async.segmentAsync("北京");
+            assertTrue(segmenter.started.await(10, TimeUnit.SECONDS));
+            async.segmentAsync("大学");
+
+            CompletableFuture<String[]> third = async.segmentAsync("分词");
+            assertTrue(third.isDone());
+            assertEquals(Thread.currentThread().getName(), segmenter.thread);
+            segmenter.release.countDown();
+        }
+    }
+
+    /**
+     * A batch larger than the queue takes one place per thread, not one per
+     * sentence.
+     */
+    @Test
+    public void testBatchLargerThanQueue() throws Exception {
+        BlockingSegmenter segmenter = new BlockingSegmenter();
+        segmenter.release.countDown();
+
+        try (AsyncWordSegmenter async = new AsyncWordSegmenter(segmenter, 2, 2,
+                AsyncWordSegmenter.RejectionPolicy.ABORT)) {
+            String[] sentences = new String[100];
+            for (int i = 0; i < sentences.length; i++) {
+                sentences[i] = "分词" + i;
+            }
+
+            List<String[]> words = async.segmentAsync(Arrays.asList(sentences)).get(10, TimeUnit.SECONDS);
+            assertEquals(sentences.length, words.size());
+            for (int i = 0; i < sentences.length; i++) {
+                assertEquals(sentences[i], String.join("", words.get(i)));
+            }
+            assertEquals(0, async.getRejectedCount());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.kidden.tc.wordseg.cache;
+
+import com.kidden.tc.wordseg.WordSegmenter;
+import com.kidden.tc.wordseg.maxent.WordSegModel;
+import com.kidden.tc.wordseg.maxent.WordSegModelProvider;
+import com.kidden.tc.wordseg.maxent.WordSegTestModels;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class CachingWordSegmenterTest {
+
+    /**
+     * Cuts a sentence into characters and counts the calls.
+     */
+    private static class CountingSegmenter implements WordSegmenter, WordSegModelProvider {
+
+        int calls;
+        WordSegModel model;
+
+        @Override
+        public String[] segment(String sentence) {
+            calls++;
+            String[] words = new String[sentence.length()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = String.valueOf(sentence.charAt(i));
+            }
+            return words;
+        }
+
+        @Override
+        public WordSegModel getModel() {
+            return model;
+        }
+    }
+
+    public CachingWordSegmenterTest() {
+    }
+
+    @Test
+    public void testLru() {
+        CountingSegmenter segmenter = new CountingSegmenter();
+        CachingWordSegmenter cache = new CachingWordSegmenter(segmenter, 2, CachingWordSegmenter.ENTRIES,
+                CachingWordSegmenter.Policy.LRU, 1);
+
+        assertArrayEquals(new String[]{"今", "天"}, cache.segment("今天"));
+        cache.segment("明天");
+        cache.segment("今天");
+        cache.segment("后天");
+        assertEquals(3, segmenter.calls);
+
+        // the least recently used sentence was evicted
+        cache.segment("今天");
+        assertEquals(3, segmenter.calls);
+        cache.segment("明天");
+        assertEquals(4, segmenter.calls);
+
+        WordSegCacheStats stats = cache.getStats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(4, stats.getMissCount());
+        assertEquals(2, stats.getEvictionCount());
+        assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    public void testLfu() {
+        CountingSegmenter segmenter = new CountingSegmenter();
+        CachingWordSegmenter cache = new CachingWordSegmenter(segmenter, 2, CachingWordSegmenter.ENTRIES,
+                CachingWordSegmenter.Policy.LFU, 1);
+
+        cache.segment("今天");
+        cache.segment("今天");
+        cache.segment("明天");
+        cache.segment("后天");
+
+        // the frequently used sentence stays
+        cache.segment("今天");
+        assertEquals(3, segmenter.calls);
+        cache.segment("明天");
+        assertEquals(4, segmenter.calls);
+    }
+
+    @Test
+    public void testWeight() {
+        CountingSegmenter segmenter = new CountingSegmenter();
+        CachingWordSegmenter cache = new CachingWordSegmenter(segmenter, 5, CachingWordSegmenter.CHARACTERS,
+                CachingWordSegmenter.Policy.LRU, 1);
+
+        cache.segment("今天");
+        cache.segment("天气很好");
+        assertEquals(4, cache.getStats().getWeight());
+
+        // heavier than the whole cache
+        cache.segment("今天天气很好");
+        cache.segment("今天天气很好");
+        assertEquals(4, segmenter.calls);
+        assertEquals(1, cache.getStats().getSize());
+    }
+
+    @Test
+    public void testModelChangeInvalidates() throws Exception {
+        CountingSegmenter segmenter = new CountingSegmenter();
+        CachingWordSegmenter cache = new CachingWordSegmenter(segmenter, 100);
+
+        cache.segment("今天");
+        cache.segment("今天");
+        assertEquals(1, segmenter.calls);
+
+        segmenter.model = WordSegTestModels.model();
+        cache.segment("今天");
+        assertEquals(2, segmenter.calls);
+        assertEquals(1, cache.getStats().getInvalidationCount());
+
+        cache.segment("今天");
+        assertEquals(2, segmenter.calls);
+    }
+}
@@ -0,0 +1,113 @@
+package com.kidden.tc.wordseg.dict;
+
+import com.kidden.tc.wordseg.maxent.WordSegmenterME;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class DoubleArrayTrieTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public DoubleArrayTrieTest() {
+    }
+
+    @Test
+    public void testLookups() {
+        DoubleArrayTrie trie = new DoubleArrayTrie(Arrays.asList("自然", "自然语言", "语言", "自", "", "自然"));
+
+        assertEquals(4, trie.size());
+        assertEquals(4, trie.getMaxWordLength());
+        assertTrue(trie.contains("自然语言"));
+        assertTrue(trie.contains("我爱自然", 2, 4));
+        assertFalse(trie.contains("自然语"));
+        assertFalse(trie.contains("然"));
+        assertFalse(trie.contains(""));
+
+        int[] ends = new int[4];
+        assertEquals(3, trie.prefixMatches("自然语言处理", 0, 6, ends));
+        assertArrayEquals(new int[]{1, 2, 4}, Arrays.copyOf(ends, 3));
+
+        DoubleArrayTrie empty = new DoubleArrayTrie(new ArrayList<String>());
+        assertEquals(0, empty.size());
+        assertFalse(empty.contains("自"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotATrie() throws Exception {
+        DoubleArrayTrie.load(new ByteArrayInputStream(new byte[20]));
+    }
+
+    /**
+     * The trie answers like the hash set and the array trie, also after a round
+     * trip through a stream and a mapped file.
+     */
+    @Test
+    public void testSameAsSet() throws Exception {
+        File corpusFile = new File(DoubleArrayTrieTest.class.getResource(
+                "/com/kidden/tc/wordseg/maxent/train.txt").toURI());
+        Set<String> words = new HashSet<String>(WordSegmenterME.buildDictionary(corpusFile, "UTF-8"));
+
+        // words sharing prefixes and characters outside the Han block
+        Random random = new Random(7);
+        String alphabet = "的一是在不了有和人这中大为上个国我以要他abcＡＢ1𠮷";
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                word.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            words.add(word.toString());
+        }
+
+        DoubleArrayTrie trie = new DoubleArrayTrie(words);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trie.save(out);
+        DoubleArrayTrie loaded = DoubleArrayTrie.load(new ByteArrayInputStream(out.toByteArray()));
+
+        File file = folder.newFile("words.dat");
+        trie.save(file);
+        DoubleArrayTrie mapped = DoubleArrayTrie.map(file);
+
+        TrieDictionary reference = new TrieDictionary(words);
+        List<WordSegDictionary> tries = Arrays.<WordSegDictionary>asList(trie, loaded, mapped);
+        for (WordSegDictionary dictionary : tries) {
+            assertEquals(words.size(), dictionary.size());
+            assertEquals(reference.getMaxWordLength(), dictionary.getMaxWordLength());
+        }
+
+        int[] expected = new int[reference.getMaxWordLength()];
+        int[] ends = new int[reference.getMaxWordLength()];
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            int count = reference.prefixMatches(text, 0, text.length(), expected);
+            for (WordSegDictionary dictionary : tries) {
+                assertEquals(words.contains(text.toString()), dictionary.contains(text));
+                assertEquals(count, dictionary.prefixMatches(text, 0, text.length(), ends));
+                assertArrayEquals(Arrays.copyOf(expected, count), Arrays.copyOf(ends, count));
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.kidden.tc.wordseg.dict;
+
+import com.kidden.tc.wordseg.maxent.WordSegModel;
+import com.kidden.tc.wordseg.maxent.WordSegTestModels;
+import com.kidden.tc.wordseg.maxent.WordSegmenterME;
+import java.util.Arrays;
+import java.util.Set;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class HybridWordSegmenterTest {
+
+    private static WordSegModel model;
+
+    private static Set<String> words;
+
+    public HybridWordSegmenterTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        model = WordSegTestModels.model();
+        words = WordSegmenterME.buildDictionary(WordSegTestModels.corpus(), "UTF-8");
+    }
+
+    @Test
+    public void testTrie() {
+        TrieDictionary trie = new TrieDictionary(Arrays.asList("自然", "自然语言", "语言", "自", ""));
+
+        assertEquals(4, trie.size());
+        assertEquals(4, trie.getMaxWordLength());
+        assertTrue(trie.contains("自然语言"));
+        assertTrue(trie.contains("我爱自然", 2, 4));
+        assertFalse(trie.contains("自然语"));
+        assertFalse(trie.contains(""));
+
+        int[] ends = new int[4];
+        assertEquals(3, trie.prefixMatches("自然语言处理", 0, 6, ends));
+        assertArrayEquals(new int[]{1, 2, 4}, Arrays.copyOf(ends, 3));
+        assertEquals(2, trie.prefixMatches("自然语言处理", 0, 2, ends));
+    }
+
+    @Test
+    public void testDictionaryWords() {
+        TrieDictionary trie = new TrieDictionary(words);
+        for (String word : words) {
+            assertTrue(word, trie.contains(word));
+        }
+
+        HybridWordSegmenter segmenter = new HybridWordSegmenter(new WordSegmenterME(model), trie);
+
+        // words the dictionary is sure about skip the model
+        assertArrayEquals(new String[]{"上海", "大学", "的", "学生"}, segmenter.segment("上海大学的学生"));
+        assertEquals(0, segmenter.getModelCharacters());
+        assertEquals(7, segmenter.getDictionaryCharacters());
+    }
+
+    @Test
+    public void testUnknownSpans() {
+        WordSegmenterME me = new WordSegmenterME(model);
+        HybridWordSegmenter segmenter = new HybridWordSegmenter(me, new TrieDictionary(words));
+
+        // the unknown run is segmented by the model on its own
+        String[] result = segmenter.segment("上海大学甲乙丙丁");
+        assertEquals("上海", result[0]);
+        assertEquals("大学", result[1]);
+        assertArrayEquals(me.segment("甲乙丙丁"), Arrays.copyOfRange(result, 2, result.length));
+        assertEquals(4, segmenter.getModelCharacters());
+
+        assertEquals(0, segmenter.segment("").length);
+    }
+}
@@ -0,0 +1,85 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.HashMap;
+import java.util.Map;
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.MaxentModel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class CompiledWordSegModelTest {
+
+    private static WordSegModel model;
+
+    public CompiledWordSegModelTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        model = WordSegTestModels.model();
+    }
+
+    @Test
+    public void testEval() throws Exception {
+        MaxentModel maxent = model.getWordSegModel();
+        CompiledWordSegModel compiled = model.getCompiledModel();
+        assertSame(compiled, model.getCompiledModel());
+
+        WordSegContextGenerator cg = new WordSegContextGeneratorConf();
+        String[] sentence = WordSegSample.parse("互联网 公司 提高 搜索引擎 的 速度 ， 用户 很 喜欢 。").getSentence();
+        for (int i = 0; i < sentence.length; i++) {
+            String[] context = cg.getContext(i, sentence, new String[i], null);
+            double[] expected = maxent.eval(context);
+            double[] probs = compiled.eval(context);
+
+            assertArrayEquals(expected, probs, 1e-5);
+        }
+    }
+
+    @Test
+    public void testCompiledSegmenter() {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(WordSegmenterME.COMPILED_PARAMETER, "true");
+
+        WordSegmenterME segmenter = new WordSegmenterME(model);
+        WordSegmenterME compiled = new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings);
+
+        String sentence = "北京大学的学生喜欢研究中文分词。";
+        assertArrayEquals(segmenter.segment(sentence), compiled.segment(sentence));
+    }
+
+    /**
+     * A GIS model with a correction feature scales the weights by the inverse
+     * correction constant before adding the correction.
+     */
+    @Test
+    public void testCorrectionParameter() {
+        Context[] params = {
+            new Context(new int[]{0, 1}, new double[]{1.5, -0.5}),
+            new Context(new int[]{1, 2}, new double[]{0.8, 2.0}),
+            new Context(new int[]{0, 2, 3}, new double[]{-1.2, 0.4, 0.9})
+        };
+        String[] predicates = {"C0=北", "C1=京", "Pu=0"};
+        String[] outcomes = {"S", "B", "M", "E"};
+        GISModel gis = new GISModel(params, predicates, outcomes, 3, 0.7);
+
+        CompiledWordSegModel compiled = CompiledWordSegModel.compile(gis);
+        String[][] contexts = {{"C0=北", "C1=京", "Pu=0"}, {"C0=北"}, {"C1=京", "unknown"}, {}};
+        for (String[] context : contexts) {
+            assertArrayEquals(gis.eval(context), compiled.eval(context), 1e-6);
+
+            long[] keys = new long[context.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = WordSegFeatureHash.hash(context[i]);
+            }
+            assertArrayEquals(gis.eval(context), compiled.eval(keys, keys.length, new double[outcomes.length]),
+                    1e-6);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.io.File;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class MappedWordSegModelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static WordSegModel model;
+
+    public MappedWordSegModelTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        model = WordSegTestModels.model();
+    }
+
+    /**
+     * A mapped file scores exactly like the model it was written from.
+     */
+    @Test
+    public void testSameScores() throws Exception {
+        CompiledWordSegModel compiled = model.getCompiledModel();
+        QuantizedWordSegModel quantized = QuantizedWordSegModel.quantize(compiled, 8);
+
+        File floatFile = folder.newFile("model.bin");
+        compiled.save(floatFile);
+        File byteFile = folder.newFile("model8.bin");
+        quantized.save(byteFile);
+
+        MappedWordSegModel mapped = MappedWordSegModel.map(floatFile);
+        MappedWordSegModel mapped8 = MappedWordSegModel.map(byteFile);
+        assertEquals(32, mapped.getBits());
+        assertEquals(8, mapped8.getBits());
+        assertEquals(compiled.getNumPredicates(), mapped.getNumPredicates());
+
+        String sentence = "北京大学的学生喜欢研究中文分词。";
+        String[] chars = new String[sentence.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = String.valueOf(sentence.charAt(i));
+        }
+
+        WordSegContextGenerator cg = new DefaultWordSegContextGenerator();
+        for (int i = 0; i < chars.length; i++) {
+            String[] context = cg.getContext(i, chars, new String[chars.length], null);
+            assertArrayEquals(compiled.eval(context), mapped.eval(context), 0);
+            assertArrayEquals(quantized.eval(context), mapped8.eval(context), 0);
+        }
+
+        WordSegmenterME segmenter = WordSegQuantizer.createSegmenter(model, mapped, new DefaultWordSegContextGenerator());
+        assertArrayEquals(new WordSegmenterME(model).segment(sentence), segmenter.segment(sentence));
+    }
+}
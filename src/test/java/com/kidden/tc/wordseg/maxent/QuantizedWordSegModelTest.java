@@ -0,0 +1,116 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class QuantizedWordSegModelTest {
+
+    private static File corpusFile;
+
+    private static WordSegModel model;
+
+    public QuantizedWordSegModelTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        corpusFile = WordSegTestModels.corpus();
+        model = WordSegTestModels.model();
+    }
+
+    /**
+     * The quantized models score close to the compiled model and the same after
+     * a round trip through a stream.
+     */
+    @Test
+    public void testScores() throws Exception {
+        CompiledWordSegModel compiled = model.getCompiledModel();
+        QuantizedWordSegModel model8 = QuantizedWordSegModel.quantize(compiled, 8);
+        QuantizedWordSegModel model16 = QuantizedWordSegModel.quantize(compiled, 16);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        model16.save(out);
+        QuantizedWordSegModel loaded = QuantizedWordSegModel.load(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(16, loaded.getBits());
+        assertEquals(compiled.getNumPredicates(), loaded.getNumPredicates());
+
+        WordSegContextKeyGenerator keyGen = new DefaultWordSegContextGenerator();
+        String sentence = "北京大学的学生喜欢研究中文分词。";
+        long[] keys = new long[keyGen.getMaxContextKeys()];
+        for (int i = 0; i < sentence.length(); i++) {
+            int count = keyGen.getContextKeys(i, sentence, null, keys);
+            double[] expected = compiled.eval(keys, count, new double[compiled.getNumOutcomes()]);
+
+            assertArrayEquals(expected, model16.eval(keys, count, new double[4]), 1e-3);
+            assertArrayEquals(expected, model8.eval(keys, count, new double[4]), 0.05);
+            assertArrayEquals(model16.eval(keys, count, new double[4]), loaded.eval(keys, count, new double[4]), 0);
+        }
+    }
+
+    @Test
+    public void testSegment() throws Exception {
+        DefaultWordSegContextGenerator cg = new DefaultWordSegContextGenerator();
+        WordSegmenterME full = new WordSegmenterME(model, cg);
+        WordSegmenterME quantized = WordSegQuantizer.createSegmenter(model,
+                QuantizedWordSegModel.quantize(model.getCompiledModel(), 16), cg);
+
+        String sentence = "北京大学的学生喜欢研究中文分词。";
+        assertArrayEquals(full.segment(sentence), quantized.segment(sentence));
+
+        double f = WordSegQuantizer.evaluate(full, corpusFile, "UTF-8", new WordSegMeasure()).getMeasure();
+        double q = WordSegQuantizer.evaluate(quantized, corpusFile, "UTF-8", new WordSegMeasure()).getMeasure();
+        assertEquals(f, q, 0.01);
+    }
+
+    /**
+     * A model trained with the feature templates is evaluated with the
+     * generator of its feature configuration.
+     */
+    @Test
+    public void testFeatureConf() throws Exception {
+        Properties conf = new Properties();
+        try (InputStream in = WordSegContextGeneratorConf.class.getClassLoader().getResourceAsStream(
+                "com/kidden/tc/wordseg/maxent/sighan/feature.properties")) {
+            conf.load(in);
+        }
+        WordSegContextGenerator cg = WordSegContextGenerators.create(conf);
+        assertTrue(cg instanceof WordSegContextGeneratorConf);
+
+        WordSegModel confModel = WordSegmenterME.train(corpusFile, WordSegTestModels.params(), cg, "UTF-8");
+        WordSegmenterME full = new WordSegmenterME(confModel, cg);
+        WordSegmenterME quantized = WordSegQuantizer.createSegmenter(confModel,
+                QuantizedWordSegModel.quantize(confModel.getCompiledModel(), 16), cg);
+
+        double f = WordSegQuantizer.evaluate(full, corpusFile, "UTF-8", new WordSegMeasure()).getMeasure();
+        double q = WordSegQuantizer.evaluate(quantized, corpusFile, "UTF-8", new WordSegMeasure()).getMeasure();
+        assertTrue(f > 0.9);
+        assertEquals(f, q, 0.01);
+
+        conf.setProperty(WordSegContextGenerators.FEATURE_CLASS, WordSegContextGeneratorClosed.class.getName());
+        assertTrue(WordSegContextGenerators.create(conf) instanceof WordSegContextGeneratorClosed);
+        assertTrue(WordSegContextGenerators.load(null) instanceof DefaultWordSegContextGenerator);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownFeatureClass() {
+        Properties conf = new Properties();
+        conf.setProperty(WordSegContextGenerators.FEATURE_CLASS, "Unknown");
+        WordSegContextGenerators.create(conf);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAModel() throws Exception {
+        QuantizedWordSegModel.load(new ByteArrayInputStream(new byte[64]));
+    }
+}
@@ -0,0 +1,126 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.Arrays;
+import opennlp.tools.ml.BeamSearch;
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.util.Sequence;
+import opennlp.tools.util.TrainingParameters;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegBeamSearchTest {
+
+    private static WordSegModel model;
+
+    public WordSegBeamSearchTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        model = WordSegTestModels.model();
+    }
+
+    /**
+     * The search over the emission table finds the same sequences as OpenNLP's
+     * beam search, for the maxent model and its compiled form.
+     */
+    @Test
+    public void testSameAsBeamSearch() throws Exception {
+        assertSameAsBeamSearch(model.getWordSegModel());
+        assertSameAsBeamSearch(model.getCompiledModel());
+    }
+
+    private static void assertSameAsBeamSearch(MaxentModel maxent) throws Exception {
+        String[] sentence = WordSegSample.parse("北京 大学 的 学生 喜欢 研究 中文 分词 。").getSentence();
+        WordSegContextGenerator cg = new DefaultWordSegContextGenerator();
+        DefaultWordSegSequenceValidator validator = new DefaultWordSegSequenceValidator();
+
+        for (int size = 1; size <= 5; size++) {
+            Sequence[] expected = new BeamSearch<String>(size, maxent, 0).bestSequences(size, sentence, null, cg, validator);
+            Sequence[] sequences = new WordSegBeamSearch(size, maxent).bestSequences(size, sentence, null, cg, validator);
+
+            assertEquals(expected.length, sequences.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getOutcomes(), sequences[i].getOutcomes());
+                assertEquals(expected[i].getScore(), sequences[i].getScore(), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testAdaptive() throws Exception {
+        String[] sentence = WordSegSample.parse("北京 大学 的 学生 喜欢 研究 中文 分词 。").getSentence();
+        WordSegContextGenerator cg = new DefaultWordSegContextGenerator();
+        DefaultWordSegSequenceValidator validator = new DefaultWordSegSequenceValidator();
+
+        WordSegBeamSearch fixed = new WordSegBeamSearch(3, model.getWordSegModel());
+        Sequence expected = fixed.bestSequence(sentence, null, cg, validator);
+        assertFalse(fixed.isAdaptive());
+        assertTrue(fixed.getAverageWidth() > 1 && fixed.getAverageWidth() <= 3);
+
+        // a margin no position reaches keeps the full beam
+        WordSegBeamSearch wide = new WordSegBeamSearch(3, model.getWordSegModel(), 2);
+        assertEquals(expected.getOutcomes(), wide.bestSequence(sentence, null, cg, validator).getOutcomes());
+        assertEquals(fixed.getAverageWidth(), wide.getAverageWidth(), 0);
+
+        // confident positions are decoded with one hypothesis
+        WordSegBeamSearch adaptive = new WordSegBeamSearch(3, model.getWordSegModel(), 0.5);
+        assertEquals(expected.getOutcomes(), adaptive.bestSequence(sentence, null, cg, validator).getOutcomes());
+        assertEquals(sentence.length, adaptive.getPositionCount());
+        assertTrue(adaptive.getAverageWidth() < fixed.getAverageWidth());
+
+        adaptive.resetStatistics();
+        assertTrue(Double.isNaN(adaptive.getAverageWidth()));
+    }
+
+    /**
+     * A model trained with a margin decodes adaptively without a setting.
+     */
+    @Test
+    public void testMarginManifest() throws Exception {
+        TrainingParameters params = WordSegTestModels.params();
+        params.put(WordSegmenterME.BEAM_MARGIN_PARAMETER, "0.5");
+        WordSegModel adaptive = WordSegmenterME.train(WordSegTestModels.corpus(), params,
+                new DefaultWordSegContextGenerator(), "UTF-8");
+        assertEquals("0.5", adaptive.getManifestProperty(WordSegmenterME.BEAM_MARGIN_PARAMETER));
+
+        String sentence = "北京大学的学生喜欢研究中文分词。";
+        WordSegMetrics fixedMetrics = new WordSegMetrics();
+        WordSegmenterME fixed = new WordSegmenterME(model);
+        fixed.setMetricsListener(fixedMetrics);
+        fixed.segment(sentence);
+
+        WordSegMetrics adaptiveMetrics = new WordSegMetrics();
+        WordSegmenterME segmenter = new WordSegmenterME(adaptive);
+        segmenter.setMetricsListener(adaptiveMetrics);
+        segmenter.segment(sentence);
+
+        assertTrue(adaptiveMetrics.getBeamExpansionCount() < fixedMetrics.getBeamExpansionCount());
+    }
+
+    /**
+     * The score of a long sentence falls far below any fixed floor, the search
+     * over the table still ends with a hypothesis.
+     */
+    @Test
+    public void testLongSentence() {
+        WordSegBeamSearch search = new WordSegBeamSearch(3, model.getWordSegModel());
+        int n = 100000;
+
+        WordSegScratch scratch = new WordSegScratch(0, 0);
+        scratch.ensureCapacity(n, search.getWidth());
+        Arrays.fill(scratch.emissions, 0, n * WordSegTags.COUNT, 0.25);
+
+        assertTrue(search.bestTags(scratch, n));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMargin() {
+        new WordSegBeamSearch(3, model.getWordSegModel(), -0.1);
+    }
+}
@@ -0,0 +1,51 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.Properties;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegContextKeyGeneratorTest {
+
+    public WordSegContextKeyGeneratorTest() {
+    }
+
+    @Test
+    public void testDefaultKeys() {
+        assertKeysMatchContext(new DefaultWordSegContextGenerator());
+        assertKeysMatchContext(new WordSegContextGeneratorClosed());
+    }
+
+    @Test
+    public void testConfKeys() throws Exception {
+        // every template is enabled when it is missing from the configuration
+        assertKeysMatchContext(new WordSegContextGeneratorConf(new Properties()));
+        assertKeysMatchContext(new WordSegContextGeneratorConf());
+    }
+
+    private static void assertKeysMatchContext(WordSegContextGenerator cg) {
+        String sentence = "我喜欢自然语言处理。";
+        String[] chars = new String[sentence.length()];
+        String[] tags = new String[sentence.length()];
+        String[] tagSet = {"S", "B", "E", "B", "M", "M", "M", "M", "E", "S"};
+        for (int i = 0; i < sentence.length(); i++) {
+            chars[i] = sentence.charAt(i) + "";
+            tags[i] = tagSet[i];
+        }
+
+        WordSegContextKeyGenerator keyGen = (WordSegContextKeyGenerator) cg;
+        long[] keys = new long[keyGen.getMaxContextKeys()];
+        for (int i = 0; i < chars.length; i++) {
+            String[] context = cg.getContext(i, chars, tags, null);
+            int count = keyGen.getContextKeys(i, sentence, tags, keys);
+
+            assertEquals(context.length, count);
+            for (int f = 0; f < count; f++) {
+                assertEquals(context[f], WordSegFeatureHash.hash(context[f]), keys[f]);
+            }
+        }
+    }
+}
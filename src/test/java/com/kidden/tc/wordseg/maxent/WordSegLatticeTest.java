@@ -0,0 +1,114 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegLatticeTest {
+
+    private static WordSegModel model;
+
+    public WordSegLatticeTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        model = WordSegTestModels.model();
+    }
+
+    /**
+     * The best path is the Viterbi segmentation, the following paths are
+     * distinct and never better.
+     */
+    @Test
+    public void testBestPaths() {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(WordSegmenterME.DECODER_PARAMETER, WordSegmenterME.VITERBI_DECODER);
+        WordSegmenterME plain = new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings);
+        settings.put(WordSegmenterME.COMPILED_PARAMETER, "true");
+        WordSegmenterME compiled = new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings);
+
+        for (String sentence : new String[]{"北京大学的学生喜欢研究中文分词。", "今天天气很好。", "他们"}) {
+            String[] words = plain.segment(sentence);
+
+            for (WordSegmenterME segmenter : Arrays.asList(plain, compiled)) {
+                WordSegLattice lattice = segmenter.lattice(sentence);
+                List<WordSegLattice.Path> paths = lattice.bestPaths(20);
+
+                assertArrayEquals(words, paths.get(0).getWords());
+                assertEquals(lattice.getBestScore(), paths.get(0).getScore(), 1e-9);
+
+                Set<String> seen = new HashSet<String>();
+                for (int p = 0; p < paths.size(); p++) {
+                    WordSegLattice.Path path = paths.get(p);
+                    assertTrue(seen.add(Arrays.toString(path.getBoundaries())));
+                    if (p > 0) {
+                        assertTrue(path.getScore() <= paths.get(p - 1).getScore());
+                    }
+
+                    double score = 0;
+                    int start = 0;
+                    for (int end : path.getBoundaries()) {
+                        score += lattice.getWordScore(start, end);
+                        start = end;
+                    }
+                    assertEquals(sentence.length(), start);
+                    assertEquals(score, path.getScore(), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAllPaths() {
+        WordSegmenterME segmenter = new WordSegmenterME(model);
+
+        // a sentence of three characters has four segmentations
+        Iterator<WordSegLattice.Path> paths = segmenter.lattice("天气好").paths();
+        int count = 0;
+        while (paths.hasNext()) {
+            paths.next();
+            count++;
+        }
+        assertEquals(4, count);
+
+        // words longer than the limit are left out
+        assertEquals(3, segmenter.lattice("天气好", 2).bestPaths(10).size());
+        assertEquals(1, segmenter.lattice("", 2).bestPaths(10).size());
+    }
+
+    /**
+     * Runs of the pretokenizer stay whole on every path, as they do in the
+     * segmentation.
+     */
+    @Test
+    public void testPretokenizedRuns() {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(WordSegmenterME.DECODER_PARAMETER, WordSegmenterME.VITERBI_DECODER);
+        settings.put(WordSegmenterME.PRETOKENIZE_PARAMETER, "true");
+        WordSegmenterME segmenter = new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings);
+
+        String sentence = "买iPhone12花了5,999.00元，详见https://shop.example.com/p?id=7。";
+        WordSegLattice lattice = segmenter.lattice(sentence, 4);
+        List<WordSegLattice.Path> paths = lattice.bestPaths(20);
+
+        assertArrayEquals(segmenter.segment(sentence), paths.get(0).getWords());
+        for (WordSegLattice.Path path : paths) {
+            List<String> words = Arrays.asList(path.getWords());
+            assertTrue(words.contains("iPhone12"));
+            assertTrue(words.contains("5,999.00"));
+            assertTrue(words.contains("https://shop.example.com/p?id=7"));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegMarginalsTest {
+
+    private static WordSegModel model;
+
+    public WordSegMarginalsTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        model = WordSegTestModels.model();
+    }
+
+    /**
+     * The marginals are the boundary probabilities summed over all paths of
+     * the lattice.
+     */
+    @Test
+    public void testSameAsPathSums() {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(WordSegmenterME.COMPILED_PARAMETER, "true");
+        WordSegmenterME compiled = new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings);
+        WordSegmenterME plain = new WordSegmenterME(model);
+
+        String sentence = "北京大学的学生喜欢研究。";
+        int n = sentence.length();
+
+        double total = 0;
+        double[] expected = new double[n - 1];
+        Iterator<WordSegLattice.Path> paths = plain.lattice(sentence, n).paths();
+        while (paths.hasNext()) {
+            WordSegLattice.Path path = paths.next();
+            double p = Math.exp(path.getScore());
+            total += p;
+            for (int end : path.getBoundaries()) {
+                if (end < n) {
+                    expected[end - 1] += p;
+                }
+            }
+        }
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] /= total;
+        }
+
+        assertArrayEquals(expected, plain.boundaryMarginals(sentence), 1e-9);
+        assertArrayEquals(expected, compiled.boundaryMarginals(new StringBuilder(sentence)), 1e-9);
+
+        double confidence = plain.boundaryConfidence(sentence);
+        assertTrue(confidence >= 0.5 && confidence <= 1);
+        assertEquals(1, plain.boundaryConfidence("好"), 0);
+    }
+
+    @Test
+    public void testPretokenizedRuns() {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(WordSegmenterME.PRETOKENIZE_PARAMETER, "true");
+        WordSegmenterME segmenter = new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings);
+
+        double[] marginals = segmenter.boundaryMarginals("买iPad吗");
+        assertArrayEquals(new double[]{1, 0, 0, 0, 1}, marginals, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortArray() {
+        new WordSegmenterME(model).boundaryMarginals("今天", new double[0]);
+    }
+}
@@ -0,0 +1,123 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.HashMap;
+import java.util.Map;
+import opennlp.tools.ml.BeamSearch;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegMetricsTest {
+
+    private static WordSegModel model;
+
+    public WordSegMetricsTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        model = WordSegTestModels.model();
+    }
+
+    @Test
+    public void testHistogram() {
+        WordSegLatencyHistogram histogram = new WordSegLatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+        assertTrue(Double.isNaN(histogram.getMean()));
+
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500500, histogram.getMean(), 1e-6);
+        for (double p : new double[]{1, 50, 90, 99, 99.9}) {
+            long exact = (long) Math.ceil(p * 10) * 1000;
+            long estimate = histogram.getPercentile(p);
+            assertTrue(estimate >= exact && estimate <= exact + exact / WordSegLatencyHistogram.SUB_BUCKETS);
+        }
+        assertEquals(1000000, histogram.getPercentile(100));
+
+        for (long value : new long[]{0, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE}) {
+            int bucket = WordSegLatencyHistogram.bucket(value);
+            assertTrue(value <= WordSegLatencyHistogram.upperBound(bucket));
+            assertTrue(bucket == 0 || value > WordSegLatencyHistogram.upperBound(bucket - 1));
+        }
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testSegmenter() {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(WordSegmenterME.COMPILED_PARAMETER, "true");
+        settings.put(BeamSearch.BEAM_SIZE_PARAMETER, "3");
+        WordSegmenterME segmenter = new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings);
+        assertSame(WordSegMetricsListener.NOOP, segmenter.getMetricsListener());
+
+        WordSegMetrics metrics = new WordSegMetrics();
+        segmenter.setMetricsListener(metrics);
+
+        String sentence = "北京大学的学生喜欢研究中文分词。";
+        String[] words = segmenter.segment(sentence);
+        segmenter.segment(sentence);
+
+        assertEquals(2, metrics.getSentenceCount());
+        assertEquals(2 * sentence.length(), metrics.getCharacterCount());
+        assertEquals(2 * words.length, metrics.getWordCount());
+        assertEquals(2 * sentence.length(), metrics.getEvaluationCount());
+        assertEquals(2 * sentence.length(), metrics.getBeamPositionCount());
+        assertTrue(metrics.getBeamExpansionCount() >= metrics.getBeamPositionCount());
+        assertEquals(2, metrics.getLatency().getCount());
+        assertTrue(metrics.getLatency().getPercentile(50) > 0);
+
+        segmenter.setMetricsListener(WordSegMetricsListener.NOOP);
+        segmenter.segment(sentence);
+        assertEquals(2, metrics.getSentenceCount());
+    }
+
+    @Test
+    public void testTag() {
+        WordSegmenterME segmenter = new WordSegmenterME(model, new DefaultWordSegContextGenerator());
+        WordSegMetrics metrics = new WordSegMetrics();
+        segmenter.setMetricsListener(metrics);
+
+        String sentence = "北京大学的学生喜欢研究中文分词。";
+        String[] words = segmenter.segment(sentence);
+        segmenter.tag(sentence);
+
+        assertEquals(2 * words.length, metrics.getWordCount());
+        assertEquals(2 * sentence.length(), metrics.getEvaluationCount());
+    }
+
+    /**
+     * A generator reading the previous tags makes the beam search evaluate the
+     * model once per hypothesis.
+     */
+    @Test
+    public void testTagDependentEvaluations() {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(BeamSearch.BEAM_SIZE_PARAMETER, "3");
+        WordSegmenterME segmenter = new WordSegmenterME(model, new DefaultWordSegContextGenerator() {
+            @Override
+            public boolean isTagIndependent() {
+                return false;
+            }
+        }, settings);
+        WordSegMetrics metrics = new WordSegMetrics();
+        segmenter.setMetricsListener(metrics);
+
+        String sentence = "北京大学的学生喜欢研究中文分词。";
+        segmenter.segment(sentence);
+        assertEquals(3 * sentence.length(), metrics.getEvaluationCount());
+
+        segmenter.tag(sentence);
+        assertEquals(6 * sentence.length(), metrics.getEvaluationCount());
+    }
+}
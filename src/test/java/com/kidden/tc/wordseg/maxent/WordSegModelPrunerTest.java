@@ -0,0 +1,139 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import opennlp.tools.ml.model.AbstractModel;
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.PlainTextByLineStream;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegModelPrunerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static File corpusFile;
+
+    private static WordSegModel model;
+
+    public WordSegModelPrunerTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        corpusFile = WordSegTestModels.corpus();
+        model = WordSegTestModels.model();
+    }
+
+    @Test
+    public void testTemplate() {
+        assertEquals("c_1c0", WordSegModelPruner.template("c_1c0=北京"));
+        assertEquals("c_2", WordSegModelPruner.template("c_2北"));
+        assertEquals("c0", WordSegModelPruner.template("c0="));
+    }
+
+    @Test
+    public void testPruneByWeight() throws Exception {
+        int all = WordSegModelPruner.getNumPredicates(model);
+        assertEquals(all, WordSegModelPruner.getNumPredicates(new WordSegModelPruner(0).prune(model)));
+
+        WordSegModel pruned = new WordSegModelPruner(0.5).prune(model);
+        int kept = WordSegModelPruner.getNumPredicates(pruned);
+        assertTrue(kept > 0 && kept < all);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pruned.serialize(out);
+        WordSegModel loaded = new WordSegModel(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(kept, WordSegModelPruner.getNumPredicates(loaded));
+
+        WordSegmenterME segmenter = new WordSegmenterME(loaded, new DefaultWordSegContextGenerator());
+        String sentence = "北京大学的学生喜欢研究中文分词。";
+        assertEquals(sentence, String.join("", segmenter.segment(sentence)));
+        assertTrue(WordSegQuantizer.evaluate(segmenter, corpusFile, "UTF-8", new WordSegMeasure()).getMeasure() > 0.5);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPruneByTemplateAndCount() throws Exception {
+        WordSegModel pruned = new WordSegModelPruner(0, null, 0, Collections.singleton("c_1c1")).prune(model);
+        Map<String, Integer> pmap = (Map<String, Integer>)
+                ((AbstractModel) pruned.getWordSegModel()).getDataStructures()[1];
+        assertFalse(pmap.isEmpty());
+        for (String predicate : pmap.keySet()) {
+            assertFalse(predicate.startsWith("c_1c1="));
+        }
+
+        ObjectStream<String> lines = new PlainTextByLineStream(new FileInputStreamFactory(corpusFile), "UTF-8");
+        Map<String, Integer> counts = WordSegModelPruner.countPredicates(new WordTagSampleStream(lines),
+                new DefaultWordSegContextGenerator());
+        WordSegModel frequent = new WordSegModelPruner(0, counts, 3, Collections.<String>emptySet()).prune(model);
+        pmap = (Map<String, Integer>) ((AbstractModel) frequent.getWordSegModel()).getDataStructures()[1];
+        assertTrue(pmap.size() < WordSegModelPruner.getNumPredicates(model));
+        for (String predicate : pmap.keySet()) {
+            assertTrue(counts.get(predicate) >= 3);
+        }
+    }
+
+    /**
+     * The predicates of a model trained with the feature templates are counted
+     * with the generator of its feature configuration, so none is dropped for
+     * missing counts.
+     */
+    @Test
+    public void testFeatureConf() throws Exception {
+        File featureConf = folder.newFile("feature.properties");
+        try (InputStream in = WordSegContextGeneratorConf.class.getClassLoader().getResourceAsStream(
+                "com/kidden/tc/wordseg/maxent/sighan/feature.properties")) {
+            Files.copy(in, featureConf.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        WordSegContextGenerator cg = WordSegContextGenerators.load(featureConf);
+        WordSegModel confModel = WordSegmenterME.train(corpusFile, WordSegTestModels.params(), cg, "UTF-8");
+        File modelFile = folder.newFile("conf.bin");
+        try (OutputStream out = new FileOutputStream(modelFile)) {
+            confModel.serialize(out);
+        }
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(report, true, "UTF-8"));
+        try {
+            WordSegModelPruner.main(new String[]{"-model", modelFile.getPath(), "-gold", corpusFile.getPath(),
+                "-train", corpusFile.getPath(), "-counts", "1", "-featureConf", featureConf.getPath()});
+        } finally {
+            System.setOut(stdout);
+        }
+
+        Map<String, String[]> levels = new HashMap<String, String[]>();
+        for (String line : new String(report.toByteArray(), "UTF-8").split("\n")) {
+            String[] columns = line.trim().split("\\s+");
+            levels.put(columns[0], columns);
+        }
+        int all = WordSegModelPruner.getNumPredicates(confModel);
+        assertEquals(all, Integer.parseInt(levels.get("none")[1]));
+        assertEquals(all, Integer.parseInt(levels.get("count<1")[1]));
+        assertTrue(Double.parseDouble(levels.get("none")[5]) > 0.9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCountsMissing() {
+        new WordSegModelPruner(0, null, 2, Collections.<String>emptySet());
+    }
+}
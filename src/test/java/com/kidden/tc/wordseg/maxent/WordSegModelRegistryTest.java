@@ -0,0 +1,228 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegModelRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static WordSegModel model;
+
+    private static WordSegModel pruned;
+
+    public WordSegModelRegistryTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        model = WordSegTestModels.model();
+        pruned = new WordSegModelPruner(0.5).prune(model);
+    }
+
+    private static void write(WordSegModel model, File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            model.serialize(out);
+        }
+    }
+
+    /**
+     * Segmenting threads keep running while the model is swapped.
+     */
+    @Test
+    public void testSwap() throws Exception {
+        final WordSegModelRegistry registry = new WordSegModelRegistry(model);
+        assertSame(model, registry.getModel());
+        assertEquals(1, registry.getVersion());
+
+        final String sentence = "北京大学的学生喜欢研究中文分词。";
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        assertEquals(sentence, String.join("", registry.segment(sentence)));
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        reader.start();
+
+        registry.swap(pruned);
+        registry.swap(model);
+        reader.join();
+
+        assertNull(failure.get());
+        assertSame(model, registry.getModel());
+        assertEquals(3, registry.getVersion());
+    }
+
+    /**
+     * A swap which started earlier but is ready later does not replace the
+     * model of a newer swap.
+     */
+    @Test
+    public void testSwapOrder() throws Exception {
+        File file = folder.newFile("wordseg.bin");
+        write(model, file);
+
+        final CountDownLatch building = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        WordSegModelRegistry.SegmenterFactory factory = new WordSegModelRegistry.SegmenterFactory() {
+            @Override
+            public WordSegmenterME create(WordSegModel model) {
+                if (model == pruned) {
+                    building.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return new WordSegmenterME(model);
+            }
+        };
+
+        try (final WordSegModelRegistry registry = new WordSegModelRegistry(file, factory,
+                Collections.<String>emptyList(), 0)) {
+            final boolean[] published = {true};
+            Thread older = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    published[0] = registry.swap(pruned);
+                }
+            });
+            older.start();
+            assertTrue(building.await(10, TimeUnit.SECONDS));
+
+            assertTrue(registry.swap(model));
+            release.countDown();
+            older.join();
+
+            assertFalse(published[0]);
+            assertSame(model, registry.getModel());
+            assertEquals(2, registry.getVersion());
+        }
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        File file = folder.newFile("wordseg.bin");
+        write(model, file);
+
+        try (WordSegModelRegistry registry = new WordSegModelRegistry(file)) {
+            assertEquals(1, registry.getVersion());
+
+            WordSegModel loaded = registry.getModel();
+            registry.reloadAsync().get();
+            assertEquals(2, registry.getVersion());
+            assertNotSame(loaded, registry.getModel());
+
+            // a broken file keeps the active model
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(new byte[16]);
+            }
+            try {
+                registry.reloadAsync().get();
+                fail("The broken model was loaded");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertEquals(2, registry.getVersion());
+            assertNotNull(registry.getLastError());
+            assertEquals("北京大学的学生", String.join("", registry.segment("北京大学的学生")));
+        }
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        File file = folder.newFile("wordseg.bin");
+        write(model, file);
+
+        try (WordSegModelRegistry registry = new WordSegModelRegistry(file)) {
+            registry.watch(10, TimeUnit.MILLISECONDS);
+
+            write(pruned, file);
+            file.setLastModified(file.lastModified() + 2000);
+
+            // the watcher may also see the half written file, which it skips
+            int expected = WordSegModelPruner.getNumPredicates(pruned);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (WordSegModelPruner.getNumPredicates(registry.getModel()) != expected
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(expected, WordSegModelPruner.getNumPredicates(registry.getModel()));
+            assertTrue(registry.getVersion() >= 2);
+        }
+    }
+
+    /**
+     * A model whose segmenter fails is not loaded again until the file
+     * changes.
+     */
+    @Test
+    public void testWatchFailingSegmenter() throws Exception {
+        File file = folder.newFile("wordseg.bin");
+        write(model, file);
+
+        final int broken = WordSegModelPruner.getNumPredicates(pruned);
+        final AtomicInteger attempts = new AtomicInteger();
+        WordSegModelRegistry.SegmenterFactory factory = new WordSegModelRegistry.SegmenterFactory() {
+            @Override
+            public WordSegmenterME create(WordSegModel model) {
+                if (WordSegModelPruner.getNumPredicates(model) == broken) {
+                    attempts.incrementAndGet();
+                    throw new IllegalStateException("broken");
+                }
+                return new WordSegmenterME(model);
+            }
+        };
+
+        try (WordSegModelRegistry registry = new WordSegModelRegistry(file, factory,
+                Collections.<String>emptyList(), 0)) {
+            registry.watch(10, TimeUnit.MILLISECONDS);
+
+            // replaced at once, so the watcher sees a single change
+            File next = folder.newFile("next.bin");
+            write(pruned, next);
+            next.setLastModified(file.lastModified() + 2000);
+            Files.move(next.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (attempts.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(200);
+
+            assertEquals(1, attempts.get());
+            assertEquals(1, registry.getVersion());
+            assertTrue(registry.getLastError() instanceof IOException);
+            assertTrue(registry.getLastError().getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.EnumSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegPretokenizerTest {
+
+    public WordSegPretokenizerTest() {
+    }
+
+    @Test
+    public void testMatch() {
+        WordSegPretokenizer pretokenizer = new WordSegPretokenizer();
+
+        assertRun(pretokenizer, "买iPhone12手机", 1, "iPhone12");
+        assertRun(pretokenizer, "价格3.14元", 2, "3.14");
+        assertRun(pretokenizer, "共1,000.", 1, "1,000");
+        assertRun(pretokenizer, "见www.example.com。", 1, "www.example.com");
+        assertRun(pretokenizer, "(http://a.cn/x?y=1).", 1, "http://a.cn/x?y=1");
+        assertRun(pretokenizer, "发给kidden.tc@mail.example.com.", 2, "kidden.tc@mail.example.com");
+        assertRun(pretokenizer, "型号ＡＢ１２号", 2, "ＡＢ１２");
+
+        // no run starts inside a word or at a Han character
+        assertEquals(2, pretokenizer.match("abc", 0, 2, 3));
+        assertEquals(0, pretokenizer.match("中文", 0, 0, 2));
+        assertEquals(1, pretokenizer.match("a@b", 0, 0, 3));
+    }
+
+    @Test
+    public void testKinds() {
+        WordSegPretokenizer numbers = WordSegPretokenizer.parse("number, fullwidth");
+        assertEquals(EnumSet.of(WordSegPretokenizer.Kind.NUMBER, WordSegPretokenizer.Kind.FULLWIDTH),
+                numbers.getKinds());
+        assertEquals(3, numbers.match("共12个", 0, 1, 4));
+
+        // digits within an ASCII word are not a number
+        assertEquals(0, numbers.match("abc12", 0, 0, 5));
+        assertEquals(3, numbers.match("abc12", 0, 3, 5));
+        assertEquals(0, numbers.match("123abc", 0, 0, 6));
+
+        assertNull(WordSegPretokenizer.parse(null));
+        assertNull(WordSegPretokenizer.parse("false"));
+        assertEquals(EnumSet.allOf(WordSegPretokenizer.Kind.class), WordSegPretokenizer.parse("all").getKinds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownKind() {
+        WordSegPretokenizer.parse("number,emoji");
+    }
+
+    private static void assertRun(WordSegPretokenizer pretokenizer, String text, int index, String run) {
+        assertEquals(run, text.substring(index, pretokenizer.match(text, 0, index, text.length())));
+    }
+}
@@ -0,0 +1,49 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import opennlp.tools.util.TrainingParameters;
+
+/**
+ * The model the tests segment with, trained once from train.txt and shared
+ * by every test class of the run.
+ *
+ * @author kidden
+ */
+public final class WordSegTestModels {
+
+    private static WordSegModel model;
+
+    private WordSegTestModels() {
+    }
+
+    /**
+     * Returns the training corpus of the tests.
+     */
+    public static File corpus() throws URISyntaxException {
+        return new File(WordSegTestModels.class.getResource("train.txt").toURI());
+    }
+
+    /**
+     * Returns the training parameters of the shared model, a new instance
+     * which may be changed to train another one.
+     */
+    public static TrainingParameters params() {
+        TrainingParameters params = TrainingParameters.defaultParams();
+        params.put(TrainingParameters.CUTOFF_PARAM, Integer.toString(1));
+        params.put(TrainingParameters.ITERATIONS_PARAM, Integer.toString(50));
+        return params;
+    }
+
+    /**
+     * Returns the shared model, trained with {@link #params()} and the
+     * {@link DefaultWordSegContextGenerator} on the first call.
+     */
+    public static synchronized WordSegModel model() throws IOException, URISyntaxException {
+        if (model == null) {
+            model = WordSegmenterME.train(corpus(), params(), new DefaultWordSegContextGenerator(), "UTF-8");
+        }
+        return model;
+    }
+}
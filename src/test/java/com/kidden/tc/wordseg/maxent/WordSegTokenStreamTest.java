@@ -0,0 +1,117 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegTokenStreamTest {
+
+    private static WordSegmenterME segmenter;
+
+    public WordSegTokenStreamTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        WordSegModel model = WordSegTestModels.model();
+
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(WordSegmenterME.COMPILED_PARAMETER, "true");
+        segmenter = new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings);
+    }
+
+    @Test
+    public void testTokens() {
+        WordSegTokenStream stream = new WordSegTokenStream(segmenter);
+        CharSequence term = stream.term();
+
+        for (String sentence : new String[]{"北京大学的学生喜欢研究中文分词。", "今天天气很好。"}) {
+            String[] words = segmenter.segment(sentence);
+
+            stream.reset(sentence);
+            int end = 0;
+            for (String word : words) {
+                assertTrue(stream.incrementToken());
+                assertSame(term, stream.term());
+                assertEquals(word, stream.term().toString());
+                assertEquals(end, stream.startOffset());
+                end += word.length();
+                assertEquals(end, stream.endOffset());
+            }
+            assertFalse(stream.incrementToken());
+            assertFalse(stream.incrementToken());
+        }
+
+        stream.reset("");
+        assertFalse(stream.incrementToken());
+    }
+
+    @Test
+    public void testRange() {
+        WordSegTokenStream stream = new WordSegTokenStream(segmenter);
+        String text = "前言 今天天气很好。 后记";
+
+        stream.reset(text, 3, 10);
+        int end = 3;
+        while (stream.incrementToken()) {
+            assertEquals(end, stream.startOffset());
+            assertEquals(text.substring(stream.startOffset(), stream.endOffset()), stream.term().toString());
+            assertFalse(Character.isWhitespace(stream.term().charAt(0)));
+            end = stream.endOffset();
+        }
+        assertEquals(10, end);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNotReset() {
+        new WordSegTokenStream(segmenter).incrementToken();
+    }
+
+    /**
+     * Once warmed up, segmenting a text and pulling its words allocates nothing.
+     */
+    @Test
+    public void testNoAllocation() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+
+        WordSegTokenStream stream = new WordSegTokenStream(segmenter);
+        StringBuilder text = new StringBuilder("互联网公司提高搜索引擎的速度，用户很喜欢。");
+        int tokens = 0;
+        for (int i = 0; i < 10000; i++) {
+            tokens += pull(stream, text);
+        }
+
+        long thread = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10000; i++) {
+            tokens += pull(stream, text);
+        }
+        long allocated = bean.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(tokens > 0);
+        assertTrue("Allocated " + allocated + " bytes", allocated < 10000);
+    }
+
+    private static int pull(WordSegTokenStream stream, CharSequence text) {
+        int tokens = 0;
+        stream.reset(text);
+        while (stream.incrementToken()) {
+            tokens += stream.term().length();
+        }
+        return tokens;
+    }
+}
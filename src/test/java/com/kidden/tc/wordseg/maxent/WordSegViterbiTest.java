@@ -0,0 +1,122 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.util.Arrays;
+import java.util.List;
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.util.Sequence;
+import opennlp.tools.util.TrainingParameters;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegViterbiTest {
+
+    private static WordSegModel model;
+
+    public WordSegViterbiTest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        TrainingParameters params = WordSegTestModels.params();
+        params.put(WordSegmenterME.DECODER_PARAMETER, WordSegmenterME.VITERBI_DECODER);
+
+        model = WordSegmenterME.train(WordSegTestModels.corpus(), params, new DefaultWordSegContextGenerator(), "UTF-8");
+    }
+
+    /**
+     * Compares the best sequence with an exhaustive search over all legal tag
+     * sequences of a short sentence.
+     */
+    @Test
+    public void testBestSequenceIsExact() {
+        assertEquals(WordSegmenterME.VITERBI_DECODER, model.getManifestProperty(WordSegmenterME.DECODER_PARAMETER));
+
+        String[] sentence = {"研", "究", "中", "文", "分", "词"};
+        WordSegContextGenerator cg = new DefaultWordSegContextGenerator();
+        MaxentModel maxent = model.getWordSegModel();
+
+        double[][] probs = new double[sentence.length][WordSegTags.COUNT];
+        for (int i = 0; i < sentence.length; i++) {
+            double[] dist = maxent.eval(cg.getContext(i, sentence, new String[i], null));
+            for (int o = 0; o < dist.length; o++) {
+                probs[i][WordSegTags.id(maxent.getOutcome(o))] = dist[o];
+            }
+        }
+
+        double best = Double.NEGATIVE_INFINITY;
+        int[] tags = new int[sentence.length];
+        int total = 1 << (2 * sentence.length);
+        for (int code = 0; code < total; code++) {
+            for (int i = 0; i < sentence.length; i++) {
+                tags[i] = (code >> (2 * i)) & 3;
+            }
+            if (!isLegal(tags)) {
+                continue;
+            }
+
+            double score = 0;
+            for (int i = 0; i < sentence.length; i++) {
+                score += Math.log(probs[i][tags[i]]);
+            }
+            best = Math.max(best, score);
+        }
+
+        WordSegViterbi viterbi = new WordSegViterbi(maxent);
+        Sequence sequence = viterbi.bestSequence(sentence, null, cg, new DefaultWordSegSequenceValidator());
+        assertEquals(best, sequence.getScore(), 1e-9);
+
+        List<String> outcomes = sequence.getOutcomes();
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = WordSegTags.id(outcomes.get(i));
+        }
+        assertTrue(isLegal(tags));
+    }
+
+    @Test
+    public void testBestSequencesAreOrdered() {
+        String[] sentence = {"我", "喜", "欢", "自", "然", "语", "言", "处", "理", "。"};
+        WordSegViterbi viterbi = new WordSegViterbi(model.getWordSegModel());
+
+        Sequence[] sequences = viterbi.bestSequences(5, sentence, null, new DefaultWordSegContextGenerator(),
+                new DefaultWordSegSequenceValidator());
+        assertEquals(5, sequences.length);
+        for (int s = 1; s < sequences.length; s++) {
+            assertTrue(sequences[s - 1].getScore() >= sequences[s].getScore());
+            assertNotEquals(sequences[s - 1].getOutcomes(), sequences[s].getOutcomes());
+        }
+    }
+
+    /**
+     * The score of a long sentence falls far below any fixed floor, the table
+     * decoder still finds its best path.
+     */
+    @Test
+    public void testLongSentence() {
+        WordSegViterbi viterbi = new WordSegViterbi(model.getWordSegModel());
+        int n = 100000;
+
+        WordSegScratch scratch = new WordSegScratch(0, 0);
+        scratch.ensureCapacity(n, viterbi.getWidth());
+        Arrays.fill(scratch.emissions, 0, n * WordSegTags.COUNT, 0.25);
+
+        assertTrue(viterbi.bestTags(scratch, n));
+        assertTrue(WordSegTags.isValidEnd(scratch.tags[n - 1]));
+    }
+
+    private static boolean isLegal(int[] tags) {
+        if (!WordSegTags.isValidStart(tags[0]) || !WordSegTags.isValidEnd(tags[tags.length - 1])) {
+            return false;
+        }
+        for (int i = 1; i < tags.length; i++) {
+            if (!WordSegTags.isValidTransition(tags[i - 1], tags[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,280 @@
+package com.kidden.tc.wordseg.maxent;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import opennlp.tools.util.TrainingParameters;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegmenterMETest {
+
+    private static File corpusFile;
+
+    private static WordSegModel model;
+
+    public WordSegmenterMETest() {
+    }
+
+    @BeforeClass
+    public static void trainModel() throws Exception {
+        corpusFile = WordSegTestModels.corpus();
+        model = WordSegTestModels.model();
+    }
+
+    @Test
+    public void testDecode() {
+        WordSegmenterME segmenter = new WordSegmenterME(model);
+        String sentence = "我们喜欢研究自然语言处理。";
+
+        WordSegResult result = segmenter.decode(sentence);
+        String[] tags = segmenter.tag(sentence);
+
+        assertArrayEquals(tags, result.getTags());
+        assertArrayEquals(segmenter.probs(), result.getProbs(), 0);
+        assertEquals(sentence.length(), result.size());
+    }
+
+    /**
+     * A decoder finding no valid sequence returns null, which is reported
+     * instead of failing later.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testNoSequence() {
+        WordSegResult.of(null);
+    }
+
+    @Test
+    public void testConcurrentDecode() throws Exception {
+        final WordSegmenterME segmenter = new WordSegmenterME(model);
+        final String[] sentences = {"北京大学的学生喜欢看书。", "今天天气很好。",
+            "互联网公司提高搜索引擎的速度。", "他们在上海工作。"};
+
+        final String[][] expected = new String[sentences.length][];
+        for (int i = 0; i < sentences.length; i++) {
+            expected[i] = segmenter.decode(sentences[i]).getTags();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int n = 0; n < 200; n++) {
+                            int i = n % sentences.length;
+                            String[] tags = segmenter.decode(sentences[i]).getTags();
+                            if (!java.util.Arrays.equals(expected[i], tags)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchSegment() {
+        WordSegmenterME segmenter = new WordSegmenterME(model);
+        List<String> sentences = new ArrayList<String>();
+        String[] texts = {"北京大学的学生喜欢看书。", "今天天气很好。", "互联网公司提高搜索引擎的速度。", "他们在上海工作。"};
+        for (int i = 0; i < 100; i++) {
+            sentences.add(texts[i % texts.length]);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String[]> results = segmenter.segment(sentences, pool);
+            assertEquals(sentences.size(), results.size());
+            for (int i = 0; i < sentences.size(); i++) {
+                assertArrayEquals(segmenter.segment(sentences.get(i)), results.get(i));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertTrue(segmenter.segment(new ArrayList<String>()).isEmpty());
+        assertEquals(1, segmenter.segment(Arrays.asList(new StringBuilder(texts[0]))).size());
+    }
+
+    @Test
+    public void testParallelSegment() {
+        assertArrayEquals(new int[]{3, 4, 6, 13}, WordSegChunker.split("今天。\n好 天气abc d"));
+        assertArrayEquals(new int[0], WordSegChunker.split(""));
+
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(WordSegmenterME.COMPILED_PARAMETER, "true");
+        WordSegmenterME segmenter = new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings);
+
+        StringBuilder text = new StringBuilder();
+        String[] texts = {"北京大学的学生喜欢看书。", "今天天气很好", "\n", "互联网公司 提高搜索引擎的速度！", "他们在上海工作"};
+        for (int i = 0; i < 2000; i++) {
+            text.append(texts[i % texts.length]);
+        }
+
+        // the same as segmenting every chunk on its own
+        int[] expected = new int[text.length()];
+        int count = 0;
+        int start = 0;
+        int[] words = new int[text.length()];
+        for (int end : WordSegChunker.split(text)) {
+            int n = segmenter.segment(text, start, end, words);
+            System.arraycopy(words, 0, expected, count, n);
+            count += n;
+            start = end;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            int[] boundaries = new int[text.length()];
+            assertEquals(count, segmenter.segment(text, boundaries, pool));
+            assertArrayEquals(Arrays.copyOf(expected, count), Arrays.copyOf(boundaries, count));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * No word of the whole text segmented at once continues over a cut after
+     * sentence-final punctuation, and the chunks are segmented in parallel as
+     * they are on their own.
+     */
+    @Test
+    public void testParallelSegmentCutsAreWordEnds() {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(WordSegmenterME.COMPILED_PARAMETER, "true");
+        WordSegmenterME segmenter = new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings);
+
+        StringBuilder text = new StringBuilder();
+        String[] texts = {"北京大学的学生喜欢看书。", "今天天气很好！", "互联网公司提高搜索引擎的速度。",
+            "他们在上海工作？", "我们喜欢研究自然语言处理；"};
+        for (int i = 0; i < 500; i++) {
+            text.append(texts[i % texts.length]);
+        }
+
+        int[] whole = new int[text.length()];
+        int count = segmenter.segment(text, whole);
+        int[] cuts = WordSegChunker.split(text);
+        assertEquals(500, cuts.length);
+        for (int cut : cuts) {
+            assertTrue("A word continues over " + cut, Arrays.binarySearch(whole, 0, count, cut) >= 0);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            int[] boundaries = new int[text.length()];
+            count = segmenter.segment(text, boundaries, pool);
+
+            int start = 0;
+            int next = 0;
+            int[] words = new int[text.length()];
+            for (int cut : cuts) {
+                int n = segmenter.segment(text.substring(start, cut), words);
+                for (int i = 0; i < n; i++) {
+                    assertEquals(start + words[i], boundaries[next++]);
+                }
+                start = cut;
+            }
+            assertEquals(count, next);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSegmentBoundaries() {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(WordSegmenterME.COMPILED_PARAMETER, "true");
+
+        assertSameBoundaries(new WordSegmenterME(model));
+        assertSameBoundaries(new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings));
+
+        settings.put(WordSegmenterME.DECODER_PARAMETER, WordSegmenterME.VITERBI_DECODER);
+        assertSameBoundaries(new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings));
+    }
+
+    private static void assertSameBoundaries(WordSegmenterME segmenter) {
+        String sentence = "北京大学的学生喜欢研究中文分词。";
+        String[] words = segmenter.segment(sentence);
+
+        int[] boundaries = new int[sentence.length()];
+        int count = segmenter.segment(new StringBuilder(sentence), boundaries);
+        assertEquals(words.length, count);
+
+        int end = 0;
+        for (int i = 0; i < count; i++) {
+            end += words[i].length();
+            assertEquals(end, boundaries[i]);
+        }
+
+        // a range is segmented like the same sentence on its own
+        String text = "前言" + sentence + "后记";
+        count = segmenter.segment(text, 2, 2 + sentence.length(), boundaries);
+        assertEquals(words.length, count);
+        assertEquals(2 + words[0].length(), boundaries[0]);
+        assertEquals(2 + sentence.length(), boundaries[count - 1]);
+
+        assertEquals(0, segmenter.segment("", boundaries));
+    }
+
+    /**
+     * A model trained with the parameter pretokenizes without a setting.
+     */
+    @Test
+    public void testPretokenizeManifest() throws Exception {
+        TrainingParameters params = WordSegTestModels.params();
+        params.put(WordSegmenterME.PRETOKENIZE_PARAMETER, "true");
+        WordSegModel pretokenized = WordSegmenterME.train(WordSegTestModels.corpus(), params,
+                new DefaultWordSegContextGenerator(), "UTF-8");
+
+        assertEquals("true", pretokenized.getManifestProperty(WordSegmenterME.PRETOKENIZE_PARAMETER));
+        assertNotNull(new WordSegmenterME(pretokenized).getPretokenizer());
+        assertNull(new WordSegmenterME(model).getPretokenizer());
+    }
+
+    @Test
+    public void testPretokenize() {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(WordSegmenterME.PRETOKENIZE_PARAMETER, "true");
+        WordSegmenterME segmenter = new WordSegmenterME(model, new DefaultWordSegContextGenerator(), settings);
+
+        String sentence = "买iPhone12花了5,999.00元，详见https://shop.example.com/p?id=7。";
+        String[] words = segmenter.segment(sentence);
+
+        assertTrue(Arrays.asList(words).contains("iPhone12"));
+        assertTrue(Arrays.asList(words).contains("5,999.00"));
+        assertTrue(Arrays.asList(words).contains("https://shop.example.com/p?id=7"));
+        assertEquals("。", words[words.length - 1]);
+
+        // the Han text between the runs is decoded as on its own
+        WordSegmenterME plain = new WordSegmenterME(model);
+        assertEquals(Arrays.asList(plain.segment("详见")),
+                Arrays.asList(segmenter.segment("详见")));
+
+        String[] tags = segmenter.tag("买iPhone12");
+        assertArrayEquals(new String[]{"B", "M", "M", "M", "M", "M", "M", "E"},
+                Arrays.copyOfRange(tags, 1, tags.length));
+    }
+}
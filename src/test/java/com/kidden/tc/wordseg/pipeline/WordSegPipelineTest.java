@@ -0,0 +1,114 @@
+package com.kidden.tc.wordseg.pipeline;
+
+import com.kidden.tc.wordseg.WordSegmenter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author kidden
+ */
+public class WordSegPipelineTest {
+
+    /**
+     * Cuts a sentence into words of two characters.
+     */
+    private static final WordSegmenter PAIRS = new WordSegmenter() {
+        @Override
+        public String[] segment(String sentence) {
+            String[] words = new String[(sentence.length() + 1) / 2];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = sentence.substring(2 * i, Math.min(sentence.length(), 2 * i + 2));
+            }
+            return words;
+        }
+    };
+
+    public WordSegPipelineTest() {
+    }
+
+    @Test
+    public void testRun() throws IOException {
+        StringBuilder text = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("今天天气很好。我们 去公园\r\n\n");
+            expected.append("今天 天气 很好 。 我们 去公 园\n\n");
+        }
+        text.append("没有换行");
+        expected.append("没有 换行");
+
+        for (String charset : new String[]{"UTF-8", "GB18030", "UTF-16"}) {
+            // tiny batches and queues so the workers finish out of order and block
+            WordSegPipeline pipeline = new WordSegPipeline(PAIRS, 4, 2, 3, 16);
+            assertEquals(expected.toString(), run(pipeline, text.toString(), Charset.forName(charset)));
+        }
+    }
+
+    @Test
+    public void testLongSentenceIsCut() throws IOException {
+        WordSegPipeline pipeline = new WordSegPipeline(PAIRS, 2, 2, 2, 3);
+        assertEquals("一二 三 四五 六 七", run(pipeline, "一二三四五六七", Charset.forName("UTF-8")));
+    }
+
+    /**
+     * While the first batch is held up the later ones are not split, so the
+     * writer never keeps more than the queue capacity of batches.
+     */
+    @Test
+    public void testSlowBatchBoundsInFlight() throws IOException {
+        final AtomicInteger segmented = new AtomicInteger();
+        final AtomicInteger whileSlow = new AtomicInteger(-1);
+        WordSegmenter slowFirst = new WordSegmenter() {
+            @Override
+            public String[] segment(String sentence) {
+                if (sentence.equals("慢")) {
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    whileSlow.set(segmented.get());
+                } else {
+                    segmented.incrementAndGet();
+                }
+                return new String[]{sentence};
+            }
+        };
+
+        StringBuilder text = new StringBuilder("慢\n");
+        for (int i = 0; i < 1000; i++) {
+            text.append("好\n");
+        }
+
+        WordSegPipeline pipeline = new WordSegPipeline(slowFirst, 2, 2, 1, 16);
+        assertEquals(text.toString(), run(pipeline, text.toString(), Charset.forName("UTF-8")));
+        assertTrue("Segmented while the first batch was slow: " + whileSlow, whileSlow.get() <= 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWorkerFailure() throws IOException {
+        WordSegmenter failing = new WordSegmenter() {
+            @Override
+            public String[] segment(String sentence) {
+                throw new IllegalStateException("failed");
+            }
+        };
+
+        run(new WordSegPipeline(failing, 2, 1, 1, 16), "今天天气很好。我们去公园。", Charset.forName("UTF-8"));
+    }
+
+    private static String run(WordSegPipeline pipeline, String text, Charset charset) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pipeline.run(Channels.newChannel(new ByteArrayInputStream(text.getBytes(charset))),
+                Channels.newChannel(out), charset);
+
+        return new String(out.toByteArray(), charset);
+    }
+}